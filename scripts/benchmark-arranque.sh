@@ -0,0 +1,94 @@
+#!/usr/bin/env bash
+# Mide el arranque en frío y en caliente del perfil persistente (H2 en fichero)
+#
+# Uso: scripts/benchmark-arranque.sh [libros] [reinicios]
+#   libros     libros que se cargan en el catálogo antes de medir (por defecto 200000)
+#   reinicios  arranques en caliente que se miden (por defecto 3)
+#
+# 1. Crea un catálogo nuevo en un directorio temporal y lo llena con POST /api/libros/lote
+# 2. Arranque en frío: vacía la caché de páginas del sistema operativo (si se ejecuta como root)
+#    y arranca sobre el fichero existente
+# 3. Arranques en caliente: reinicia inmediatamente, con el fichero ya en la caché del sistema
+# Para cada arranque muestra el tiempo que informa Spring Boot y el de la carga de índices en memoria
+set -euo pipefail
+
+LIBROS=${1:-200000}
+REINICIOS=${2:-3}
+PUERTO=${PUERTO:-18080}
+LOTE=1000
+DIRECTORIO=$(mktemp -d)
+JAR=$(ls target/sistema-biblioteca-*.jar 2>/dev/null | head -1 || true)
+
+if [[ -z "$JAR" ]]; then
+    mvn -q -DskipTests package
+    JAR=$(ls target/sistema-biblioteca-*.jar | head -1)
+fi
+
+arrancar() {
+    local log=$1
+    java -jar "$JAR" --spring.profiles.active=persistente \
+        --biblioteca.h2.directorio="$DIRECTORIO" --server.port="$PUERTO" \
+        --logging.level.com.biblioteca=INFO --logging.level.org.springframework.web=INFO > "$log" 2>&1 &
+    PID=$!
+    until grep -q "Started BibliotecaApplication" "$log"; do
+        if ! kill -0 "$PID" 2>/dev/null; then
+            echo "La aplicación terminó al arrancar, ver $log" >&2
+            exit 1
+        fi
+        sleep 0.2
+    done
+}
+
+detener() {
+    kill "$PID"
+    wait "$PID" 2>/dev/null || true
+}
+
+informar() {
+    local etiqueta=$1 log=$2
+    local spring indices
+    spring=$(grep -o "Started BibliotecaApplication in [0-9.]* seconds" "$log" | grep -o "[0-9.]*" | head -1)
+    indices=$(grep -o "Índices en memoria cargados: .*" "$log" | head -1)
+    printf "%-12s arranque %6ss  |  %s\n" "$etiqueta" "$spring" "$indices"
+}
+
+autor() {
+    local n=$1 letras=""
+    for _ in 1 2 3 4; do
+        letras+=$(printf "\\$(printf '%03o' $((97 + n % 26)))")
+        n=$((n / 26))
+    done
+    echo "Autor ${letras^}"
+}
+
+echo "Catálogo de $LIBROS libros en $DIRECTORIO"
+arrancar "$DIRECTORIO/carga.log"
+for ((desde = 0; desde < LIBROS; desde += LOTE)); do
+    cuerpo="["
+    for ((i = desde; i < desde + LOTE && i < LIBROS; i++)); do
+        [[ $i -gt $desde ]] && cuerpo+=","
+        tipo=$([[ $((i % 2)) -eq 0 ]] && echo FICCION || echo NO_FICCION)
+        formato=$([[ $((i % 3)) -eq 0 ]] && echo DIGITAL || echo FISICO)
+        cuerpo+="{\"titulo\":\"Obra de prueba $i\",\"autor\":\"$(autor $((i / 10)))\",\"tipo\":\"$tipo\",\"formato\":\"$formato\"}"
+    done
+    curl -sf -o /dev/null -H "Content-Type: application/json" -d "$cuerpo]" "http://localhost:$PUERTO/api/libros/lote"
+done
+detener
+du -sh "$DIRECTORIO"/biblioteca.mv.db
+
+if [[ $EUID -eq 0 ]]; then
+    sync && echo 3 > /proc/sys/vm/drop_caches
+else
+    echo "(sin root no se vacía la caché del sistema: el arranque en frío parte de caché caliente)"
+fi
+arrancar "$DIRECTORIO/frio.log"
+detener
+informar "frío" "$DIRECTORIO/frio.log"
+
+for ((r = 1; r <= REINICIOS; r++)); do
+    arrancar "$DIRECTORIO/caliente-$r.log"
+    detener
+    informar "caliente $r" "$DIRECTORIO/caliente-$r.log"
+done
+
+rm -rf "$DIRECTORIO"
@@ -0,0 +1,66 @@
+package com.biblioteca.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Configuración de los DataSources: una primaria para escrituras y, opcionalmente, réplicas
+ * de lectura (biblioteca.datasource.replicas) a las que van las transacciones readOnly
+ * Las réplicas usan el mismo driver, usuario y contraseña que spring.datasource
+ */
+@Configuration
+public class ConfiguracionDataSource {
+    
+    @Bean
+    public DataSourceEnrutado dataSourceEnrutado(DataSourceProperties propiedades,
+                                                 @Value("${biblioteca.datasource.replicas:}") List<String> urlsReplicas,
+                                                 @Value("${biblioteca.datasource.ventana-primaria-ms:1000}") long ventanaPrimariaMs) {
+        HikariDataSource primaria = propiedades.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        primaria.setPoolName(DataSourceEnrutado.PRIMARIA);
+        
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (String url : urlsReplicas) {
+            if (url.isBlank()) {
+                continue;
+            }
+            String nombre = "replica-" + replicas.size();
+            replicas.put(nombre, crearReplica(propiedades, nombre, url.trim()));
+        }
+        
+        return new DataSourceEnrutado(primaria, replicas, ventanaPrimariaMs);
+    }
+    
+    /**
+     * DataSource que usan JPA, Flyway y el resto de la aplicación
+     * El proxy retrasa la conexión física hasta la primera sentencia, cuando la transacción ya
+     * está marcada como readOnly y el enrutador puede elegir réplica
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceEnrutado dataSourceEnrutado) {
+        return new LazyConnectionDataSourceProxy(dataSourceEnrutado);
+    }
+    
+    private static HikariDataSource crearReplica(DataSourceProperties propiedades, String nombre, String url) {
+        HikariDataSource replica = new HikariDataSource();
+        replica.setPoolName(nombre);
+        replica.setDriverClassName(propiedades.determineDriverClassName());
+        replica.setJdbcUrl(url);
+        replica.setUsername(propiedades.determineUsername());
+        replica.setPassword(propiedades.determinePassword());
+        replica.setReadOnly(true);
+        return replica;
+    }
+}
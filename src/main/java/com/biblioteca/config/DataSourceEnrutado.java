@@ -0,0 +1,139 @@
+package com.biblioteca.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * DataSource que envía las transacciones de solo lectura a las réplicas (en turno rotatorio)
+ * y el resto a la primaria
+ * Tras una escritura, las lecturas siguen yendo a la primaria durante una ventana configurable
+ * para que se vean los propios cambios aunque la réplica vaya con retraso. La clave se decide al
+ * obtener la conexión física, así que debe usarse detrás de un LazyConnectionDataSourceProxy:
+ * de lo contrario la conexión se pediría antes de que la transacción quede marcada como readOnly
+ */
+public class DataSourceEnrutado extends AbstractRoutingDataSource implements AutoCloseable {
+    
+    public static final String PRIMARIA = "primaria";
+    
+    private final DataSource primaria;
+    private final Map<String, DataSource> replicas;
+    private final List<String> clavesReplicas;
+    private final long ventanaPrimariaNanos;
+    private final AtomicInteger siguienteReplica = new AtomicInteger();
+    private final AtomicLong ultimaEscritura;
+    private final LongAdder conexionesPrimaria = new LongAdder();
+    private final LongAdder lecturasRetenidas = new LongAdder();
+    private final Map<String, LongAdder> conexionesPorReplica = new LinkedHashMap<>();
+    
+    /**
+     * @param primaria DataSource de escritura
+     * @param replicas DataSources de solo lectura por nombre (puede estar vacío: todo va a la primaria)
+     * @param ventanaPrimariaMs milisegundos tras una escritura durante los que las lecturas van a la primaria
+     */
+    public DataSourceEnrutado(DataSource primaria, Map<String, DataSource> replicas, long ventanaPrimariaMs) {
+        this.primaria = primaria;
+        this.replicas = new LinkedHashMap<>(replicas);
+        this.clavesReplicas = List.copyOf(this.replicas.keySet());
+        this.ventanaPrimariaNanos = TimeUnit.MILLISECONDS.toNanos(ventanaPrimariaMs);
+        this.ultimaEscritura = new AtomicLong(System.nanoTime() - ventanaPrimariaNanos);
+        clavesReplicas.forEach(clave -> conexionesPorReplica.put(clave, new LongAdder()));
+        
+        Map<Object, Object> destinos = new LinkedHashMap<>(this.replicas);
+        destinos.put(PRIMARIA, primaria);
+        setTargetDataSources(destinos);
+        setDefaultTargetDataSource(primaria);
+        afterPropertiesSet();
+    }
+    
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            registrarEscritura();
+            conexionesPrimaria.increment();
+            return PRIMARIA;
+        }
+        
+        if (clavesReplicas.isEmpty() || System.nanoTime() - ultimaEscritura.get() < ventanaPrimariaNanos) {
+            if (!clavesReplicas.isEmpty()) {
+                lecturasRetenidas.increment();
+            }
+            conexionesPrimaria.increment();
+            return PRIMARIA;
+        }
+        
+        String clave = clavesReplicas.get(Math.floorMod(siguienteReplica.getAndIncrement(), clavesReplicas.size()));
+        conexionesPorReplica.get(clave).increment();
+        return clave;
+    }
+    
+    /**
+     * La ventana empieza al pedir la conexión y se renueva al terminar la transacción,
+     * que es cuando los cambios empiezan a replicarse
+     */
+    private void registrarEscritura() {
+        marcarEscritura();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    marcarEscritura();
+                }
+            });
+        }
+    }
+    
+    private void marcarEscritura() {
+        ultimaEscritura.accumulateAndGet(System.nanoTime(), (anterior, ahora) -> ahora - anterior > 0 ? ahora : anterior);
+    }
+    
+    /**
+     * Obtiene los contadores de enrutamiento
+     * @return conexiones servidas por la primaria y por cada réplica, y lecturas retenidas en la primaria
+     */
+    public EstadisticasEnrutamiento obtenerEstadisticas() {
+        Map<String, Long> porReplica = new LinkedHashMap<>();
+        conexionesPorReplica.forEach((clave, contador) -> porReplica.put(clave, contador.sum()));
+        long lecturasReplicas = porReplica.values().stream().mapToLong(Long::longValue).sum();
+        return new EstadisticasEnrutamiento(conexionesPrimaria.sum(), lecturasRetenidas.sum(), lecturasReplicas,
+                porReplica, TimeUnit.NANOSECONDS.toMillis(ventanaPrimariaNanos));
+    }
+    
+    /**
+     * Cierra los pools de la primaria y de las réplicas
+     */
+    @Override
+    public void close() throws Exception {
+        List<DataSource> pools = new ArrayList<>(replicas.values());
+        pools.add(primaria);
+        for (DataSource pool : pools) {
+            if (pool instanceof AutoCloseable cerrable) {
+                cerrable.close();
+            }
+        }
+    }
+    
+    /**
+     * Contadores de enrutamiento
+     * @param conexionesPrimaria conexiones físicas servidas por la primaria
+     * @param lecturasRetenidas lecturas que fueron a la primaria por la ventana tras una escritura
+     * @param conexionesReplicas conexiones físicas servidas por las réplicas
+     * @param conexionesPorReplica desglose por réplica
+     * @param ventanaPrimariaMs ventana de lectura de las propias escrituras
+     */
+    public record EstadisticasEnrutamiento(long conexionesPrimaria,
+                                           long lecturasRetenidas,
+                                           long conexionesReplicas,
+                                           Map<String, Long> conexionesPorReplica,
+                                           long ventanaPrimariaMs) {}
+}
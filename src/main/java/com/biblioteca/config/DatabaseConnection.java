@@ -1,81 +1,303 @@
 package com.biblioteca.config;
 
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * Implementación del patrón Singleton para gestionar la conexión a la base de datos.
- * Asegura que solo exista una instancia de la conexión en toda la aplicación.
+ * Implementación del patrón Singleton para gestionar el acceso a la base de datos.
+ * Asegura que solo exista una instancia en toda la aplicación, pero ya no comparte una única
+ * conexión: cada llamada a getConnection() presta una conexión propia del pool del DataSource,
+ * que se devuelve al cerrarla (try-with-resources). El número de préstamos simultáneos está
+ * acotado, la espera tiene un timeout y los préstamos que superan el umbral de fuga se avisan
+ * con la traza de quien los pidió.
  */
 @Component
 public class DatabaseConnection {
     
+    private static final int MAXIMO_POR_DEFECTO = 10;
+    private static final long TIMEOUT_POR_DEFECTO_MS = 30_000;
+    private static final long UMBRAL_FUGA_POR_DEFECTO_MS = 60_000;
+    
+    /** Límites superiores (en microsegundos) de los tramos del histograma de latencia de préstamo */
+    private static final long[] TRAMOS_LATENCIA_MICROS = {100, 500, 1_000, 5_000, 10_000, 50_000, 100_000, 500_000, 1_000_000};
+    
     private static DatabaseConnection instance;
     private final DataSource dataSource;
-    private Connection connection;
+    private final int maximo;
+    private final long timeoutNanos;
+    private final long umbralFugaNanos;
+    private final Semaphore permisos;
+    private final Map<Long, Prestamo> prestamosActivos = new ConcurrentHashMap<>();
+    private final AtomicLong siguientePrestamo = new AtomicLong();
+    private final ScheduledExecutorService detectorFugas;
     
-    private DatabaseConnection(DataSource dataSource) {
+    private final LongAdder prestamos = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder fugasDetectadas = new LongAdder();
+    private final LongAdder latenciaTotalNanos = new LongAdder();
+    private final AtomicLong latenciaMaximaNanos = new AtomicLong();
+    private final LongAdder[] histogramaLatencia = new LongAdder[TRAMOS_LATENCIA_MICROS.length + 1];
+    
+    private DatabaseConnection(DataSource dataSource,
+                               @Value("${biblioteca.conexiones.maximo:10}") int maximo,
+                               @Value("${biblioteca.conexiones.timeout-ms:30000}") long timeoutMs,
+                               @Value("${biblioteca.conexiones.umbral-fuga-ms:60000}") long umbralFugaMs) {
         this.dataSource = dataSource;
+        this.maximo = maximo;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        this.umbralFugaNanos = TimeUnit.MILLISECONDS.toNanos(umbralFugaMs);
+        this.permisos = new Semaphore(maximo, true);
+        for (int i = 0; i < histogramaLatencia.length; i++) {
+            histogramaLatencia[i] = new LongAdder();
+        }
+        
+        if (umbralFugaMs > 0) {
+            this.detectorFugas = Executors.newSingleThreadScheduledExecutor(tarea -> {
+                Thread hilo = new Thread(tarea, "detector-fugas-conexiones");
+                hilo.setDaemon(true);
+                return hilo;
+            });
+            long periodoMs = Math.max(1, umbralFugaMs / 2);
+            detectorFugas.scheduleAtFixedRate(this::detectarFugas, periodoMs, periodoMs, TimeUnit.MILLISECONDS);
+        } else {
+            this.detectorFugas = null;
+        }
+        
+        registrarInstancia(this);
+    }
+    
+    private static synchronized void registrarInstancia(DatabaseConnection conexion) {
+        if (instance == null) {
+            instance = conexion;
+        }
     }
     
     /**
      * Método estático que retorna la única instancia de DatabaseConnection
-     * Implementa lazy initialization con thread safety
-     * 
+     * Implementa lazy initialization con thread safety; si Spring ya creó la instancia
+     * (con la configuración de biblioteca.conexiones.*) se devuelve esa
+     *
      * @param dataSource el DataSource configurado por Spring
      * @return la única instancia de DatabaseConnection
      */
     public static synchronized DatabaseConnection getInstance(DataSource dataSource) {
         if (instance == null) {
-            instance = new DatabaseConnection(dataSource);
+            instance = new DatabaseConnection(dataSource, MAXIMO_POR_DEFECTO, TIMEOUT_POR_DEFECTO_MS, UMBRAL_FUGA_POR_DEFECTO_MS);
         }
         return instance;
     }
     
     /**
-     * Obtiene una conexión a la base de datos
-     * Implementa el patrón de reutilización de conexiones
-     * 
-     * @return una conexión activa a la base de datos
+     * Presta una conexión a la base de datos para uso exclusivo del llamador
+     * Debe cerrarse (idealmente con try-with-resources) para devolverla al pool
+     *
+     * @return una conexión propia, que vuelve al pool al cerrarla
+     * @throws SQLTimeoutException si no queda un préstamo libre dentro del timeout
      * @throws SQLException si ocurre un error al obtener la conexión
      */
     public Connection getConnection() throws SQLException {
-        if (connection == null || connection.isClosed()) {
-            connection = dataSource.getConnection();
+        long inicio = System.nanoTime();
+        try {
+            if (!permisos.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS)) {
+                timeouts.increment();
+                throw new SQLTimeoutException("No hay conexiones libres tras "
+                        + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + " ms (máximo " + maximo + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrumpido mientras se esperaba una conexión", e);
+        }
+        
+        Connection fisica;
+        try {
+            fisica = dataSource.getConnection();
+        } catch (SQLException | RuntimeException e) {
+            permisos.release();
+            throw e;
         }
-        return connection;
+        registrarLatencia(System.nanoTime() - inicio);
+        prestamos.increment();
+        
+        long id = siguientePrestamo.incrementAndGet();
+        prestamosActivos.put(id, new Prestamo(Thread.currentThread().getName(), System.nanoTime(),
+                new Exception("Conexión prestada aquí"), new AtomicBoolean()));
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConexionPrestada(fisica, id));
+    }
+    
+    private void registrarLatencia(long nanos) {
+        latenciaTotalNanos.add(nanos);
+        latenciaMaximaNanos.accumulateAndGet(nanos, Math::max);
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        int tramo = 0;
+        while (tramo < TRAMOS_LATENCIA_MICROS.length && micros > TRAMOS_LATENCIA_MICROS[tramo]) {
+            tramo++;
+        }
+        histogramaLatencia[tramo].increment();
     }
     
     /**
-     * Cierra la conexión a la base de datos de forma segura
-     * Implementa manejo de recursos con try-catch
+     * Devuelve el préstamo: se llama una sola vez, al cerrar la conexión prestada
      */
-    public void closeConnection() {
-        if (connection != null) {
-            try {
-                if (!connection.isClosed()) {
-                    connection.close();
-                }
-            } catch (SQLException e) {
-                // Log del error - en un entorno real usaríamos un logger
-                System.err.println("Error al cerrar la conexión: " + e.getMessage());
+    private void devolver(long id) {
+        if (prestamosActivos.remove(id) != null) {
+            permisos.release();
+        }
+    }
+    
+    /**
+     * Avisa (una vez por préstamo) de las conexiones que llevan más del umbral sin devolverse
+     */
+    private void detectarFugas() {
+        long ahora = System.nanoTime();
+        prestamosActivos.values().forEach(prestamo -> {
+            if (ahora - prestamo.inicioNanos() > umbralFugaNanos && prestamo.avisado().compareAndSet(false, true)) {
+                fugasDetectadas.increment();
+                System.err.println("Posible fuga: conexión prestada a '" + prestamo.hilo() + "' hace "
+                        + TimeUnit.NANOSECONDS.toMillis(ahora - prestamo.inicioNanos()) + " ms sin cerrarse");
+                prestamo.origen().printStackTrace();
             }
+        });
+    }
+    
+    /**
+     * Obtiene las métricas de los préstamos de conexiones
+     *
+     * @return préstamos activos, libres y en espera, y la distribución de la latencia de préstamo
+     */
+    public EstadisticasConexiones obtenerEstadisticas() {
+        Map<String, Long> histograma = new LinkedHashMap<>();
+        for (int i = 0; i < TRAMOS_LATENCIA_MICROS.length; i++) {
+            histograma.put("<=" + formatearMicros(TRAMOS_LATENCIA_MICROS[i]), histogramaLatencia[i].sum());
+        }
+        histograma.put(">" + formatearMicros(TRAMOS_LATENCIA_MICROS[TRAMOS_LATENCIA_MICROS.length - 1]),
+                histogramaLatencia[TRAMOS_LATENCIA_MICROS.length].sum());
+        
+        long total = prestamos.sum();
+        return new EstadisticasConexiones(maximo, prestamosActivos.size(), permisos.availablePermits(),
+                permisos.getQueueLength(), total, timeouts.sum(), fugasDetectadas.sum(),
+                total == 0 ? 0.0 : latenciaTotalNanos.sum() / (double) total / 1_000_000,
+                latenciaMaximaNanos.get() / 1_000_000.0, histograma);
+    }
+    
+    private static String formatearMicros(long micros) {
+        if (micros >= 1_000_000) {
+            return micros / 1_000_000 + "s";
         }
+        return micros >= 1_000 ? micros / 1_000 + "ms" : micros + "us";
     }
     
     /**
-     * Verifica si la conexión está activa
-     * 
-     * @return true si la conexión está activa, false en caso contrario
+     * Detiene el detector de fugas
+     * Las conexiones que sigan prestadas las cierran sus dueños
      */
-    public boolean isConnectionActive() {
-        try {
-            return connection != null && !connection.isClosed();
-        } catch (SQLException e) {
-            return false;
+    @PreDestroy
+    public void cerrar() {
+        if (detectorFugas != null) {
+            detectorFugas.shutdownNow();
+        }
+    }
+    
+    /**
+     * Datos de un préstamo en curso para la detección de fugas
+     */
+    private record Prestamo(String hilo, long inicioNanos, Exception origen, AtomicBoolean avisado) {}
+    
+    /**
+     * Conexión prestada: delega en la conexión del pool y, al cerrarse, la devuelve y libera el préstamo
+     * Cerrarla varias veces no tiene efecto; usarla después de cerrarla falla
+     */
+    private final class ConexionPrestada implements InvocationHandler {
+        private final Connection fisica;
+        private final long id;
+        private final AtomicBoolean cerrada = new AtomicBoolean();
+        
+        private ConexionPrestada(Connection fisica, long id) {
+            this.fisica = fisica;
+            this.id = id;
+        }
+        
+        @Override
+        public Object invoke(Object proxy, Method metodo, Object[] argumentos) throws Throwable {
+            switch (metodo.getName()) {
+                case "close" -> {
+                    if (cerrada.compareAndSet(false, true)) {
+                        try {
+                            fisica.close();
+                        } finally {
+                            devolver(id);
+                        }
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return cerrada.get() || fisica.isClosed();
+                }
+                case "equals" -> {
+                    return proxy == argumentos[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "Conexión prestada #" + id + (cerrada.get() ? " (cerrada)" : "");
+                }
+                default -> {
+                    if (cerrada.get()) {
+                        throw new SQLException("La conexión prestada #" + id + " ya está cerrada");
+                    }
+                }
+            }
+            
+            try {
+                return metodo.invoke(fisica, argumentos);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
         }
     }
-}
\ No newline at end of file
+    
+    /**
+     * Métricas de los préstamos de conexiones
+     * @param maximo préstamos simultáneos permitidos
+     * @param activas conexiones prestadas ahora mismo
+     * @param libres préstamos que aún pueden concederse sin esperar
+     * @param enEspera hilos esperando un préstamo
+     * @param prestamos préstamos concedidos desde el arranque
+     * @param timeouts peticiones que agotaron el timeout sin conexión
+     * @param fugasDetectadas préstamos que superaron el umbral de fuga
+     * @param latenciaMediaMs tiempo medio hasta obtener la conexión
+     * @param latenciaMaximaMs tiempo máximo hasta obtener la conexión
+     * @param histogramaLatencia préstamos por tramo de latencia
+     */
+    public record EstadisticasConexiones(int maximo,
+                                         int activas,
+                                         int libres,
+                                         int enEspera,
+                                         long prestamos,
+                                         long timeouts,
+                                         long fugasDetectadas,
+                                         double latenciaMediaMs,
+                                         double latenciaMaximaMs,
+                                         Map<String, Long> histogramaLatencia) {}
+}
@@ -15,6 +15,7 @@ import com.biblioteca.patterns.strategy.impl.SearchByAuthorStrategy;
 import com.biblioteca.patterns.strategy.impl.SearchByTitleStrategy;
 import com.biblioteca.service.BibliotecaService;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
@@ -24,6 +25,7 @@ import java.util.List;
  * Se ejecuta automáticamente al iniciar la aplicación
  */
 @Component
+@ConditionalOnProperty(name = "biblioteca.demostracion.activa", havingValue = "true", matchIfMissing = true)
 public class DemostracionPatrones implements CommandLineRunner {
     
     private final BibliotecaService bibliotecaService;
@@ -1,23 +1,45 @@
 package com.biblioteca.controller;
 
+import com.biblioteca.config.DataSourceEnrutado;
+import com.biblioteca.config.DatabaseConnection;
+import com.biblioteca.exception.ConflictoEstadoException;
 import com.biblioteca.exception.LibroNoEncontradoException;
 import com.biblioteca.exception.OperacionInvalidaException;
 import com.biblioteca.exception.ValidationException;
+import com.biblioteca.index.FiltroBloomDuplicados;
+import com.biblioteca.index.IndiceAutores;
 import com.biblioteca.model.builders.LibroBuilder;
+import com.biblioteca.model.dto.LibroResumen;
 import com.biblioteca.model.entities.Libro;
+import com.biblioteca.model.enums.EstadoLibro;
 import com.biblioteca.model.enums.FormatoLibro;
 import com.biblioteca.model.enums.TipoLibro;
+import com.biblioteca.patterns.strategy.impl.CompositeSearchStrategy;
 import com.biblioteca.patterns.strategy.impl.SearchByAuthorStrategy;
 import com.biblioteca.patterns.strategy.impl.SearchByTitleStrategy;
 import com.biblioteca.patterns.strategy.impl.SearchByTypeStrategy;
+import com.biblioteca.patterns.strategy.impl.SearchFuzzyStrategy;
+import com.biblioteca.patterns.strategy.SearchStrategy;
 import com.biblioteca.service.BibliotecaService;
+import com.biblioteca.service.CacheBusquedas;
+import com.biblioteca.service.DespachadorObservadores;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import jakarta.validation.Valid;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
 
 /**
  * Controlador REST para la gestión de libros
@@ -28,49 +50,88 @@ import java.util.Map;
 @CrossOrigin(origins = "*")
 public class LibroController {
     
+    private static final String TAMANO_PAGINA_POR_DEFECTO = "50";
+    private static final String APPLICATION_NDJSON = "application/x-ndjson";
+    
     private final BibliotecaService bibliotecaService;
     private final SearchByTitleStrategy searchByTitleStrategy;
     private final SearchByAuthorStrategy searchByAuthorStrategy;
     private final SearchByTypeStrategy searchByTypeStrategy;
+    private final SearchFuzzyStrategy searchFuzzyStrategy;
+    private final CompositeSearchStrategy compositeSearchStrategy;
+    private final IndiceAutores indiceAutores;
+    private final ObjectMapper objectMapper;
+    private final DataSourceEnrutado dataSourceEnrutado;
+    private final DatabaseConnection databaseConnection;
     
     public LibroController(BibliotecaService bibliotecaService,
                           SearchByTitleStrategy searchByTitleStrategy,
                           SearchByAuthorStrategy searchByAuthorStrategy,
-                          SearchByTypeStrategy searchByTypeStrategy) {
+                          SearchByTypeStrategy searchByTypeStrategy,
+                          SearchFuzzyStrategy searchFuzzyStrategy,
+                          CompositeSearchStrategy compositeSearchStrategy,
+                          IndiceAutores indiceAutores,
+                          ObjectMapper objectMapper,
+                          DataSourceEnrutado dataSourceEnrutado,
+                          DatabaseConnection databaseConnection) {
         this.bibliotecaService = bibliotecaService;
         this.searchByTitleStrategy = searchByTitleStrategy;
         this.searchByAuthorStrategy = searchByAuthorStrategy;
         this.searchByTypeStrategy = searchByTypeStrategy;
+        this.searchFuzzyStrategy = searchFuzzyStrategy;
+        this.compositeSearchStrategy = compositeSearchStrategy;
+        this.indiceAutores = indiceAutores;
+        this.objectMapper = objectMapper;
+        this.dataSourceEnrutado = dataSourceEnrutado;
+        this.databaseConnection = databaseConnection;
+    }
+    
+    /**
+     * Lista todos los libros, paginados por keyset
+     * GET /api/libros?despuesDe={cursor}&tamano={tamano}
+     */
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BibliotecaService.Pagina<LibroResumen>> listarTodosLosLibros(
+            @RequestParam(required = false) Long despuesDe,
+            @RequestParam(defaultValue = TAMANO_PAGINA_POR_DEFECTO) int tamano,
+            @RequestParam(defaultValue = "false") boolean detalle) {
+        BibliotecaService.Pagina<LibroResumen> pagina = bibliotecaService.listarTodosLosLibros(despuesDe, tamano);
+        return ResponseEntity.ok(conDetalle(pagina, detalle));
     }
     
     /**
-     * Lista todos los libros
-     * GET /api/libros
+     * Exporta todo el catálogo como NDJSON (un resumen por línea), escribiendo cada fila según se lee
+     * GET /api/libros con Accept: application/x-ndjson
      */
-    @GetMapping
-    public ResponseEntity<List<Libro>> listarTodosLosLibros() {
-        List<Libro> libros = bibliotecaService.listarTodosLosLibros();
-        return ResponseEntity.ok(libros);
+    @GetMapping(produces = APPLICATION_NDJSON)
+    public ResponseEntity<StreamingResponseBody> exportarLibros() {
+        return ndjson(bibliotecaService::recorrerLibros);
     }
     
     /**
-     * Lista solo libros disponibles
-     * GET /api/libros/disponibles
+     * Lista solo libros disponibles, paginados por keyset
+     * GET /api/libros/disponibles?despuesDe={cursor}&tamano={tamano}
      */
     @GetMapping("/disponibles")
-    public ResponseEntity<List<Libro>> listarLibrosDisponibles() {
-        List<Libro> libros = bibliotecaService.listarLibrosDisponibles();
-        return ResponseEntity.ok(libros);
+    public ResponseEntity<BibliotecaService.Pagina<LibroResumen>> listarLibrosDisponibles(
+            @RequestParam(required = false) Long despuesDe,
+            @RequestParam(defaultValue = TAMANO_PAGINA_POR_DEFECTO) int tamano,
+            @RequestParam(defaultValue = "false") boolean detalle) {
+        BibliotecaService.Pagina<LibroResumen> pagina = bibliotecaService.listarLibrosDisponibles(despuesDe, tamano);
+        return ResponseEntity.ok(conDetalle(pagina, detalle));
     }
     
     /**
-     * Lista solo libros prestados
-     * GET /api/libros/prestados
+     * Lista solo libros prestados, paginados por keyset
+     * GET /api/libros/prestados?despuesDe={cursor}&tamano={tamano}
      */
     @GetMapping("/prestados")
-    public ResponseEntity<List<Libro>> listarLibrosPrestados() {
-        List<Libro> libros = bibliotecaService.listarLibrosPrestados();
-        return ResponseEntity.ok(libros);
+    public ResponseEntity<BibliotecaService.Pagina<LibroResumen>> listarLibrosPrestados(
+            @RequestParam(required = false) Long despuesDe,
+            @RequestParam(defaultValue = TAMANO_PAGINA_POR_DEFECTO) int tamano,
+            @RequestParam(defaultValue = "false") boolean detalle) {
+        BibliotecaService.Pagina<LibroResumen> pagina = bibliotecaService.listarLibrosPrestados(despuesDe, tamano);
+        return ResponseEntity.ok(conDetalle(pagina, detalle));
     }
     
     /**
@@ -115,33 +176,255 @@ public class LibroController {
     }
     
     /**
-     * Busca libros por título
-     * GET /api/libros/buscar/titulo?q={criterio}
+     * Agrega una lista de libros usando el Builder pattern, persistidos en transacciones por lotes
+     * Responde con un resultado por libro (CREADO, INVALIDO, DUPLICADO o ERROR) en el mismo orden
+     * POST /api/libros/lote
+     */
+    @PostMapping("/lote")
+    public ResponseEntity<List<BibliotecaService.ResultadoLote>> agregarLibros(@RequestBody List<LibroRequest> requests) {
+        List<Supplier<Libro>> libros = requests.stream()
+                .<Supplier<Libro>>map(request -> () -> LibroBuilder.nuevo()
+                        .conTitulo(request.getTitulo())
+                        .conAutor(request.getAutor())
+                        .deTipo(request.getTipo())
+                        .enFormato(request.getFormato())
+                        .construir())
+                .toList();
+        
+        List<BibliotecaService.ResultadoLote> resultados = bibliotecaService.agregarLibros(libros);
+        return ResponseEntity.ok(resultados);
+    }
+    
+    /**
+     * Busca libros por título, paginado por keyset
+     * GET /api/libros/buscar/titulo?q={criterio}&despuesDe={cursor}&tamano={tamano}
+     */
+    @GetMapping(value = "/buscar/titulo", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BibliotecaService.Pagina<LibroResumen>> buscarPorTitulo(
+            @RequestParam String q,
+            @RequestParam(required = false) Long despuesDe,
+            @RequestParam(defaultValue = TAMANO_PAGINA_POR_DEFECTO) int tamano,
+            @RequestParam(defaultValue = "false") boolean detalle) {
+        BibliotecaService.Pagina<LibroResumen> pagina = bibliotecaService.buscarLibros(searchByTitleStrategy, q, despuesDe, tamano);
+        return ResponseEntity.ok(conDetalle(pagina, detalle));
+    }
+    
+    /**
+     * Busca libros por autor, paginado por keyset
+     * GET /api/libros/buscar/autor?q={criterio}&despuesDe={cursor}&tamano={tamano}
+     */
+    @GetMapping(value = "/buscar/autor", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BibliotecaService.Pagina<LibroResumen>> buscarPorAutor(
+            @RequestParam String q,
+            @RequestParam(required = false) Long despuesDe,
+            @RequestParam(defaultValue = TAMANO_PAGINA_POR_DEFECTO) int tamano,
+            @RequestParam(defaultValue = "false") boolean detalle) {
+        BibliotecaService.Pagina<LibroResumen> pagina = bibliotecaService.buscarLibros(searchByAuthorStrategy, q, despuesDe, tamano);
+        return ResponseEntity.ok(conDetalle(pagina, detalle));
+    }
+    
+    /**
+     * Busca libros por tipo, paginado por keyset
+     * GET /api/libros/buscar/tipo?q={criterio}&despuesDe={cursor}&tamano={tamano}
+     */
+    @GetMapping(value = "/buscar/tipo", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BibliotecaService.Pagina<LibroResumen>> buscarPorTipo(
+            @RequestParam String q,
+            @RequestParam(required = false) Long despuesDe,
+            @RequestParam(defaultValue = TAMANO_PAGINA_POR_DEFECTO) int tamano,
+            @RequestParam(defaultValue = "false") boolean detalle) {
+        BibliotecaService.Pagina<LibroResumen> pagina = bibliotecaService.buscarLibros(searchByTypeStrategy, q, despuesDe, tamano);
+        return ResponseEntity.ok(conDetalle(pagina, detalle));
+    }
+    
+    /**
+     * Variante NDJSON de las búsquedas por título, autor, tipo y aproximada, sin paginar
+     * GET /api/libros/buscar/{tipoBusqueda}?q={criterio} con Accept: application/x-ndjson
+     */
+    @GetMapping(value = "/buscar/{tipoBusqueda}", produces = APPLICATION_NDJSON)
+    public ResponseEntity<StreamingResponseBody> exportarBusqueda(@PathVariable String tipoBusqueda,
+                                                                  @RequestParam String q) {
+        SearchStrategy estrategia = switch (tipoBusqueda) {
+            case "titulo" -> searchByTitleStrategy;
+            case "autor" -> searchByAuthorStrategy;
+            case "tipo" -> searchByTypeStrategy;
+            case "aproximada" -> searchFuzzyStrategy;
+            default -> null;
+        };
+        if (estrategia == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ndjson(consumidor -> bibliotecaService.recorrerBusqueda(estrategia, q, consumidor));
+    }
+    
+    /**
+     * Busca los libros más relevantes para un texto libre (BM25 sobre título y autor)
+     * GET /api/libros/buscar/relevancia?q={criterio}&limite={limite}
+     */
+    @GetMapping("/buscar/relevancia")
+    public ResponseEntity<List<BibliotecaService.ResultadoRelevancia>> buscarPorRelevancia(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "10") int limite) {
+        List<BibliotecaService.ResultadoRelevancia> resultados = bibliotecaService.buscarPorRelevancia(q, limite);
+        return ResponseEntity.ok(resultados);
+    }
+    
+    /**
+     * Busca libros por título y autor tolerando errores tipográficos, paginado por keyset
+     * GET /api/libros/buscar/aproximada?q={criterio}&despuesDe={cursor}&tamano={tamano}
+     */
+    @GetMapping(value = "/buscar/aproximada", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BibliotecaService.Pagina<LibroResumen>> buscarAproximada(
+            @RequestParam String q,
+            @RequestParam(required = false) Long despuesDe,
+            @RequestParam(defaultValue = TAMANO_PAGINA_POR_DEFECTO) int tamano,
+            @RequestParam(defaultValue = "false") boolean detalle) {
+        BibliotecaService.Pagina<LibroResumen> pagina = bibliotecaService.buscarLibros(searchFuzzyStrategy, q, despuesDe, tamano);
+        return ResponseEntity.ok(conDetalle(pagina, detalle));
+    }
+    
+    /**
+     * Busca libros que cumplen a la vez varios criterios, paginado por keyset
+     * Los predicados se evalúan en orden de coste y selectividad observada
+     * GET /api/libros/buscar/combinada?titulo={t}&autor={a}&tipo={tipo}&estado={estado}&aproximada={texto}
      */
-    @GetMapping("/buscar/titulo")
-    public ResponseEntity<List<Libro>> buscarPorTitulo(@RequestParam String q) {
-        List<Libro> libros = bibliotecaService.buscarLibros(searchByTitleStrategy, q);
-        return ResponseEntity.ok(libros);
+    @GetMapping(value = "/buscar/combinada", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BibliotecaService.Pagina<LibroResumen>> buscarCombinada(
+            @RequestParam(required = false) String titulo,
+            @RequestParam(required = false) String autor,
+            @RequestParam(required = false) String tipo,
+            @RequestParam(required = false) String estado,
+            @RequestParam(required = false) String aproximada,
+            @RequestParam(required = false) Long despuesDe,
+            @RequestParam(defaultValue = TAMANO_PAGINA_POR_DEFECTO) int tamano,
+            @RequestParam(defaultValue = "false") boolean detalle) {
+        Map<String, String> criterios = new LinkedHashMap<>();
+        criterios.put(CompositeSearchStrategy.TITULO, titulo);
+        criterios.put(CompositeSearchStrategy.AUTOR, autor);
+        criterios.put(CompositeSearchStrategy.TIPO, tipo);
+        criterios.put(CompositeSearchStrategy.ESTADO, estado);
+        criterios.put(CompositeSearchStrategy.APROXIMADA, aproximada);
+        
+        String criterio = CompositeSearchStrategy.componerCriterio(criterios);
+        BibliotecaService.Pagina<LibroResumen> pagina = bibliotecaService.buscarLibros(compositeSearchStrategy, criterio, despuesDe, tamano);
+        return ResponseEntity.ok(conDetalle(pagina, detalle));
+    }
+    
+    /**
+     * Obtiene la selectividad observada de cada predicado de la búsqueda combinada
+     * GET /api/libros/buscar/combinada/estadisticas
+     */
+    @GetMapping("/buscar/combinada/estadisticas")
+    public ResponseEntity<List<CompositeSearchStrategy.EstadisticaPredicado>> obtenerEstadisticasCombinada() {
+        return ResponseEntity.ok(compositeSearchStrategy.obtenerEstadisticas());
+    }
+    
+    /**
+     * Obtiene los contadores de la caché de resultados de búsqueda
+     * GET /api/libros/buscar/cache/estadisticas
+     */
+    @GetMapping("/buscar/cache/estadisticas")
+    public ResponseEntity<CacheBusquedas.EstadisticasCache> obtenerEstadisticasCache() {
+        return ResponseEntity.ok(bibliotecaService.obtenerEstadisticasCache());
     }
     
     /**
-     * Busca libros por autor
-     * GET /api/libros/buscar/autor?q={criterio}
+     * Obtiene las métricas del filtro de Bloom que evita consultas de duplicados
+     * GET /api/libros/duplicados/estadisticas
      */
-    @GetMapping("/buscar/autor")
-    public ResponseEntity<List<Libro>> buscarPorAutor(@RequestParam String q) {
-        List<Libro> libros = bibliotecaService.buscarLibros(searchByAuthorStrategy, q);
-        return ResponseEntity.ok(libros);
+    @GetMapping("/duplicados/estadisticas")
+    public ResponseEntity<FiltroBloomDuplicados.EstadisticasFiltro> obtenerEstadisticasDuplicados() {
+        return ResponseEntity.ok(bibliotecaService.obtenerEstadisticasDuplicados());
     }
     
     /**
-     * Busca libros por tipo
-     * GET /api/libros/buscar/tipo?q={criterio}
+     * Obtiene las estadísticas por región de la caché de segundo nivel de Hibernate
+     * GET /api/libros/cache/entidades/estadisticas
      */
-    @GetMapping("/buscar/tipo")
-    public ResponseEntity<List<Libro>> buscarPorTipo(@RequestParam String q) {
-        List<Libro> libros = bibliotecaService.buscarLibros(searchByTypeStrategy, q);
-        return ResponseEntity.ok(libros);
+    @GetMapping("/cache/entidades/estadisticas")
+    public ResponseEntity<List<BibliotecaService.EstadisticaRegionCache>> obtenerEstadisticasCacheEntidades() {
+        return ResponseEntity.ok(bibliotecaService.obtenerEstadisticasCacheEntidades());
+    }
+    
+    /**
+     * Obtiene cuántas conexiones han servido la primaria y cada réplica de lectura
+     * GET /api/libros/datasource/estadisticas
+     */
+    @GetMapping("/datasource/estadisticas")
+    public ResponseEntity<DataSourceEnrutado.EstadisticasEnrutamiento> obtenerEstadisticasDataSource() {
+        return ResponseEntity.ok(dataSourceEnrutado.obtenerEstadisticas());
+    }
+    
+    /**
+     * Obtiene las métricas de préstamo de conexiones de DatabaseConnection
+     * GET /api/libros/conexiones/estadisticas
+     */
+    @GetMapping("/conexiones/estadisticas")
+    public ResponseEntity<DatabaseConnection.EstadisticasConexiones> obtenerEstadisticasConexiones() {
+        return ResponseEntity.ok(databaseConnection.obtenerEstadisticas());
+    }
+    
+    /**
+     * Obtiene la profundidad, el retraso y los contadores de las colas de los observadores asíncronos
+     * GET /api/libros/observadores/estadisticas
+     */
+    @GetMapping("/observadores/estadisticas")
+    public ResponseEntity<DespachadorObservadores.EstadisticasDespachador> obtenerEstadisticasObservadores() {
+        return ResponseEntity.ok(bibliotecaService.obtenerEstadisticasObservadores());
+    }
+    
+    /**
+     * Busca libros por prefijo de título y/o autor (sin acentos ni mayúsculas), paginado por keyset
+     * GET /api/libros/buscar/prefijo?titulo={prefijo}&autor={prefijo}&despuesDe={cursor}&tamano={tamano}
+     */
+    @GetMapping("/buscar/prefijo")
+    public ResponseEntity<BibliotecaService.Pagina<LibroResumen>> buscarPorPrefijo(
+            @RequestParam(required = false) String titulo,
+            @RequestParam(required = false) String autor,
+            @RequestParam(required = false) Long despuesDe,
+            @RequestParam(defaultValue = TAMANO_PAGINA_POR_DEFECTO) int tamano,
+            @RequestParam(defaultValue = "false") boolean detalle) {
+        BibliotecaService.Pagina<LibroResumen> pagina = bibliotecaService.buscarPorPrefijo(titulo, autor, despuesDe, tamano);
+        return ResponseEntity.ok(conDetalle(pagina, detalle));
+    }
+    
+    /**
+     * Filtra libros por tipo, formato y estado (cada parámetro admite varios valores), paginado por keyset
+     * GET /api/libros/filtrar?tipo={tipo}&formato={formato}&estado={estado}&despuesDe={cursor}&tamano={tamano}
+     */
+    @GetMapping(value = "/filtrar", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BibliotecaService.Pagina<LibroResumen>> filtrarLibros(
+            @RequestParam(required = false) List<TipoLibro> tipo,
+            @RequestParam(required = false) List<FormatoLibro> formato,
+            @RequestParam(required = false) List<EstadoLibro> estado,
+            @RequestParam(required = false) Long despuesDe,
+            @RequestParam(defaultValue = TAMANO_PAGINA_POR_DEFECTO) int tamano,
+            @RequestParam(defaultValue = "false") boolean detalle) {
+        BibliotecaService.Pagina<LibroResumen> pagina = bibliotecaService.filtrarLibros(tipo, formato, estado, despuesDe, tamano);
+        return ResponseEntity.ok(conDetalle(pagina, detalle));
+    }
+    
+    /**
+     * Variante NDJSON del filtro por tipo, formato y estado, sin paginar
+     * GET /api/libros/filtrar?tipo={tipo}&formato={formato}&estado={estado} con Accept: application/x-ndjson
+     */
+    @GetMapping(value = "/filtrar", produces = APPLICATION_NDJSON)
+    public ResponseEntity<StreamingResponseBody> exportarFiltro(
+            @RequestParam(required = false) List<TipoLibro> tipo,
+            @RequestParam(required = false) List<FormatoLibro> formato,
+            @RequestParam(required = false) List<EstadoLibro> estado) {
+        return ndjson(consumidor -> bibliotecaService.recorrerFiltro(tipo, formato, estado, consumidor));
+    }
+    
+    /**
+     * Sugiere autores que empiezan por un prefijo (autocompletado)
+     * GET /api/libros/sugerencias/autor?prefijo={prefijo}&limite={limite}
+     */
+    @GetMapping("/sugerencias/autor")
+    public ResponseEntity<List<String>> sugerirAutores(@RequestParam String prefijo,
+                                                       @RequestParam(defaultValue = "10") int limite) {
+        List<String> autores = indiceAutores.sugerir(prefijo, limite);
+        return ResponseEntity.ok(autores);
     }
     
     /**
@@ -155,6 +438,9 @@ public class LibroController {
             return ResponseEntity.ok(libro);
         } catch (LibroNoEncontradoException e) {
             return ResponseEntity.notFound().build();
+        } catch (ConflictoEstadoException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", e.getMessage()));
         } catch (OperacionInvalidaException e) {
             return ResponseEntity.badRequest()
                     .body(Map.of("error", e.getMessage()));
@@ -172,12 +458,33 @@ public class LibroController {
             return ResponseEntity.ok(libro);
         } catch (LibroNoEncontradoException e) {
             return ResponseEntity.notFound().build();
+        } catch (ConflictoEstadoException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", e.getMessage()));
         } catch (OperacionInvalidaException e) {
             return ResponseEntity.badRequest()
                     .body(Map.of("error", e.getMessage()));
         }
     }
     
+    /**
+     * Presta varios libros con una transacción por shard; un shard que falla devuelve sus IDs como ERROR
+     * POST /api/libros/prestamos/lote con una lista de IDs
+     */
+    @PostMapping("/prestamos/lote")
+    public ResponseEntity<List<BibliotecaService.ResultadoTransicion>> prestarLibros(@RequestBody List<Long> ids) {
+        return ResponseEntity.ok(bibliotecaService.prestarLibros(ids));
+    }
+    
+    /**
+     * Devuelve varios libros con una transacción por shard; un shard que falla devuelve sus IDs como ERROR
+     * POST /api/libros/devoluciones/lote con una lista de IDs
+     */
+    @PostMapping("/devoluciones/lote")
+    public ResponseEntity<List<BibliotecaService.ResultadoTransicion>> devolverLibros(@RequestBody List<Long> ids) {
+        return ResponseEntity.ok(bibliotecaService.devolverLibros(ids));
+    }
+    
     /**
      * Elimina un libro
      * DELETE /api/libros/{id}
@@ -205,6 +512,35 @@ public class LibroController {
         return ResponseEntity.ok(estadisticas);
     }
     
+    /**
+     * Los listados devuelven resúmenes sin campos calculados; con detalle=true se añaden
+     * informacion y disponible
+     */
+    private static BibliotecaService.Pagina<LibroResumen> conDetalle(BibliotecaService.Pagina<LibroResumen> pagina,
+                                                                     boolean detalle) {
+        return detalle ? pagina.map(LibroResumen::conDetalle) : pagina;
+    }
+    
+    /**
+     * Respuesta NDJSON: el recorrido se ejecuta al escribir el cuerpo y cada resumen
+     * se serializa directamente a la salida, sin acumular la lista en memoria
+     */
+    private ResponseEntity<StreamingResponseBody> ndjson(ToLongFunction<Consumer<LibroResumen>> recorrido) {
+        StreamingResponseBody cuerpo = salida -> recorrido.applyAsLong(resumen -> escribirLinea(salida, resumen));
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(APPLICATION_NDJSON))
+                .body(cuerpo);
+    }
+    
+    private void escribirLinea(OutputStream salida, LibroResumen resumen) {
+        try {
+            salida.write(objectMapper.writeValueAsBytes(resumen));
+            salida.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
     /**
      * Clase interna para encapsular requests de creación de libros
      */
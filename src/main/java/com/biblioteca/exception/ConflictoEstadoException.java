@@ -0,0 +1,16 @@
+package com.biblioteca.exception;
+
+/**
+ * Excepción lanzada cuando un libro no está en el estado que requiere la operación
+ * (por ejemplo, prestar un libro que otra petición acaba de prestar)
+ */
+public class ConflictoEstadoException extends OperacionInvalidaException {
+    
+    public ConflictoEstadoException(String mensaje) {
+        super(mensaje);
+    }
+    
+    public ConflictoEstadoException(String mensaje, Throwable causa) {
+        super(mensaje, causa);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,304 @@
+package com.biblioteca.index;
+
+import com.biblioteca.model.entities.Libro;
+import com.biblioteca.patterns.observer.LibroObserver;
+import com.biblioteca.repository.RouterShards;
+import com.biblioteca.util.OrdenCambios;
+import com.biblioteca.util.Transacciones;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Clase base abstracta para los índices en memoria del catálogo
+ * Se carga una única vez al iniciar, junto con el resto de índices en un solo recorrido
+ * de la tabla, y luego se mantiene actualizada como Observer del servicio (ver RegistroIndices)
+ * Los cambios notificados se aplican tras el commit (una transacción revertida no deja rastro en el
+ * índice) y sin esperar a las demás transacciones: cada índice recuerda el último cambio aplicado de
+ * cada libro (OrdenCambios) y descarta los que llegan por detrás de uno posterior. Si no se sabe si
+ * la transacción se confirmó, los libros se releen de la base de datos; si aplicar un cambio falla,
+ * el índice se reconstruye entero
+ */
+public abstract class BaseIndiceLibros implements LibroObserver {
+
+    private static final Logger log = LoggerFactory.getLogger(BaseIndiceLibros.class);
+
+    /** Libros cuyo último cambio aplicado se recuerda; un cambio atrasado llega mucho antes de que se olvide */
+    private static final int LIBROS_RETENIDOS = 10_000;
+
+    protected final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Protegidos por el lock de escritura; pendientes solo existe mientras se reconstruye
+    private final OrdenCambios ordenes = new OrdenCambios(LIBROS_RETENIDOS);
+    private Map<Long, Libro> pendientes;
+
+    private final AtomicBoolean reconstruccionSolicitada = new AtomicBoolean();
+    private volatile RegistroIndices registro;
+
+    /**
+     * Indexa un lote de la carga inicial con una sola adquisición del lock de escritura
+     * @param lote libros leídos de la base de datos
+     */
+    void cargarLote(List<Libro> lote) {
+        lock.writeLock().lock();
+        try {
+            lote.forEach(this::indexar);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Se llama una vez terminada la carga inicial, antes de registrar el índice como observador
+     * Por defecto no hace nada; los índices que se dimensionan según el catálogo usan el total cargado
+     * @param libros número de libros cargados
+     */
+    void cargaCompletada(long libros) {
+        // Sin cambios por defecto
+    }
+
+    /**
+     * Conecta el índice con el registro que relee libros y lo reconstruye cuando hace falta
+     * @param registro registro de índices
+     */
+    void conectar(RegistroIndices registro) {
+        this.registro = registro;
+    }
+
+    @Override
+    public void onLibroAgregado(Libro libro) {
+        aplicarAlConfirmar(List.of(libro), false, this::indexar);
+    }
+
+    /**
+     * Indexa todo el alta masiva con una sola adquisición del lock de escritura
+     */
+    @Override
+    public void onLibrosAgregados(List<Libro> libros) {
+        aplicarAlConfirmar(libros, false, this::indexar);
+    }
+
+    @Override
+    public void onLibroEliminado(Libro libro) {
+        aplicarAlConfirmar(List.of(libro), true, this::desindexar);
+    }
+
+    @Override
+    public void onLibroEstadoCambiado(Libro libro, String estadoAnterior, String estadoNuevo) {
+        aplicarAlConfirmar(List.of(libro), false, cambiado -> actualizarEstado(cambiado, estadoAnterior, estadoNuevo));
+    }
+
+    /**
+     * Aplica todo el lote con una sola adquisición del lock de escritura
+     */
+    @Override
+    public void onLibrosEstadoCambiado(List<Libro> libros, String estadoAnterior, String estadoNuevo) {
+        aplicarAlConfirmar(libros, false, cambiado -> actualizarEstado(cambiado, estadoAnterior, estadoNuevo));
+    }
+
+    /**
+     * Los índices resuelven las búsquedas y la comprobación de duplicados: se notifican dentro de
+     * la transacción y el cambio se aplica en cuanto se confirma
+     */
+    @Override
+    public boolean admiteNotificacionAsincrona() {
+        return false;
+    }
+
+    /**
+     * Aplica el cambio tras el commit a los libros de los que no se haya aplicado ya uno igual o posterior
+     * El orden de cada cambio se fija ahora, con la versión escrita: la entidad puede cambiar antes del commit
+     */
+    private void aplicarAlConfirmar(List<Libro> libros, boolean eliminado, Consumer<Libro> cambio) {
+        List<Libro> copia = List.copyOf(libros);
+        long[] orden = copia.stream().mapToLong(libro -> OrdenCambios.orden(libro.getVersion(), eliminado)).toArray();
+        Transacciones.alConfirmar(() -> aplicar(copia, orden, cambio), () -> recargar(copia));
+    }
+
+    private void aplicar(List<Libro> libros, long[] orden, Consumer<Libro> cambio) {
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < libros.size(); i++) {
+                Libro libro = libros.get(i);
+                if (libro.getId() == null) {
+                    continue;
+                }
+                if (pendientes != null) {
+                    // Se releerá al terminar la reconstrucción
+                    pendientes.put(libro.getId(), libro);
+                } else if (ordenes.avanzar(libro.getId(), orden[i])) {
+                    cambio.accept(libro);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("No se pudo aplicar un cambio de {} libros en '{}'; se reconstruye el índice",
+                    libros.size(), getNombreObservador(), e);
+            solicitarReconstruccion();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * No se sabe si la transacción se confirmó: el registro relee los libros fuera de ella
+     */
+    private void recargar(List<Libro> libros) {
+        log.warn("No se sabe si se confirmó un cambio de {} libros; '{}' los relee de la base de datos",
+                libros.size(), getNombreObservador());
+        RegistroIndices actual = registro;
+        if (actual != null) {
+            actual.recargar(this, libros);
+        }
+    }
+
+    /**
+     * Pone los libros como están en la base de datos: indexa los leídos, si son al menos tan recientes
+     * como el último cambio aplicado, y quita los que ya no existen
+     * @param notificados libros de la notificación, tal como se notificaron
+     * @param leidos los que siguen existiendo, leídos después de la notificación
+     */
+    void aplicarRecarga(List<Libro> notificados, List<Libro> leidos) {
+        Map<Long, Libro> porId = new HashMap<>();
+        leidos.forEach(libro -> porId.put(libro.getId(), libro));
+        lock.writeLock().lock();
+        try {
+            for (Libro notificado : notificados) {
+                if (notificado.getId() == null) {
+                    continue;
+                }
+                if (pendientes != null) {
+                    pendientes.put(notificado.getId(), notificado);
+                } else {
+                    reponer(notificado, porId.get(notificado.getId()));
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("No se pudieron releer {} libros en '{}'; se reconstruye el índice",
+                    notificados.size(), getNombreObservador(), e);
+            solicitarReconstruccion();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Sustituye lo indexado de un libro por su estado leído, o lo quita si ya no existe (la baja va
+     * después de cualquier versión notificada); se invoca con el lock de escritura tomado
+     */
+    private void reponer(Libro notificado, Libro leido) {
+        if (leido == null) {
+            if (ordenes.avanzar(notificado.getId(), OrdenCambios.orden(notificado.getVersion(), true))) {
+                desindexar(notificado);
+            }
+            return;
+        }
+        long orden = OrdenCambios.orden(leido.getVersion(), false);
+        if (ordenes.vigente(leido.getId(), orden)) {
+            ordenes.avanzar(leido.getId(), orden);
+            desindexar(leido);
+            indexar(leido);
+        }
+    }
+
+    /**
+     * Pide al registro una reconstrucción en segundo plano, salvo que ya haya una solicitada
+     */
+    private void solicitarReconstruccion() {
+        RegistroIndices actual = registro;
+        if (actual != null && reconstruccionSolicitada.compareAndSet(false, true)) {
+            actual.reconstruir(this);
+        }
+    }
+
+    /**
+     * Reconstruye el índice a petición del registro; una reconstrucción que falle después podrá volver a solicitarse
+     */
+    final void ejecutarReconstruccion(RouterShards shards, int tamanoLote) {
+        reconstruccionSolicitada.set(false);
+        reconstruir(shards, tamanoLote);
+    }
+
+    /**
+     * Vacía el índice y lo vuelve a cargar de la base de datos por lotes. Mientras tanto los cambios
+     * notificados no se aplican: se anotan sus libros y, al terminar la carga, se releen y se reponen
+     * con el lock de escritura tomado, así que ningún cambio se pierde ni se aplica sobre un libro
+     * aún sin cargar. Hasta que termina, las búsquedas en el índice pueden omitir libros
+     * @param shards acceso al catálogo
+     * @param tamanoLote libros por lote
+     */
+    void reconstruir(RouterShards shards, int tamanoLote) {
+        lock.writeLock().lock();
+        try {
+            vaciar();
+            pendientes = new LinkedHashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        boolean completada = false;
+        try {
+            long cargados = shards.recorrer(null, tamanoLote, lote -> {
+                cargarLote(lote);
+                return lote.size();
+            });
+            lock.writeLock().lock();
+            try {
+                List<Libro> notificados = List.copyOf(pendientes.values());
+                List<Libro> leidos = notificados.isEmpty() ? List.of()
+                        : shards.findAllById(notificados.stream().map(Libro::getId).toList());
+                pendientes = null;
+                aplicarRecarga(notificados, leidos);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            completada = true;
+            log.info("Índice '{}' reconstruido con {} libros", getNombreObservador(), cargados);
+        } finally {
+            if (!completada) {
+                lock.writeLock().lock();
+                try {
+                    pendientes = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Agrega el libro al índice; se invoca tras el commit con el lock de escritura tomado
+     * @param libro el libro a indexar
+     */
+    protected abstract void indexar(Libro libro);
+
+    /**
+     * Quita el libro del índice; se invoca con el lock de escritura tomado
+     * Si el libro no está indexado no hace nada
+     * @param libro el libro a quitar
+     */
+    protected abstract void desindexar(Libro libro);
+
+    /**
+     * Quita todo el contenido del índice antes de reconstruirlo; se invoca con el lock de escritura tomado
+     */
+    protected abstract void vaciar();
+
+    /**
+     * Actualiza el índice ante un cambio de estado
+     * Por defecto no hace nada, ya que la mayoría de índices no dependen del estado
+     * @param libro el libro que cambió
+     * @param estadoAnterior el estado anterior
+     * @param estadoNuevo el nuevo estado
+     */
+    protected void actualizarEstado(Libro libro, String estadoAnterior, String estadoNuevo) {
+        // Sin cambios por defecto
+    }
+}
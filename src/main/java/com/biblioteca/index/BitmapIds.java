@@ -0,0 +1,115 @@
+package com.biblioteca.index;
+
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.LongStream;
+
+/**
+ * Conjunto de IDs de libros como bitmap por bloques de 2^16 IDs
+ * El ID (long) se divide en bloque (bits altos) y posición dentro del bloque (bits bajos), así que
+ * admite cualquier ID no negativo, no solo los que caben en el int de BitSet, y un rango de IDs sin
+ * libros no ocupa memoria. Los bloques se guardan ordenados, así que los IDs salen en orden ascendente.
+ * No es seguro para varios hilos: lo protege el lock del índice
+ */
+final class BitmapIds {
+
+    private static final int BITS_BLOQUE = 16;
+    private static final long MASCARA_BLOQUE = (1L << BITS_BLOQUE) - 1;
+
+    private final TreeMap<Long, BitSet> bloques = new TreeMap<>();
+
+    void set(long id) {
+        bloques.computeIfAbsent(id >>> BITS_BLOQUE, bloque -> new BitSet()).set(posicion(id));
+    }
+
+    void clear(long id) {
+        BitSet bloque = bloques.get(id >>> BITS_BLOQUE);
+        if (bloque != null) {
+            bloque.clear(posicion(id));
+            if (bloque.isEmpty()) {
+                bloques.remove(id >>> BITS_BLOQUE);
+            }
+        }
+    }
+
+    void clear() {
+        bloques.clear();
+    }
+
+    boolean contiene(long id) {
+        BitSet bloque = bloques.get(id >>> BITS_BLOQUE);
+        return bloque != null && bloque.get(posicion(id));
+    }
+
+    long cardinalidad() {
+        long total = 0;
+        for (BitSet bloque : bloques.values()) {
+            total += bloque.cardinality();
+        }
+        return total;
+    }
+
+    /**
+     * this |= otro
+     */
+    void or(BitmapIds otro) {
+        otro.bloques.forEach((clave, bloque) ->
+                bloques.computeIfAbsent(clave, k -> new BitSet()).or(bloque));
+    }
+
+    /**
+     * this &= otro; solo recorre los bloques de este bitmap
+     */
+    void and(BitmapIds otro) {
+        Iterator<Map.Entry<Long, BitSet>> iterador = bloques.entrySet().iterator();
+        while (iterador.hasNext()) {
+            Map.Entry<Long, BitSet> entrada = iterador.next();
+            BitSet bloqueOtro = otro.bloques.get(entrada.getKey());
+            if (bloqueOtro == null) {
+                iterador.remove();
+                continue;
+            }
+            entrada.getValue().and(bloqueOtro);
+            if (entrada.getValue().isEmpty()) {
+                iterador.remove();
+            }
+        }
+    }
+
+    BitmapIds copia() {
+        BitmapIds copia = new BitmapIds();
+        bloques.forEach((clave, bloque) -> copia.bloques.put(clave, (BitSet) bloque.clone()));
+        return copia;
+    }
+
+    /**
+     * Primer ID del conjunto mayor o igual que desde
+     * @return el ID, o -1 si no hay ninguno
+     */
+    long siguiente(long desde) {
+        long inicio = Math.max(desde, 0);
+        for (Map.Entry<Long, BitSet> entrada : bloques.tailMap(inicio >>> BITS_BLOQUE, true).entrySet()) {
+            int desdePosicion = entrada.getKey() == inicio >>> BITS_BLOQUE ? posicion(inicio) : 0;
+            int encontrada = entrada.getValue().nextSetBit(desdePosicion);
+            if (encontrada >= 0) {
+                return (entrada.getKey() << BITS_BLOQUE) | encontrada;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return los IDs en orden ascendente
+     */
+    LongStream ids() {
+        return bloques.entrySet().stream()
+                .flatMapToLong(entrada -> entrada.getValue().stream()
+                        .mapToLong(posicion -> (entrada.getKey() << BITS_BLOQUE) | posicion));
+    }
+
+    private static int posicion(long id) {
+        return (int) (id & MASCARA_BLOQUE);
+    }
+}
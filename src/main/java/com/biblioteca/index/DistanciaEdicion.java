@@ -0,0 +1,68 @@
+package com.biblioteca.index;
+
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+/**
+ * Utilidades de distancia de edición (Levenshtein) para las búsquedas tolerantes a errores
+ */
+public final class DistanciaEdicion {
+
+    private static final Pattern SEPARADORES = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    /**
+     * Constructor privado: clase de utilidad sin instancias
+     */
+    private DistanciaEdicion() {}
+
+    /**
+     * Calcula la distancia de Levenshtein entre dos textos
+     * @param a primer texto
+     * @param b segundo texto
+     * @return número mínimo de inserciones, borrados y sustituciones
+     */
+    public static int levenshtein(String a, String b) {
+        int[] anterior = new int[b.length() + 1];
+        int[] actual = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            anterior[j] = j;
+        }
+
+        for (int i = 1; i <= a.length(); i++) {
+            actual[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int costo = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                actual[j] = Math.min(Math.min(actual[j - 1] + 1, anterior[j] + 1), anterior[j - 1] + costo);
+            }
+            int[] temporal = anterior;
+            anterior = actual;
+            actual = temporal;
+        }
+
+        return anterior[b.length()];
+    }
+
+    /**
+     * Distancia máxima tolerada según la longitud del término, como el modo AUTO de los buscadores:
+     * términos cortos deben coincidir exactos, medianos admiten un error y largos dos
+     * @param termino término de la consulta
+     * @return distancia máxima permitida
+     */
+    public static int toleranciaPara(String termino) {
+        if (termino.length() <= 2) {
+            return 0;
+        }
+        return termino.length() <= 5 ? 1 : 2;
+    }
+
+    /**
+     * Divide un texto ya normalizado en términos alfanuméricos
+     * @param textoNormalizado texto sin acentos y en minúsculas
+     * @return términos no vacíos
+     */
+    public static String[] terminos(String textoNormalizado) {
+        return Arrays.stream(SEPARADORES.split(textoNormalizado))
+                .filter(termino -> !termino.isEmpty())
+                .toArray(String[]::new);
+    }
+}
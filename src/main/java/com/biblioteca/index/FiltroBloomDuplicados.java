@@ -0,0 +1,367 @@
+package com.biblioteca.index;
+
+import com.biblioteca.model.entities.Libro;
+import com.biblioteca.repository.RouterShards;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.LongStream;
+
+/**
+ * Filtro de Bloom con contadores sobre las claves (título, autor) del catálogo
+ * Responde "seguro que no existe" sin consultar la base de datos; si responde "puede existir"
+ * se consulta igualmente, así que un falso positivo solo cuesta la consulta que ya se hacía.
+ * Los contadores (en lugar de bits) permiten quitar claves al eliminar libros. Se dimensiona con
+ * el número de libros de la carga inicial y, cuando supera su capacidad, se reconstruye al doble
+ * en segundo plano: mientras tanto sigue respondiendo el filtro actual y las altas y bajas que
+ * llegan se anotan para aplicarlas al nuevo antes de sustituirlo.
+ * El filtro recuerda qué IDs ha contado (un bitmap por ID, que ocupa un bit por libro), así que solo
+ * resta la clave de un libro que sumó y volver a indexar un libro no lo cuenta dos veces: un falso
+ * positivo nunca hace bajar el contador de otra clave.
+ * La restricción única (titulo, autor) de la tabla garantiza la corrección aunque el filtro fallara;
+ * con shards también, porque RouterShards guarda cada clave siempre en el mismo shard
+ */
+@Component
+public class FiltroBloomDuplicados extends BaseIndiceLibros {
+    
+    private static final Logger log = LoggerFactory.getLogger(FiltroBloomDuplicados.class);
+    
+    private static final double TASA_OBJETIVO = 0.01;
+    private static final int CONTADOR_SATURADO = 0xFF;
+    private static final int TAMANO_LOTE_RECONSTRUCCION = 1000;
+    
+    private final RouterShards shards;
+    private final int capacidadInicial;
+    private final ExecutorService ejecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final LongAdder consultas = new LongAdder();
+    private final LongAdder descartadas = new LongAdder();
+    private final LongAdder falsosPositivos = new LongAdder();
+    
+    // Protegidos por el lock de BaseIndiceLibros
+    private Filtro filtro;
+    private BitmapIds contados = new BitmapIds();
+    private long[] cargaInicial = new long[1024];
+    private int claves;
+    private Map<Long, Pendiente> reconstruccion;
+    
+    public FiltroBloomDuplicados(RouterShards shards,
+                                 @Value("${biblioteca.duplicados.capacidad-inicial:1024}") int capacidadInicial) {
+        this.shards = shards;
+        this.capacidadInicial = capacidadInicial;
+        this.filtro = new Filtro(capacidadInicial);
+    }
+    
+    /**
+     * Indica si la clave puede existir en el catálogo
+     * @param titulo título del libro
+     * @param autor autor del libro
+     * @return false si la clave seguro que no existe; true si hay que comprobarlo en la base de datos
+     */
+    public boolean podriaContener(String titulo, String autor) {
+        consultas.increment();
+        lock.readLock().lock();
+        try {
+            if (cargaInicial != null || filtro.contiene(hash(titulo, autor))) {
+                return true;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        descartadas.increment();
+        return false;
+    }
+    
+    /**
+     * Registra que una respuesta "puede existir" resultó no existir en la base de datos
+     */
+    public void registrarFalsoPositivo() {
+        falsosPositivos.increment();
+    }
+    
+    /**
+     * Obtiene las métricas del filtro
+     * @return tamaño, ocupación y tasa de falsos positivos observada y estimada
+     */
+    public EstadisticasFiltro obtenerEstadisticas() {
+        lock.readLock().lock();
+        try {
+            long negativos = descartadas.sum();
+            long fp = falsosPositivos.sum();
+            double tasaObservada = fp + negativos == 0 ? 0.0 : (double) fp / (fp + negativos);
+            return new EstadisticasFiltro(filtro.elementos, filtro.capacidad, filtro.contadores.length,
+                    filtro.funcionesHash, consultas.sum(), negativos, fp, tasaObservada, filtro.tasaEstimada());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Durante la carga inicial solo se guardan los hashes: el filtro se dimensiona al terminar,
+     * con el número de libros ya leído, sin contar la tabla aparte ni reconstruirlo desde la base de datos
+     */
+    @Override
+    void cargarLote(List<Libro> lote) {
+        lock.writeLock().lock();
+        try {
+            for (Libro libro : lote) {
+                if (claves == cargaInicial.length) {
+                    cargaInicial = Arrays.copyOf(cargaInicial, claves * 2);
+                }
+                cargaInicial[claves++] = hash(libro.getTitulo(), libro.getAutor());
+                contados.set(libro.getId());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    @Override
+    void cargaCompletada(long libros) {
+        lock.writeLock().lock();
+        try {
+            filtro = new Filtro((int) Math.max(capacidadInicial, 2 * libros));
+            for (int i = 0; i < claves; i++) {
+                filtro.agregar(cargaInicial[i]);
+            }
+            cargaInicial = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    @Override
+    protected void indexar(Libro libro) {
+        if (libro.getId() == null || contados.contiene(libro.getId())) {
+            return;
+        }
+        
+        long h = hash(libro.getTitulo(), libro.getAutor());
+        filtro.agregar(h);
+        contados.set(libro.getId());
+        if (reconstruccion != null) {
+            reconstruccion.put(libro.getId(), new Pendiente(h, true));
+        } else if (filtro.elementos > filtro.capacidad) {
+            reconstruccion = new HashMap<>();
+            int nuevaCapacidad = filtro.capacidad * 2;
+            ejecutor.execute(() -> reconstruir(nuevaCapacidad));
+        }
+    }
+    
+    @Override
+    protected void desindexar(Libro libro) {
+        if (libro.getId() == null || !contados.contiene(libro.getId())) {
+            return;
+        }
+        
+        long h = hash(libro.getTitulo(), libro.getAutor());
+        filtro.quitar(h);
+        contados.clear(libro.getId());
+        if (reconstruccion != null) {
+            reconstruccion.put(libro.getId(), new Pendiente(h, false));
+        }
+    }
+    
+    @Override
+    protected void vaciar() {
+        filtro = new Filtro(filtro.capacidad);
+        contados = new BitmapIds();
+    }
+    
+    /**
+     * El filtro ya sabe reconstruirse sin dejar de responder: se carga uno nuevo de la misma capacidad
+     * y se sustituye, en lugar de vaciar el actual, que durante la carga descartaría claves existentes
+     */
+    @Override
+    void reconstruir(RouterShards shards, int tamanoLote) {
+        int capacidad;
+        lock.writeLock().lock();
+        try {
+            if (reconstruccion != null) {
+                // Ya hay un redimensionado en curso, que deja el filtro al día
+                return;
+            }
+            reconstruccion = new HashMap<>();
+            capacidad = filtro.capacidad;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        reconstruir(capacidad);
+    }
+    
+    @Override
+    public String getNombreObservador() {
+        return "Filtro de Bloom de Duplicados";
+    }
+    
+    @PreDestroy
+    public void cerrar() {
+        ejecutor.shutdownNow();
+    }
+    
+    /**
+     * Carga en un filtro nuevo las claves confirmadas en la base de datos, fuera del lock y de
+     * cualquier transacción de alta, y lo sustituye aplicando las altas y bajas anotadas mientras tanto.
+     * El catálogo se lee por lotes, con el mismo recorrido que la carga inicial, y solo se retienen
+     * el hash de cada clave y el bitmap de IDs leídos.
+     * Cada anotación se aplica según si la lectura ya vio su libro: un alta vista ya está en el filtro
+     * y una baja no vista ya no lo está, así que un contador nunca baja por una clave que no sumó
+     */
+    private void reconstruir(int nuevaCapacidad) {
+        try {
+            BitmapIds vistos = new BitmapIds();
+            LongStream.Builder hashes = LongStream.builder();
+            long leidos = shards.recorrer(null, TAMANO_LOTE_RECONSTRUCCION, lote -> {
+                for (Libro libro : lote) {
+                    hashes.add(hash(libro.getTitulo(), libro.getAutor()));
+                    vistos.set(libro.getId());
+                }
+                return lote.size();
+            });
+            Filtro nuevo = new Filtro((int) Math.max(nuevaCapacidad, 2 * leidos));
+            hashes.build().forEach(nuevo::agregar);
+            
+            lock.writeLock().lock();
+            try {
+                reconstruccion.forEach((id, pendiente) -> {
+                    boolean visto = vistos.contiene(id);
+                    if (pendiente.alta() && !visto) {
+                        nuevo.agregar(pendiente.hash());
+                        vistos.set(id);
+                    } else if (!pendiente.alta() && visto) {
+                        nuevo.quitar(pendiente.hash());
+                        vistos.clear(id);
+                    }
+                });
+                filtro = nuevo;
+                contados = vistos;
+                reconstruccion = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } catch (RuntimeException e) {
+            // El filtro actual sigue siendo correcto (solo con más falsos positivos): se reintenta en la siguiente alta
+            lock.writeLock().lock();
+            try {
+                reconstruccion = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.error("No se pudo redimensionar el filtro de duplicados", e);
+        }
+    }
+    
+    /**
+     * FNV-1a de 64 bits sobre título y autor, con la mezcla final de MurmurHash3
+     */
+    private static long hash(String titulo, String autor) {
+        long h = 0xcbf29ce484222325L;
+        String clave = titulo + '\u0000' + autor;
+        for (int i = 0; i < clave.length(); i++) {
+            h ^= clave.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+    
+    /**
+     * Alta o baja anotada durante una reconstrucción
+     */
+    private record Pendiente(long hash, boolean alta) {}
+    
+    /**
+     * Contadores del filtro para una capacidad dada
+     * m = -n ln(p) / ln(2)^2 contadores y k = (m / n) ln(2) funciones para la tasa objetivo p
+     */
+    private static final class Filtro {
+        private final int capacidad;
+        private final int funcionesHash;
+        private final byte[] contadores;
+        private long elementos;
+        
+        private Filtro(int capacidad) {
+            this.capacidad = capacidad;
+            int tamano = (int) Math.ceil(-capacidad * Math.log(TASA_OBJETIVO) / (Math.log(2) * Math.log(2)));
+            this.funcionesHash = Math.max(1, (int) Math.round((double) tamano / capacidad * Math.log(2)));
+            this.contadores = new byte[tamano];
+        }
+        
+        private void agregar(long h) {
+            for (int i = 0; i < funcionesHash; i++) {
+                int posicion = posicion(h, i);
+                int valor = contadores[posicion] & 0xFF;
+                if (valor != CONTADOR_SATURADO) {
+                    contadores[posicion] = (byte) (valor + 1);
+                }
+            }
+            elementos++;
+        }
+        
+        /**
+         * Solo debe llamarse con una clave contenida
+         */
+        private void quitar(long h) {
+            for (int i = 0; i < funcionesHash; i++) {
+                int posicion = posicion(h, i);
+                int valor = contadores[posicion] & 0xFF;
+                // Un contador saturado ya no sabe cuántas claves cuenta: se deja fijo
+                if (valor != CONTADOR_SATURADO) {
+                    contadores[posicion] = (byte) (valor - 1);
+                }
+            }
+            elementos--;
+        }
+        
+        private boolean contiene(long h) {
+            for (int i = 0; i < funcionesHash; i++) {
+                if (contadores[posicion(h, i)] == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        private double tasaEstimada() {
+            return Math.pow(1 - Math.exp(-(double) funcionesHash * elementos / contadores.length), funcionesHash);
+        }
+        
+        /**
+         * Doble hashing (Kirsch-Mitzenmacher): las k posiciones salen de dos mitades de un hash de 64 bits
+         */
+        private int posicion(long h, int i) {
+            int h1 = (int) h;
+            int h2 = (int) (h >>> 32);
+            return Math.floorMod(h1 + i * h2, contadores.length);
+        }
+    }
+    
+    /**
+     * Métricas del filtro de duplicados
+     * @param elementos claves contenidas
+     * @param capacidad claves admitidas antes de redimensionar
+     * @param contadores número de contadores
+     * @param funcionesHash número de funciones hash
+     * @param consultas consultas recibidas
+     * @param descartadas consultas resueltas sin ir a la base de datos
+     * @param falsosPositivos consultas que fueron a la base de datos sin que la clave existiera
+     * @param tasaFalsosPositivos falsosPositivos / (falsosPositivos + descartadas)
+     * @param tasaEstimada tasa teórica según la ocupación actual
+     */
+    public record EstadisticasFiltro(long elementos, int capacidad, int contadores, int funcionesHash,
+                                     long consultas, long descartadas, long falsosPositivos,
+                                     double tasaFalsosPositivos, double tasaEstimada) {}
+}
@@ -0,0 +1,200 @@
+package com.biblioteca.index;
+
+import com.biblioteca.model.entities.Libro;
+import com.biblioteca.util.TextoNormalizador;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Trie de prefijos con los autores distintos del catálogo, sin acentos ni mayúsculas
+ * Cada nodo guarda el máximo número de libros de su subárbol, lo que permite
+ * obtener las k completaciones más frecuentes sin recorrer todo el subárbol
+ */
+@Component
+public class IndiceAutores extends BaseIndiceLibros {
+
+    public static final int LIMITE_MAXIMO = 50;
+
+    private final Nodo raiz = new Nodo(null);
+    private final Map<Long, String> autoresPorId = new HashMap<>();
+
+    /**
+     * Sugiere autores que empiezan por el prefijo, ordenados por número de libros
+     * @param prefijo prefijo escrito por el usuario (se ignoran acentos y mayúsculas)
+     * @param limite número máximo de sugerencias (acotado a LIMITE_MAXIMO)
+     * @return autores sugeridos, con la grafía más usada en el catálogo
+     */
+    public List<String> sugerir(String prefijo, int limite) {
+        String clave = TextoNormalizador.normalizar(prefijo);
+        int k = Math.min(Math.max(limite, 0), LIMITE_MAXIMO);
+        if (k == 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            Nodo inicio = buscarNodo(clave);
+            if (inicio == null || inicio.maximoSubarbol == 0) {
+                return List.of();
+            }
+            return mejoresCompletaciones(inicio, k);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    protected void indexar(Libro libro) {
+        if (libro.getId() == null || libro.getAutor() == null) {
+            return;
+        }
+
+        String anterior = autoresPorId.put(libro.getId(), libro.getAutor());
+        if (anterior != null) {
+            if (anterior.equals(libro.getAutor())) {
+                return;
+            }
+            quitarAutor(anterior);
+        }
+
+        String clave = TextoNormalizador.normalizar(libro.getAutor());
+        List<Nodo> camino = new ArrayList<>();
+        Nodo actual = raiz;
+        camino.add(actual);
+        for (int i = 0; i < clave.length(); i++) {
+            char c = clave.charAt(i);
+            Nodo padre = actual;
+            actual = actual.hijos.computeIfAbsent(c, k -> new Nodo(padre));
+            actual.caracter = c;
+            camino.add(actual);
+        }
+
+        actual.formas.merge(libro.getAutor(), 1, Integer::sum);
+        actual.conteo++;
+        for (Nodo nodo : camino) {
+            nodo.maximoSubarbol = Math.max(nodo.maximoSubarbol, actual.conteo);
+        }
+    }
+
+    @Override
+    protected void desindexar(Libro libro) {
+        if (libro.getId() == null) {
+            return;
+        }
+
+        String autor = autoresPorId.remove(libro.getId());
+        if (autor != null) {
+            quitarAutor(autor);
+        }
+    }
+
+    @Override
+    protected void vaciar() {
+        raiz.hijos.clear();
+        raiz.formas.clear();
+        raiz.conteo = 0;
+        raiz.maximoSubarbol = 0;
+        autoresPorId.clear();
+    }
+
+    @Override
+    public String getNombreObservador() {
+        return "Índice de Autores (Trie)";
+    }
+
+    private void quitarAutor(String autor) {
+        Nodo nodo = buscarNodo(TextoNormalizador.normalizar(autor));
+        if (nodo == null || nodo.conteo == 0) {
+            return;
+        }
+
+        nodo.conteo--;
+        nodo.formas.computeIfPresent(autor, (forma, cantidad) -> cantidad > 1 ? cantidad - 1 : null);
+
+        // Recalcula el máximo hacia la raíz y poda las ramas que quedan vacías
+        while (nodo != null) {
+            int maximo = nodo.conteo;
+            for (Nodo hijo : nodo.hijos.values()) {
+                maximo = Math.max(maximo, hijo.maximoSubarbol);
+            }
+            nodo.maximoSubarbol = maximo;
+
+            Nodo padre = nodo.padre;
+            if (padre != null && maximo == 0) {
+                padre.hijos.remove(nodo.caracter);
+            }
+            nodo = padre;
+        }
+    }
+
+    private Nodo buscarNodo(String clave) {
+        Nodo actual = raiz;
+        for (int i = 0; i < clave.length() && actual != null; i++) {
+            actual = actual.hijos.get(clave.charAt(i));
+        }
+        return actual;
+    }
+
+    /**
+     * Búsqueda best-first: los nodos se exploran por el máximo de su subárbol,
+     * de modo que los autores salen en orden de frecuencia y se corta al llegar a k
+     */
+    private List<String> mejoresCompletaciones(Nodo inicio, int k) {
+        PriorityQueue<Candidato> cola = new PriorityQueue<>(
+                Comparator.comparingInt(Candidato::prioridad).reversed()
+                        .thenComparing(Candidato::esAutor, Comparator.reverseOrder()));
+        cola.add(new Candidato(inicio, inicio.maximoSubarbol, false));
+
+        List<String> resultado = new ArrayList<>(k);
+        while (!cola.isEmpty() && resultado.size() < k) {
+            Candidato candidato = cola.poll();
+            Nodo nodo = candidato.nodo();
+
+            if (candidato.esAutor()) {
+                resultado.add(nodo.formaPreferida());
+                continue;
+            }
+
+            if (nodo.conteo > 0) {
+                cola.add(new Candidato(nodo, nodo.conteo, true));
+            }
+            for (Nodo hijo : nodo.hijos.values()) {
+                cola.add(new Candidato(hijo, hijo.maximoSubarbol, false));
+            }
+        }
+
+        return resultado;
+    }
+
+    private record Candidato(Nodo nodo, int prioridad, boolean esAutor) {}
+
+    /**
+     * Nodo del trie; conteo es el número de libros del autor que termina en este nodo
+     */
+    private static final class Nodo {
+        private final Nodo padre;
+        private final Map<Character, Nodo> hijos = new HashMap<>(4);
+        private final Map<String, Integer> formas = new HashMap<>(2);
+        private char caracter;
+        private int conteo;
+        private int maximoSubarbol;
+
+        private Nodo(Nodo padre) {
+            this.padre = padre;
+        }
+
+        private String formaPreferida() {
+            return formas.entrySet().stream()
+                    .max(Map.Entry.<String, Integer>comparingByValue()
+                            .thenComparing(Map.Entry.comparingByKey(Comparator.reverseOrder())))
+                    .map(Map.Entry::getKey)
+                    .orElse("");
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.biblioteca.index;
+
+import com.biblioteca.model.entities.Libro;
+import com.biblioteca.util.TextoNormalizador;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Índice invertido con estadísticas de términos para ordenar resultados por relevancia (BM25)
+ * Puntúa título y autor por separado y combina ambos con un peso por campo;
+ * solo se devuelven los k mejores usando un heap acotado.
+ * La búsqueda poda candidatos como MaxScore: cada término tiene una cota de lo que puede aportar
+ * (su idf por el máximo de la parte de frecuencia, K1 + 1) y se recorren de mayor a menor cota.
+ * En cuanto los términos que faltan no alcanzan el k-ésimo mejor, ya no entran libros nuevos: los
+ * términos frecuentes, de cota baja, solo suman a los candidatos que ya hay, y se descartan los
+ * candidatos que ni con esos términos llegarían al k-ésimo
+ */
+@Component
+public class IndiceBM25 extends BaseIndiceLibros {
+
+    public static final int LIMITE_MAXIMO = 100;
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private final Campo titulo = new Campo(2.0);
+    private final Campo autor = new Campo(1.0);
+    private final Set<Long> documentos = new HashSet<>();
+
+    /**
+     * Obtiene los k libros más relevantes para la consulta
+     * @param consulta texto libre
+     * @param limite número máximo de resultados (acotado a LIMITE_MAXIMO)
+     * @return resultados ordenados por puntuación descendente
+     */
+    public List<Resultado> buscar(String consulta, int limite) {
+        Set<String> terminos = new LinkedHashSet<>(List.of(DistanciaEdicion.terminos(TextoNormalizador.normalizar(consulta))));
+        int k = Math.min(Math.max(limite, 0), LIMITE_MAXIMO);
+        if (terminos.isEmpty() || k == 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            int totalDocumentos = documentos.size();
+            List<Termino> porCota = new ArrayList<>();
+            for (String termino : terminos) {
+                double cota = titulo.cota(termino, totalDocumentos) + autor.cota(termino, totalDocumentos);
+                if (cota > 0) {
+                    porCota.add(new Termino(termino, cota));
+                }
+            }
+            porCota.sort(Comparator.comparingDouble(Termino::cota).reversed());
+
+            // restante[i]: puntuación máxima que pueden aportar los términos desde el i-ésimo
+            double[] restante = new double[porCota.size() + 1];
+            for (int i = porCota.size() - 1; i >= 0; i--) {
+                restante[i] = restante[i + 1] + porCota.get(i).cota();
+            }
+
+            Map<Long, Double> candidatos = new HashMap<>();
+            double umbral = 0;
+            for (int i = 0; i < porCota.size(); i++) {
+                // Un libro que aún no es candidato puntuará como mucho restante[i]
+                boolean admiteNuevos = candidatos.size() < k || restante[i] >= umbral;
+                String termino = porCota.get(i).termino();
+                titulo.acumular(termino, totalDocumentos, candidatos, admiteNuevos);
+                autor.acumular(termino, totalDocumentos, candidatos, admiteNuevos);
+
+                if (candidatos.size() > k) {
+                    List<Resultado> provisionales = mejores(candidatos, k);
+                    umbral = provisionales.get(k - 1).puntuacion();
+                    double umbralActual = umbral;
+                    double cotaResto = restante[i + 1];
+                    candidatos.values().removeIf(puntuacion -> puntuacion + cotaResto < umbralActual);
+                }
+            }
+            return mejores(candidatos, k);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    protected void indexar(Libro libro) {
+        if (libro.getId() == null) {
+            return;
+        }
+
+        desindexar(libro);
+        titulo.agregar(libro.getId(), libro.getTitulo());
+        autor.agregar(libro.getId(), libro.getAutor());
+        documentos.add(libro.getId());
+    }
+
+    @Override
+    protected void desindexar(Libro libro) {
+        if (libro.getId() == null || !documentos.remove(libro.getId())) {
+            return;
+        }
+
+        titulo.quitar(libro.getId());
+        autor.quitar(libro.getId());
+    }
+
+    @Override
+    protected void vaciar() {
+        titulo.vaciar();
+        autor.vaciar();
+        documentos.clear();
+    }
+
+    @Override
+    public String getNombreObservador() {
+        return "Índice de Relevancia (BM25)";
+    }
+
+    /**
+     * Selección top-k con un min-heap de tamaño k: O(n log k) y memoria acotada
+     */
+    private static List<Resultado> mejores(Map<Long, Double> puntuaciones, int k) {
+        Comparator<Resultado> orden = Comparator.comparingDouble(Resultado::puntuacion)
+                .thenComparing(Resultado::id, Comparator.reverseOrder());
+        PriorityQueue<Resultado> heap = new PriorityQueue<>(k, orden);
+
+        puntuaciones.forEach((id, puntuacion) -> {
+            Resultado resultado = new Resultado(id, puntuacion);
+            if (heap.size() < k) {
+                heap.add(resultado);
+            } else if (orden.compare(resultado, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(resultado);
+            }
+        });
+
+        List<Resultado> ordenados = new ArrayList<>(heap);
+        ordenados.sort(orden.reversed());
+        return ordenados;
+    }
+
+    /**
+     * Resultado de la búsqueda por relevancia
+     * @param id ID del libro
+     * @param puntuacion puntuación BM25 combinada
+     */
+    public record Resultado(Long id, double puntuacion) {}
+
+    /**
+     * Término de la consulta con la puntuación máxima que puede aportar a un libro
+     */
+    private record Termino(String termino, double cota) {}
+
+    /**
+     * Estadísticas de un campo: frecuencia de cada término por libro y longitud de cada libro
+     */
+    private static final class Campo {
+        private final double peso;
+        private final Map<String, Map<Long, Integer>> frecuencias = new HashMap<>();
+        private final Map<Long, String[]> terminosPorId = new HashMap<>();
+        private long longitudTotal;
+
+        private Campo(double peso) {
+            this.peso = peso;
+        }
+
+        private void agregar(Long id, String texto) {
+            String[] terminos = DistanciaEdicion.terminos(TextoNormalizador.normalizar(texto));
+            terminosPorId.put(id, terminos);
+            longitudTotal += terminos.length;
+            for (String termino : terminos) {
+                frecuencias.computeIfAbsent(termino, t -> new HashMap<>()).merge(id, 1, Integer::sum);
+            }
+        }
+
+        private void quitar(Long id) {
+            String[] terminos = terminosPorId.remove(id);
+            if (terminos == null) {
+                return;
+            }
+
+            longitudTotal -= terminos.length;
+            for (String termino : terminos) {
+                Map<Long, Integer> porLibro = frecuencias.get(termino);
+                if (porLibro != null) {
+                    porLibro.remove(id);
+                    if (porLibro.isEmpty()) {
+                        frecuencias.remove(termino);
+                    }
+                }
+            }
+        }
+
+        private void vaciar() {
+            frecuencias.clear();
+            terminosPorId.clear();
+            longitudTotal = 0;
+        }
+
+        /**
+         * Puntuación máxima que el término puede aportar en este campo: la parte de frecuencia de BM25,
+         * tf (K1 + 1) / (tf + normalizacion), nunca llega a K1 + 1
+         */
+        private double cota(String termino, int totalDocumentos) {
+            Map<Long, Integer> porLibro = frecuencias.get(termino);
+            if (porLibro == null) {
+                return 0;
+            }
+            return peso * idf(porLibro.size(), totalDocumentos) * (K1 + 1);
+        }
+
+        /**
+         * Suma la puntuación del término a los libros que lo contienen
+         * @param admiteNuevos si es false solo suma a los libros que ya están en puntuaciones; entonces
+         *                     recorre la lista más corta entre esos libros y los que contienen el término
+         */
+        private void acumular(String termino, int totalDocumentos, Map<Long, Double> puntuaciones, boolean admiteNuevos) {
+            Map<Long, Integer> porLibro = frecuencias.get(termino);
+            if (porLibro == null || terminosPorId.isEmpty()) {
+                return;
+            }
+
+            double idf = idf(porLibro.size(), totalDocumentos);
+            double longitudMedia = (double) longitudTotal / terminosPorId.size();
+
+            if (!admiteNuevos && puntuaciones.size() < porLibro.size()) {
+                puntuaciones.replaceAll((id, acumulada) -> {
+                    Integer tf = porLibro.get(id);
+                    return tf == null ? acumulada : acumulada + puntuacion(id, tf, idf, longitudMedia);
+                });
+                return;
+            }
+            porLibro.forEach((id, tf) -> {
+                if (admiteNuevos || puntuaciones.containsKey(id)) {
+                    puntuaciones.merge(id, puntuacion(id, tf, idf, longitudMedia), Double::sum);
+                }
+            });
+        }
+
+        private double puntuacion(Long id, int tf, double idf, double longitudMedia) {
+            int longitud = terminosPorId.get(id).length;
+            double normalizacion = K1 * (1 - B + B * longitud / longitudMedia);
+            return peso * idf * (tf * (K1 + 1)) / (tf + normalizacion);
+        }
+
+        private static double idf(int df, int totalDocumentos) {
+            return Math.log(1 + (totalDocumentos - df + 0.5) / (df + 0.5));
+        }
+    }
+}
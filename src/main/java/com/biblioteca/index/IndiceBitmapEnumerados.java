@@ -0,0 +1,188 @@
+package com.biblioteca.index;
+
+import com.biblioteca.model.entities.Libro;
+import com.biblioteca.model.enums.EstadoLibro;
+import com.biblioteca.model.enums.FormatoLibro;
+import com.biblioteca.model.enums.TipoLibro;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Índice de bitmaps por cada constante de TipoLibro, FormatoLibro y EstadoLibro
+ * Un filtro combinado se resuelve con operaciones OR dentro de cada campo
+ * y AND entre campos, sin recorrer la tabla ni comparar libro por libro.
+ * Los bitmaps se indexan por ID de libro en bloques (BitmapIds), así que admiten cualquier ID long
+ */
+@Component
+public class IndiceBitmapEnumerados extends BaseIndiceLibros {
+
+    private final BitmapIds todos = new BitmapIds();
+    private final Map<TipoLibro, BitmapIds> porTipo = crearBitmaps(TipoLibro.class);
+    private final Map<FormatoLibro, BitmapIds> porFormato = crearBitmaps(FormatoLibro.class);
+    private final Map<EstadoLibro, BitmapIds> porEstado = crearBitmaps(EstadoLibro.class);
+    private final Map<Long, EstadoLibro> estadosPorId = new HashMap<>();
+
+    /**
+     * Obtiene los IDs que cumplen el filtro; una colección vacía o null no filtra ese campo
+     * @param tipos tipos aceptados (OR)
+     * @param formatos formatos aceptados (OR)
+     * @param estados estados aceptados (OR)
+     * @return IDs coincidentes en orden ascendente
+     */
+    public List<Long> filtrar(Collection<TipoLibro> tipos,
+                              Collection<FormatoLibro> formatos,
+                              Collection<EstadoLibro> estados) {
+        lock.readLock().lock();
+        try {
+            return evaluar(tipos, formatos, estados).ids().boxed().toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Obtiene una página de IDs que cumplen el filtro a partir de un cursor
+     * Recorre el bitmap desde la posición del cursor, sin materializar los IDs anteriores
+     * @param tipos tipos aceptados (OR)
+     * @param formatos formatos aceptados (OR)
+     * @param estados estados aceptados (OR)
+     * @param despuesDe último ID de la página anterior (null para empezar desde el principio)
+     * @param limite número máximo de IDs
+     * @return IDs coincidentes mayores que el cursor, en orden ascendente
+     */
+    public List<Long> filtrarPagina(Collection<TipoLibro> tipos,
+                                    Collection<FormatoLibro> formatos,
+                                    Collection<EstadoLibro> estados,
+                                    Long despuesDe,
+                                    int limite) {
+        lock.readLock().lock();
+        try {
+            BitmapIds resultado = evaluar(tipos, formatos, estados);
+            List<Long> pagina = new ArrayList<>(limite);
+            long desde = despuesDe == null ? 0 : despuesDe + 1;
+            for (long id = resultado.siguiente(desde); id >= 0 && pagina.size() < limite; id = resultado.siguiente(id + 1)) {
+                pagina.add(id);
+            }
+            return pagina;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    protected void indexar(Libro libro) {
+        if (libro.getId() == null) {
+            return;
+        }
+
+        long id = libro.getId();
+        desindexar(libro);
+
+        todos.set(id);
+        porTipo.get(libro.getTipo()).set(id);
+        porFormato.get(libro.getFormato()).set(id);
+        porEstado.get(libro.getEstado()).set(id);
+        estadosPorId.put(libro.getId(), libro.getEstado());
+    }
+
+    @Override
+    protected void desindexar(Libro libro) {
+        if (libro.getId() == null || estadosPorId.remove(libro.getId()) == null) {
+            return;
+        }
+
+        long id = libro.getId();
+        todos.clear(id);
+        porTipo.values().forEach(bitmap -> bitmap.clear(id));
+        porFormato.values().forEach(bitmap -> bitmap.clear(id));
+        porEstado.values().forEach(bitmap -> bitmap.clear(id));
+    }
+
+    @Override
+    protected void vaciar() {
+        todos.clear();
+        porTipo.values().forEach(BitmapIds::clear);
+        porFormato.values().forEach(BitmapIds::clear);
+        porEstado.values().forEach(BitmapIds::clear);
+        estadosPorId.clear();
+    }
+
+    @Override
+    protected void actualizarEstado(Libro libro, String estadoAnterior, String estadoNuevo) {
+        if (libro.getId() == null || !estadosPorId.containsKey(libro.getId())) {
+            return;
+        }
+
+        long id = libro.getId();
+        EstadoLibro anterior = estadosPorId.put(libro.getId(), EstadoLibro.valueOf(estadoNuevo));
+        porEstado.get(anterior).clear(id);
+        porEstado.get(EstadoLibro.valueOf(estadoNuevo)).set(id);
+    }
+
+    @Override
+    public String getNombreObservador() {
+        return "Índice Bitmap de Tipo, Formato y Estado";
+    }
+
+    /**
+     * Intersección de los campos filtrados: parte de una copia del operando más pequeño y le aplica el
+     * AND de los demás, que solo recorre lo que queda; sin filtros devuelve todos sin copiarlo.
+     * El resultado puede ser uno de los bitmaps del índice: solo debe leerse, con el lock de lectura tomado
+     */
+    private BitmapIds evaluar(Collection<TipoLibro> tipos,
+                              Collection<FormatoLibro> formatos,
+                              Collection<EstadoLibro> estados) {
+        List<BitmapIds> operandos = new ArrayList<>(3);
+        agregarOperando(operandos, porTipo, tipos);
+        agregarOperando(operandos, porFormato, formatos);
+        agregarOperando(operandos, porEstado, estados);
+        if (operandos.isEmpty()) {
+            return todos;
+        }
+        if (operandos.size() == 1) {
+            return operandos.get(0);
+        }
+
+        operandos.sort(Comparator.comparingLong(BitmapIds::cardinalidad));
+        BitmapIds resultado = operandos.get(0).copia();
+        for (int i = 1; i < operandos.size(); i++) {
+            resultado.and(operandos.get(i));
+        }
+        return resultado;
+    }
+
+    /**
+     * Añade el OR de los bitmaps de los valores aceptados; con un solo valor, su bitmap sin copiarlo
+     */
+    private static <E extends Enum<E>> void agregarOperando(List<BitmapIds> operandos, Map<E, BitmapIds> bitmaps,
+                                                            Collection<E> valores) {
+        if (valores == null || valores.isEmpty()) {
+            return;
+        }
+
+        Set<E> distintos = Set.copyOf(valores);
+        if (distintos.size() == 1) {
+            operandos.add(bitmaps.get(distintos.iterator().next()));
+            return;
+        }
+        BitmapIds union = new BitmapIds();
+        distintos.forEach(valor -> union.or(bitmaps.get(valor)));
+        operandos.add(union);
+    }
+
+    private static <E extends Enum<E>> Map<E, BitmapIds> crearBitmaps(Class<E> tipoEnum) {
+        return Arrays.stream(tipoEnum.getEnumConstants())
+                .collect(Collectors.toMap(valor -> valor, valor -> new BitmapIds(),
+                        (a, b) -> a, () -> new EnumMap<>(tipoEnum)));
+    }
+}
@@ -0,0 +1,186 @@
+package com.biblioteca.index;
+
+import com.biblioteca.model.entities.Libro;
+import com.biblioteca.util.TextoNormalizador;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Índice para búsquedas tolerantes a errores tipográficos
+ * Guarda los términos normalizados de títulos y autores en un BK-tree: la desigualdad
+ * triangular permite descartar ramas enteras, así que una búsqueda con distancia k
+ * solo compara contra una fracción del vocabulario y nunca contra cada libro
+ */
+@Component
+public class IndiceDifuso extends BaseIndiceLibros {
+
+    private final Map<String, PostingList> postingsPorTermino = new HashMap<>();
+    private final Map<Long, Set<String>> terminosPorId = new HashMap<>();
+    private NodoBK raiz;
+
+    /**
+     * Busca libros cuyos títulos o autores contienen, para cada término de la consulta,
+     * algún término a distancia de edición tolerable (ver DistanciaEdicion.toleranciaPara)
+     * @param consulta texto de la consulta, posiblemente con errores
+     * @return IDs coincidentes en orden ascendente
+     */
+    public List<Long> buscar(String consulta) {
+        String[] terminosConsulta = DistanciaEdicion.terminos(TextoNormalizador.normalizar(consulta));
+        if (terminosConsulta.length == 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            TreeSet<Long> resultado = null;
+            for (String termino : terminosConsulta) {
+                TreeSet<Long> coincidencias = idsCercanos(termino, DistanciaEdicion.toleranciaPara(termino));
+                if (resultado == null) {
+                    resultado = coincidencias;
+                } else {
+                    resultado.retainAll(coincidencias);
+                }
+                if (resultado.isEmpty()) {
+                    return List.of();
+                }
+            }
+            return new ArrayList<>(resultado);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    protected void indexar(Libro libro) {
+        if (libro.getId() == null) {
+            return;
+        }
+
+        desindexar(libro);
+
+        Set<String> terminos = terminosDe(libro);
+        for (String termino : terminos) {
+            PostingList lista = postingsPorTermino.get(termino);
+            if (lista == null) {
+                lista = new PostingList();
+                postingsPorTermino.put(termino, lista);
+                insertarEnArbol(termino);
+            }
+            lista.agregar(libro.getId());
+        }
+        terminosPorId.put(libro.getId(), terminos);
+    }
+
+    /**
+     * Un BK-tree no admite borrados: el término queda en el árbol con su posting list vacía
+     * y se ignora en las búsquedas; si vuelve a aparecer se reutiliza el mismo nodo
+     */
+    @Override
+    protected void desindexar(Libro libro) {
+        if (libro.getId() == null) {
+            return;
+        }
+
+        Set<String> terminos = terminosPorId.remove(libro.getId());
+        if (terminos == null) {
+            return;
+        }
+
+        for (String termino : terminos) {
+            PostingList lista = postingsPorTermino.get(termino);
+            if (lista != null) {
+                lista.eliminar(libro.getId());
+            }
+        }
+    }
+
+    @Override
+    protected void vaciar() {
+        postingsPorTermino.clear();
+        terminosPorId.clear();
+        raiz = null;
+    }
+
+    @Override
+    public String getNombreObservador() {
+        return "Índice Difuso (BK-tree)";
+    }
+
+    private TreeSet<Long> idsCercanos(String termino, int tolerancia) {
+        TreeSet<Long> ids = new TreeSet<>();
+        if (raiz == null) {
+            return ids;
+        }
+
+        Deque<NodoBK> pendientes = new ArrayDeque<>();
+        pendientes.push(raiz);
+        while (!pendientes.isEmpty()) {
+            NodoBK nodo = pendientes.pop();
+            int distancia = DistanciaEdicion.levenshtein(termino, nodo.termino);
+
+            if (distancia <= tolerancia) {
+                PostingList lista = postingsPorTermino.get(nodo.termino);
+                for (int i = 0; i < lista.tamano(); i++) {
+                    ids.add(lista.get(i));
+                }
+            }
+
+            // Solo los hijos a distancia [d - k, d + k] pueden contener coincidencias
+            for (int d = Math.max(1, distancia - tolerancia); d <= distancia + tolerancia; d++) {
+                NodoBK hijo = nodo.hijos.get(d);
+                if (hijo != null) {
+                    pendientes.push(hijo);
+                }
+            }
+        }
+
+        return ids;
+    }
+
+    private void insertarEnArbol(String termino) {
+        if (raiz == null) {
+            raiz = new NodoBK(termino);
+            return;
+        }
+
+        NodoBK actual = raiz;
+        while (true) {
+            int distancia = DistanciaEdicion.levenshtein(termino, actual.termino);
+            if (distancia == 0) {
+                return;
+            }
+            NodoBK hijo = actual.hijos.get(distancia);
+            if (hijo == null) {
+                actual.hijos.put(distancia, new NodoBK(termino));
+                return;
+            }
+            actual = hijo;
+        }
+    }
+
+    private static Set<String> terminosDe(Libro libro) {
+        Set<String> terminos = new LinkedHashSet<>();
+        terminos.addAll(Arrays.asList(DistanciaEdicion.terminos(TextoNormalizador.normalizar(libro.getTitulo()))));
+        terminos.addAll(Arrays.asList(DistanciaEdicion.terminos(TextoNormalizador.normalizar(libro.getAutor()))));
+        return terminos;
+    }
+
+    private static final class NodoBK {
+        private final String termino;
+        private final Map<Integer, NodoBK> hijos = new HashMap<>(4);
+
+        private NodoBK(String termino) {
+            this.termino = termino;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.biblioteca.index;
+
+import com.biblioteca.model.entities.Libro;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Índice invertido de trigramas sobre los títulos de los libros
+ * Permite resolver búsquedas por subcadena intersecando posting lists,
+ * con un costo proporcional a los candidatos y no al tamaño del catálogo
+ */
+@Component
+public class IndiceTrigramasTitulo extends BaseIndiceLibros {
+
+    private static final int LONGITUD_TRIGRAMA = 3;
+
+    private final Map<Long, PostingList> postingsPorTrigrama = new HashMap<>();
+    private final Map<Long, String> titulosPorId = new HashMap<>();
+
+    /**
+     * Busca los IDs de los libros cuyo título contiene el criterio (sin distinguir mayúsculas)
+     * @param criterio subcadena a buscar
+     * @return IDs coincidentes en orden ascendente
+     */
+    public List<Long> buscar(String criterio) {
+        String consulta = normalizar(criterio);
+        if (consulta.isEmpty()) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            if (consulta.length() < LONGITUD_TRIGRAMA) {
+                return buscarSinTrigramas(consulta);
+            }
+
+            List<PostingList> listas = new ArrayList<>();
+            for (long trigrama : trigramas(consulta)) {
+                PostingList lista = postingsPorTrigrama.get(trigrama);
+                if (lista == null) {
+                    return List.of();
+                }
+                listas.add(lista);
+            }
+
+            // La intersección es un superconjunto: se verifica la subcadena sobre el título ya normalizado
+            List<Long> resultado = new ArrayList<>();
+            for (long id : PostingList.interseccion(listas)) {
+                if (titulosPorId.get(id).contains(consulta)) {
+                    resultado.add(id);
+                }
+            }
+            return resultado;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    protected void indexar(Libro libro) {
+        if (libro.getId() == null || libro.getTitulo() == null) {
+            return;
+        }
+
+        String titulo = normalizar(libro.getTitulo());
+        String anterior = titulosPorId.put(libro.getId(), titulo);
+        if (anterior != null && !anterior.equals(titulo)) {
+            quitarTrigramas(libro.getId(), anterior);
+        }
+
+        for (long trigrama : trigramas(titulo)) {
+            postingsPorTrigrama.computeIfAbsent(trigrama, clave -> new PostingList()).agregar(libro.getId());
+        }
+    }
+
+    @Override
+    protected void desindexar(Libro libro) {
+        if (libro.getId() == null) {
+            return;
+        }
+
+        String titulo = titulosPorId.remove(libro.getId());
+        if (titulo != null) {
+            quitarTrigramas(libro.getId(), titulo);
+        }
+    }
+
+    @Override
+    protected void vaciar() {
+        postingsPorTrigrama.clear();
+        titulosPorId.clear();
+    }
+
+    @Override
+    public String getNombreObservador() {
+        return "Índice de Trigramas de Título";
+    }
+
+    private void quitarTrigramas(long id, String titulo) {
+        for (long trigrama : trigramas(titulo)) {
+            PostingList lista = postingsPorTrigrama.get(trigrama);
+            if (lista != null) {
+                lista.eliminar(id);
+                if (lista.estaVacia()) {
+                    postingsPorTrigrama.remove(trigrama);
+                }
+            }
+        }
+    }
+
+    /**
+     * Consultas de menos de tres caracteres no tienen trigramas:
+     * se recorren los títulos ya normalizados en memoria, sin ir a la base de datos
+     */
+    private List<Long> buscarSinTrigramas(String consulta) {
+        return titulosPorId.entrySet().stream()
+                .filter(entrada -> entrada.getValue().contains(consulta))
+                .map(Map.Entry::getKey)
+                .sorted()
+                .toList();
+    }
+
+    /**
+     * Obtiene los trigramas distintos de un texto, empaquetando los tres caracteres en un long
+     * para no crear un String por trigrama
+     */
+    private static Set<Long> trigramas(String texto) {
+        Set<Long> resultado = new LinkedHashSet<>();
+        for (int i = 0; i + LONGITUD_TRIGRAMA <= texto.length(); i++) {
+            long clave = ((long) texto.charAt(i) << 32)
+                    | ((long) texto.charAt(i + 1) << 16)
+                    | texto.charAt(i + 2);
+            resultado.add(clave);
+        }
+        return resultado;
+    }
+
+    /**
+     * Normalización con la que se indexan y buscan los títulos: sin espacios en los extremos y en
+     * minúsculas con Locale.ROOT, para no depender del idioma de la JVM (en turco "I" no pasa a "i").
+     * Quien filtre títulos fuera del índice debe usarla para devolver los mismos libros
+     * @param texto título o criterio (puede ser null)
+     * @return texto normalizado, o cadena vacía si es null
+     */
+    public static String normalizar(String texto) {
+        return texto == null ? "" : texto.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,110 @@
+package com.biblioteca.index;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Lista ordenada de IDs de libros usada como posting list en los índices invertidos
+ * Guarda los IDs en un arreglo primitivo para evitar objetos por entrada
+ */
+public final class PostingList {
+
+    private static final int CAPACIDAD_INICIAL = 4;
+
+    private long[] ids = new long[CAPACIDAD_INICIAL];
+    private int tamano;
+
+    /**
+     * Agrega un ID manteniendo el orden ascendente (idempotente)
+     * @param id el ID a agregar
+     */
+    public void agregar(long id) {
+        // Caso habitual: los IDs llegan en orden creciente
+        if (tamano == 0 || id > ids[tamano - 1]) {
+            asegurarCapacidad();
+            ids[tamano++] = id;
+            return;
+        }
+
+        int posicion = Arrays.binarySearch(ids, 0, tamano, id);
+        if (posicion >= 0) {
+            return;
+        }
+
+        int insercion = -posicion - 1;
+        asegurarCapacidad();
+        System.arraycopy(ids, insercion, ids, insercion + 1, tamano - insercion);
+        ids[insercion] = id;
+        tamano++;
+    }
+
+    /**
+     * Elimina un ID si está presente
+     * @param id el ID a eliminar
+     */
+    public void eliminar(long id) {
+        int posicion = Arrays.binarySearch(ids, 0, tamano, id);
+        if (posicion < 0) {
+            return;
+        }
+
+        System.arraycopy(ids, posicion + 1, ids, posicion, tamano - posicion - 1);
+        tamano--;
+    }
+
+    public boolean contiene(long id) {
+        return Arrays.binarySearch(ids, 0, tamano, id) >= 0;
+    }
+
+    public long get(int indice) {
+        return ids[indice];
+    }
+
+    public int tamano() {
+        return tamano;
+    }
+
+    public boolean estaVacia() {
+        return tamano == 0;
+    }
+
+    /**
+     * Interseca varias posting lists recorriendo la más corta y buscando en las demás
+     * El costo es proporcional al tamaño de la lista más corta, no al del catálogo
+     * @param listas listas a intersecar
+     * @return IDs presentes en todas las listas, en orden ascendente
+     */
+    public static long[] interseccion(List<PostingList> listas) {
+        if (listas.isEmpty()) {
+            return new long[0];
+        }
+
+        List<PostingList> ordenadas = listas.stream()
+                .sorted(Comparator.comparingInt(PostingList::tamano))
+                .toList();
+        PostingList menor = ordenadas.get(0);
+
+        long[] resultado = new long[menor.tamano];
+        int encontrados = 0;
+
+        for (int i = 0; i < menor.tamano; i++) {
+            long id = menor.ids[i];
+            boolean enTodas = true;
+            for (int j = 1; j < ordenadas.size() && enTodas; j++) {
+                enTodas = ordenadas.get(j).contiene(id);
+            }
+            if (enTodas) {
+                resultado[encontrados++] = id;
+            }
+        }
+
+        return Arrays.copyOf(resultado, encontrados);
+    }
+
+    private void asegurarCapacidad() {
+        if (tamano == ids.length) {
+            ids = Arrays.copyOf(ids, ids.length * 2);
+        }
+    }
+}
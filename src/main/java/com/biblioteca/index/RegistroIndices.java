@@ -0,0 +1,116 @@
+package com.biblioteca.index;
+
+import com.biblioteca.model.entities.Libro;
+import com.biblioteca.patterns.observer.LibroSubject;
+import com.biblioteca.repository.RouterShards;
+import com.biblioteca.service.CacheBusquedas;
+import com.biblioteca.service.ContadoresLibros;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Carga y registra todos los índices en memoria como observadores del servicio
+ * Separa el registro de los índices para que el servicio pueda usarlos sin dependencias circulares
+ * La caché de búsquedas se registra al final, para invalidar cuando los índices ya están actualizados.
+ * Los contadores de estadísticas solo se registran si su modo está activo.
+ * También repara los índices en segundo plano, fuera de la transacción que lo provoca: relee los libros
+ * de un commit de resultado incierto y reconstruye el índice en el que falló un cambio
+ */
+@Component
+public class RegistroIndices {
+    
+    private static final Logger log = LoggerFactory.getLogger(RegistroIndices.class);
+    
+    private static final int TAMANO_LOTE_CARGA = 1000;
+    private static final long ESPERA_REINTENTO_MS = 30_000;
+    
+    private final RouterShards shards;
+    private final ExecutorService ejecutor = Executors.newVirtualThreadPerTaskExecutor();
+    
+    public RegistroIndices(LibroSubject libroSubject, List<BaseIndiceLibros> indices, CacheBusquedas cacheBusquedas,
+                           ContadoresLibros contadoresLibros, RouterShards shards) {
+        this.shards = shards;
+        cargar(indices, shards);
+
+        indices.forEach(indice -> indice.conectar(this));
+        indices.forEach(libroSubject::agregarObservador);
+        libroSubject.agregarObservador(cacheBusquedas);
+        if (contadoresLibros.isActivo()) {
+            libroSubject.agregarObservador(contadoresLibros);
+        }
+    }
+    
+    /**
+     * Relee de la base de datos los libros de una notificación cuyo commit tuvo un resultado incierto
+     * y los repone en el índice; si la lectura falla, reconstruye el índice
+     * @param indice índice afectado
+     * @param notificados libros notificados
+     */
+    void recargar(BaseIndiceLibros indice, List<Libro> notificados) {
+        ejecutor.execute(() -> {
+            try {
+                List<Libro> leidos = shards.findAllById(notificados.stream().map(Libro::getId).toList());
+                indice.aplicarRecarga(notificados, leidos);
+            } catch (RuntimeException e) {
+                log.error("No se pudieron releer {} libros para '{}'; se reconstruye el índice",
+                        notificados.size(), indice.getNombreObservador(), e);
+                reconstruir(indice);
+            }
+        });
+    }
+    
+    /**
+     * Reconstruye el índice desde la base de datos, reintentando cada ESPERA_REINTENTO_MS hasta que lo consigue
+     * @param indice índice a reconstruir
+     */
+    void reconstruir(BaseIndiceLibros indice) {
+        ejecutor.execute(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    indice.ejecutarReconstruccion(shards, TAMANO_LOTE_CARGA);
+                    return;
+                } catch (RuntimeException e) {
+                    log.error("No se pudo reconstruir '{}'; se reintenta en {} ms",
+                            indice.getNombreObservador(), ESPERA_REINTENTO_MS, e);
+                }
+                try {
+                    Thread.sleep(ESPERA_REINTENTO_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+    }
+    
+    @PreDestroy
+    public void cerrar() {
+        ejecutor.shutdownNow();
+    }
+    
+    /**
+     * Carga todos los índices con un único recorrido de la tabla en orden global de ID
+     * Cada lote se entrega a todos los índices y se descarta del contexto de persistencia, así que
+     * el arranque lee el catálogo una sola vez y solo retiene un lote de entidades a la vez
+     * (los índices sí crecen con el catálogo)
+     */
+    private static void cargar(List<BaseIndiceLibros> indices, RouterShards shards) {
+        long inicio = System.nanoTime();
+        long cargados = shards.recorrer(null, TAMANO_LOTE_CARGA, lote -> {
+            indices.forEach(indice -> indice.cargarLote(lote));
+            return lote.size();
+        });
+        indices.forEach(indice -> indice.cargaCompletada(cargados));
+
+        System.out.println(String.format("📇 Índices en memoria cargados: %d libros, %d índices, %d shards, %d ms",
+                cargados, indices.size(), shards.getNumeroShards(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio)));
+    }
+}
+
@@ -0,0 +1,15 @@
+package com.biblioteca.model.dto;
+
+import com.biblioteca.model.enums.EstadoLibro;
+import com.biblioteca.model.enums.FormatoLibro;
+import com.biblioteca.model.enums.TipoLibro;
+
+/**
+ * Número de libros de una combinación de estado, tipo y formato
+ * Es una fila del desglose de estadísticas (SELECT new ... GROUP BY estado, tipo, formato)
+ * @param estado estado de los libros
+ * @param tipo tipo de los libros
+ * @param formato formato de los libros
+ * @param libros número de libros con esa combinación
+ */
+public record ConteoLibros(EstadoLibro estado, TipoLibro tipo, FormatoLibro formato, Long libros) {}
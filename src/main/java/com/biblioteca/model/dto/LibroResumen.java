@@ -0,0 +1,53 @@
+package com.biblioteca.model.dto;
+
+import com.biblioteca.model.entities.Libro;
+import com.biblioteca.model.enums.EstadoLibro;
+import com.biblioteca.model.enums.FormatoLibro;
+import com.biblioteca.model.enums.TipoLibro;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Proyección de solo lectura de un libro para los listados y búsquedas
+ * Se construye directamente desde las columnas de la consulta (SELECT new ...), sin entidades
+ * gestionadas ni snapshots en el contexto de persistencia. Los campos calculados
+ * (informacion, disponible) solo se rellenan y se serializan si se piden con conDetalle()
+ * @param id ID del libro
+ * @param titulo título
+ * @param autor autor
+ * @param tipo tipo de libro
+ * @param formato formato
+ * @param estado estado actual
+ * @param informacion descripción legible, igual que Libro.getInformacion() (null si no se pidió)
+ * @param disponible si está disponible para préstamo (null si no se pidió)
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record LibroResumen(Long id, String titulo, String autor, TipoLibro tipo, FormatoLibro formato,
+                           EstadoLibro estado, String informacion, Boolean disponible) {
+    
+    /**
+     * Constructor usado por la proyección de la consulta
+     */
+    public LibroResumen(Long id, String titulo, String autor, TipoLibro tipo, FormatoLibro formato, EstadoLibro estado) {
+        this(id, titulo, autor, tipo, formato, estado, null, null);
+    }
+    
+    /**
+     * Resumen de un libro ya cargado, para los recorridos que filtran entidades en memoria
+     * @param libro libro a resumir
+     * @return resumen sin campos calculados
+     */
+    public static LibroResumen de(Libro libro) {
+        return new LibroResumen(libro.getId(), libro.getTitulo(), libro.getAutor(),
+                libro.getTipo(), libro.getFormato(), libro.getEstado());
+    }
+    
+    /**
+     * Obtiene una copia con los campos calculados
+     * @return resumen con informacion y disponible
+     */
+    public LibroResumen conDetalle() {
+        return new LibroResumen(id, titulo, autor, tipo, formato, estado,
+                Libro.formatearInformacion(id, titulo, autor, tipo, formato, estado),
+                estado == EstadoLibro.DISPONIBLE);
+    }
+}
@@ -0,0 +1,18 @@
+package com.biblioteca.model.entities;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
+/**
+ * Generador de IDs de Libro sobre libros_seq que respeta un ID ya asignado
+ * Con un único shard se comporta como la secuencia con pooled optimizer; con varios,
+ * RouterShards asigna el ID antes de guardar (decide el shard) y aquí se conserva
+ */
+public class GeneradorIdLibro extends SequenceStyleGenerator {
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object objeto) {
+        Long id = ((Libro) objeto).getId();
+        return id != null ? id : super.generate(session, objeto);
+    }
+}
@@ -4,8 +4,13 @@ import com.biblioteca.model.enums.EstadoLibro;
 import com.biblioteca.model.enums.FormatoLibro;
 import com.biblioteca.model.enums.TipoLibro;
 import com.biblioteca.model.interfaces.ILibro;
+import com.biblioteca.util.TextoNormalizador;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import java.time.LocalDateTime;
@@ -16,11 +21,33 @@ import java.util.Objects;
  * Implementa la interfaz ILibro y principios de Clean Code
  */
 @Entity
-@Table(name = "libros")
+// El esquema lo crean las migraciones de db/migration; estas anotaciones lo documentan y Hibernate lo valida
+@Table(name = "libros", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_libros_titulo_autor", columnNames = {"titulo", "autor"})
+}, indexes = {
+        @Index(name = "idx_libros_titulo_norm", columnList = "titulo_norm"),
+        @Index(name = "idx_libros_autor_norm", columnList = "autor_norm"),
+        @Index(name = "idx_libros_estado", columnList = "estado, id"),
+        @Index(name = "idx_libros_tipo", columnList = "tipo, id"),
+        @Index(name = "idx_libros_formato", columnList = "formato, id")
+})
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Libro.REGION_CACHE)
 public class Libro implements ILibro {
     
+    /** Región de la caché de segundo nivel (tamaño en hibernate-cache.conf) */
+    public static final String REGION_CACHE = "libros";
+    
+    // Secuencia con pooled optimizer: se reservan 50 IDs por viaje a la base de datos,
+    // lo que además permite a Hibernate agrupar los INSERT en lotes JDBC (IDENTITY lo impide).
+    // Con varios shards el ID lo asigna RouterShards antes de guardar y el generador lo respeta
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "libros_seq")
+    @GenericGenerator(name = "libros_seq", type = GeneradorIdLibro.class, parameters = {
+            @Parameter(name = "sequence_name", value = "libros_seq"),
+            @Parameter(name = "increment_size", value = "50"),
+            @Parameter(name = "optimizer", value = "pooled")
+    })
     private Long id;
     
     @NotBlank(message = "El título no puede estar vacío")
@@ -31,6 +58,13 @@ public class Libro implements ILibro {
     @Column(nullable = false, length = 100)
     private String autor;
     
+    // Columnas de búsqueda sin acentos y en minúsculas, indexadas para búsquedas por prefijo e igualdad
+    @Column(name = "titulo_norm", nullable = false, length = 200)
+    private String tituloNormalizado;
+    
+    @Column(name = "autor_norm", nullable = false, length = 100)
+    private String autorNormalizado;
+    
     @NotNull(message = "El tipo de libro es obligatorio")
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
@@ -52,6 +86,12 @@ public class Libro implements ILibro {
     @Column(name = "fecha_actualizacion")
     private LocalDateTime fechaActualizacion;
     
+    // Bloqueo optimista de las escrituras sobre la entidad; los UPDATE de estado condicionales
+    // (LibroRepository.cambiarEstadoSiEs) también la incrementan, así que ordena los cambios de cada libro.
+    // Null en un libro nuevo, lo que además indica a Spring Data que debe usar persist y no merge
+    @Version
+    private Long version;
+    
     // Constructor por defecto requerido por JPA
     public Libro() {
         this.estado = EstadoLibro.DISPONIBLE;
@@ -106,6 +146,14 @@ public class Libro implements ILibro {
     
     @Override
     public String getInformacion() {
+        return formatearInformacion(id, titulo, autor, tipo, formato, estado);
+    }
+    
+    /**
+     * Formato común de la información del libro, compartido con las proyecciones (LibroResumen)
+     */
+    public static String formatearInformacion(Long id, String titulo, String autor,
+                                              TipoLibro tipo, FormatoLibro formato, EstadoLibro estado) {
         return String.format("Libro[ID=%d, Título='%s', Autor='%s', Tipo=%s, Formato=%s, Estado=%s]",
                 id, titulo, autor, tipo.getDescripcion(), formato.getDescripcion(), estado.getDescripcion());
     }
@@ -148,6 +196,14 @@ public class Libro implements ILibro {
         this.fechaCreacion = fechaCreacion;
     }
     
+    /**
+     * Versión del bloqueo optimista: crece con cada cambio confirmado del libro
+     * @return versión, o null si el libro aún no se ha guardado
+     */
+    public Long getVersion() {
+        return version;
+    }
+    
     public LocalDateTime getFechaActualizacion() {
         return fechaActualizacion;
     }
@@ -160,11 +216,18 @@ public class Libro implements ILibro {
     @PrePersist
     protected void onCreate() {
         fechaCreacion = LocalDateTime.now();
+        normalizarColumnasBusqueda();
     }
     
     @PreUpdate
     protected void onUpdate() {
         fechaActualizacion = LocalDateTime.now();
+        normalizarColumnasBusqueda();
+    }
+    
+    private void normalizarColumnasBusqueda() {
+        tituloNormalizado = TextoNormalizador.normalizar(titulo);
+        autorNormalizado = TextoNormalizador.normalizar(autor);
     }
     
     // Métodos equals, hashCode y toString para buenas prácticas
@@ -2,6 +2,8 @@ package com.biblioteca.patterns.observer;
 
 import com.biblioteca.model.entities.Libro;
 
+import java.util.List;
+
 /**
  * Interfaz Observer para el patrón Observer
  * Define el contrato para observadores que reciben notificaciones
@@ -16,12 +18,48 @@ public interface LibroObserver {
      */
     void onLibroEstadoCambiado(Libro libro, String estadoAnterior, String estadoNuevo);
     
+    /**
+     * Método llamado cuando varios libros cambian a la vez del mismo estado a otro
+     * Por defecto notifica libro a libro; los observadores pueden procesar el lote de una vez
+     * @param libros los libros que cambiaron
+     * @param estadoAnterior el estado anterior de todos ellos
+     * @param estadoNuevo el nuevo estado de todos ellos
+     */
+    default void onLibrosEstadoCambiado(List<Libro> libros, String estadoAnterior, String estadoNuevo) {
+        libros.forEach(libro -> onLibroEstadoCambiado(libro, estadoAnterior, estadoNuevo));
+    }
+    
     /**
      * Método llamado cuando se agrega un nuevo libro
      * @param libro el libro que fue agregado
      */
     void onLibroAgregado(Libro libro);
     
+    /**
+     * Método llamado cuando se agregan varios libros en una misma transacción (altas masivas)
+     * Por defecto notifica libro a libro; los observadores pueden procesar el lote de una vez
+     * @param libros los libros agregados
+     */
+    default void onLibrosAgregados(List<Libro> libros) {
+        libros.forEach(this::onLibroAgregado);
+    }
+    
+    /**
+     * Método llamado cuando se elimina un libro
+     * @param libro el libro que fue eliminado
+     */
+    void onLibroEliminado(Libro libro);
+    
+    /**
+     * Indica si el observador puede recibir las notificaciones en diferido, desde su propia cola
+     * (modo biblioteca.observadores.asincrono). Los que deben estar al día al confirmar la
+     * transacción, como los índices de búsqueda, devuelven false y se notifican en el acto
+     * @return true si admite notificación asíncrona
+     */
+    default boolean admiteNotificacionAsincrona() {
+        return true;
+    }
+    
     /**
      * Obtiene el nombre del observador
      * @return nombre descriptivo del observador
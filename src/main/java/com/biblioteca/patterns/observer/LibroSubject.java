@@ -30,12 +30,32 @@ public interface LibroSubject {
      */
     void notificarCambioEstado(Libro libro, String estadoAnterior, String estadoNuevo);
     
+    /**
+     * Notifica a todos los observadores sobre un cambio de estado de varios libros, en una sola llamada
+     * @param libros los libros que cambiaron
+     * @param estadoAnterior el estado anterior
+     * @param estadoNuevo el nuevo estado
+     */
+    void notificarCambioEstadoLote(List<Libro> libros, String estadoAnterior, String estadoNuevo);
+    
     /**
      * Notifica a todos los observadores sobre un libro agregado
      * @param libro el libro que fue agregado
      */
     void notificarLibroAgregado(Libro libro);
     
+    /**
+     * Notifica a todos los observadores sobre varios libros agregados, en una sola llamada
+     * @param libros los libros agregados
+     */
+    void notificarLibrosAgregados(List<Libro> libros);
+    
+    /**
+     * Notifica a todos los observadores sobre un libro eliminado
+     * @param libro el libro que fue eliminado
+     */
+    void notificarLibroEliminado(Libro libro);
+    
     /**
      * Obtiene la lista de observadores
      * @return lista de observadores registrados
@@ -18,6 +18,7 @@ public class EstadisticasObserver implements LibroObserver {
     private int totalLibrosAgregados = 0;
     private int totalPrestamosCuandoRealizados = 0;
     private int totalDevoluciones = 0;
+    private int totalLibrosEliminados = 0;
     
     @Override
     public void onLibroEstadoCambiado(Libro libro, String estadoAnterior, String estadoNuevo) {
@@ -48,6 +49,16 @@ public class EstadisticasObserver implements LibroObserver {
         ));
     }
     
+    @Override
+    public void onLibroEliminado(Libro libro) {
+        totalLibrosEliminados++;
+        String timestamp = LocalDateTime.now().format(FORMATTER);
+        System.out.println(String.format(
+            "[%s] 📊 ESTADÍSTICA: Total de libros eliminados: %d",
+            timestamp, totalLibrosEliminados
+        ));
+    }
+    
     @Override
     public String getNombreObservador() {
         return "Observer de Estadísticas";
@@ -66,6 +77,10 @@ public class EstadisticasObserver implements LibroObserver {
         return totalDevoluciones;
     }
     
+    public int getTotalLibrosEliminados() {
+        return totalLibrosEliminados;
+    }
+    
     public void mostrarResumenEstadisticas() {
         System.out.println("\n=== RESUMEN DE ESTADÍSTICAS ===");
         System.out.println("📚 Total de libros agregados: " + totalLibrosAgregados);
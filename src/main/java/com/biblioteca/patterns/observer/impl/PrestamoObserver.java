@@ -43,6 +43,15 @@ public class PrestamoObserver implements LibroObserver {
         ));
     }
     
+    @Override
+    public void onLibroEliminado(Libro libro) {
+        String timestamp = LocalDateTime.now().format(FORMATTER);
+        System.out.println(String.format(
+            "[%s] ➖ LIBRO ELIMINADO: Se retiró '%s' de %s de la biblioteca.",
+            timestamp, libro.getTitulo(), libro.getAutor()
+        ));
+    }
+    
     @Override
     public String getNombreObservador() {
         return "Observer de Préstamos";
@@ -0,0 +1,113 @@
+package com.biblioteca.patterns.strategy;
+
+import com.biblioteca.model.entities.Libro;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Predicate;
+
+/**
+ * Modo de ejecución paralelo para las búsquedas en memoria de cualquier SearchStrategy
+ * Las listas por encima del umbral se dividen en tramos que se filtran en un ForkJoinPool propio,
+ * sin competir con el pool común, y los resultados se concatenan en el orden original.
+ * Las listas pequeñas se filtran en secuencia, donde el reparto no compensa
+ * El umbral por defecto no está medido en los nodos de producción: EjecutorBusquedaParalelaTest
+ * (-Dbenchmark=true) mide el punto de cruce en la máquina donde se ejecuta
+ */
+@Component
+public class EjecutorBusquedaParalela {
+    
+    private static final int TAMANO_TRAMO_MINIMO = 1024;
+    private static final int TRAMOS_POR_HILO = 4;
+    
+    private final ForkJoinPool pool;
+    private final int umbral;
+    
+    public EjecutorBusquedaParalela(@Value("${biblioteca.busqueda.paralela.umbral:20000}") int umbral,
+                                    @Value("${biblioteca.busqueda.paralela.hilos:0}") int hilos) {
+        this.umbral = umbral;
+        this.pool = new ForkJoinPool(hilos > 0 ? hilos : Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * Ejecuta la búsqueda en memoria de una estrategia, en paralelo si la lista supera el umbral
+     * @param estrategia estrategia de búsqueda
+     * @param libros lista de libros donde buscar
+     * @param criterio criterio de búsqueda
+     * @return libros coincidentes, en el mismo orden que en la lista original
+     */
+    public List<Libro> buscar(SearchStrategy estrategia, List<Libro> libros, String criterio) {
+        if (libros.size() < umbral) {
+            return estrategia.buscar(libros, criterio);
+        }
+        
+        Predicate<Libro> predicado = estrategia.predicado(criterio);
+        int tamanoTramo = Math.max(TAMANO_TRAMO_MINIMO,
+                (libros.size() + pool.getParallelism() * TRAMOS_POR_HILO - 1) / (pool.getParallelism() * TRAMOS_POR_HILO));
+        int tramos = (libros.size() + tamanoTramo - 1) / tamanoTramo;
+        
+        List<List<Libro>> parciales = new ArrayList<>(tramos);
+        for (int i = 0; i < tramos; i++) {
+            parciales.add(null);
+        }
+        pool.invoke(new FiltroTramos(libros, predicado, tamanoTramo, parciales, 0, tramos));
+        
+        List<Libro> resultado = new ArrayList<>(parciales.stream().mapToInt(List::size).sum());
+        parciales.forEach(resultado::addAll);
+        return resultado;
+    }
+    
+    @PreDestroy
+    public void cerrar() {
+        pool.shutdown();
+    }
+    
+    /**
+     * Divide el rango de tramos por la mitad hasta llegar a uno; cada hoja filtra su tramo
+     * y deja el resultado en su posición, de modo que el orden se conserva sin reordenar
+     */
+    private static final class FiltroTramos extends RecursiveAction {
+        private final List<Libro> libros;
+        private final Predicate<Libro> predicado;
+        private final int tamanoTramo;
+        private final List<List<Libro>> parciales;
+        private final int desde;
+        private final int hasta;
+        
+        private FiltroTramos(List<Libro> libros, Predicate<Libro> predicado, int tamanoTramo,
+                             List<List<Libro>> parciales, int desde, int hasta) {
+            this.libros = libros;
+            this.predicado = predicado;
+            this.tamanoTramo = tamanoTramo;
+            this.parciales = parciales;
+            this.desde = desde;
+            this.hasta = hasta;
+        }
+        
+        @Override
+        protected void compute() {
+            if (hasta - desde > 1) {
+                int mitad = (desde + hasta) >>> 1;
+                invokeAll(new FiltroTramos(libros, predicado, tamanoTramo, parciales, desde, mitad),
+                          new FiltroTramos(libros, predicado, tamanoTramo, parciales, mitad, hasta));
+                return;
+            }
+            
+            int inicio = desde * tamanoTramo;
+            int fin = Math.min(libros.size(), inicio + tamanoTramo);
+            List<Libro> encontrados = new ArrayList<>();
+            for (int i = inicio; i < fin; i++) {
+                Libro libro = libros.get(i);
+                if (predicado.test(libro)) {
+                    encontrados.add(libro);
+                }
+            }
+            parciales.set(desde, encontrados);
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package com.biblioteca.patterns.strategy;
 
 import com.biblioteca.model.entities.Libro;
+import org.springframework.data.jpa.domain.Specification;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
 
 /**
  * Interfaz para el patrón Strategy
@@ -18,6 +21,58 @@ public interface SearchStrategy {
      */
     List<Libro> buscar(List<Libro> libros, String criterio);
     
+    /**
+     * Resuelve la búsqueda sobre un índice en memoria, sin cargar el catálogo
+     * Por defecto la estrategia no dispone de índice y se usa buscar(libros, criterio)
+     * @param criterio criterio de búsqueda
+     * @return IDs de los libros que coinciden en orden ascendente, o vacío si no hay índice
+     */
+    default Optional<List<Long>> buscarIds(String criterio) {
+        return Optional.empty();
+    }
+    
+    /**
+     * Expresa el criterio como una Specification que se ejecuta en la base de datos,
+     * de modo que solo los libros coincidentes se cargan y se hidratan
+     * Por defecto la estrategia no puede delegarse y se usa buscar(libros, criterio)
+     * @param criterio criterio de búsqueda
+     * @return specification equivalente a buscar(libros, criterio), o vacío si no existe
+     */
+    default Optional<Specification<Libro>> especificacion(String criterio) {
+        return Optional.empty();
+    }
+    
+    /**
+     * Expresa el criterio como un predicado que se evalúa libro a libro,
+     * para combinar varias estrategias sin recorrer la lista una vez por cada una
+     * Por defecto se apoya en buscar(libros, criterio) con una lista de un solo libro
+     * @param criterio criterio de búsqueda
+     * @return predicado equivalente a buscar(libros, criterio)
+     */
+    default Predicate<Libro> predicado(String criterio) {
+        return libro -> !buscar(List.of(libro), criterio).isEmpty();
+    }
+    
+    /**
+     * Predicado para comprobar si un libro modificado afecta a un resultado ya calculado (caché de búsquedas)
+     * No es una búsqueda: las estrategias que aprenden de sus evaluaciones no deben contarlo
+     * Por defecto es el mismo que predicado(criterio)
+     * @param criterio criterio de búsqueda
+     * @return predicado equivalente a predicado(criterio)
+     */
+    default Predicate<Libro> predicadoComprobacion(String criterio) {
+        return predicado(criterio);
+    }
+    
+    /**
+     * Coste relativo de evaluar el predicado sobre un libro
+     * Una comparación de enumerados cuesta 1; las estrategias que recorren texto cuestan más
+     * @return coste estimado por evaluación
+     */
+    default int costeRelativo() {
+        return 10;
+    }
+    
     /**
      * Obtiene el nombre de la estrategia
      * @return nombre descriptivo de la estrategia
@@ -0,0 +1,335 @@
+package com.biblioteca.patterns.strategy.impl;
+
+import com.biblioteca.model.entities.Libro;
+import com.biblioteca.patterns.strategy.SearchStrategy;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Component;
+
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Implementación de Strategy que combina varias estrategias con AND
+ * El criterio tiene la forma "clave=valor&clave=valor" (valores codificados como en una URL)
+ * con las claves titulo, autor, tipo, estado y aproximada.
+ * Las condiciones se ordenan siempre por rango (coste / (1 - selectividad)):
+ * - con índices, se intersectan sus IDs en ese orden y se para en cuanto el resultado queda vacío;
+ *   cada intersección registra la selectividad observada
+ * - con Specification, se combinan en ese orden en una sola consulta, pero el orden de evaluación
+ *   lo decide el optimizador de la base de datos con sus propios índices
+ * - en memoria, cada libro se descarta en el primer predicado que falla
+ */
+@Component
+public class CompositeSearchStrategy implements SearchStrategy {
+    
+    public static final String TITULO = "titulo";
+    public static final String AUTOR = "autor";
+    public static final String TIPO = "tipo";
+    public static final String ESTADO = "estado";
+    public static final String APROXIMADA = "aproximada";
+    
+    private final Map<String, SearchStrategy> estrategias = new LinkedHashMap<>();
+    private final Map<String, Selectividad> selectividades = new LinkedHashMap<>();
+    
+    public CompositeSearchStrategy(SearchByTitleStrategy searchByTitleStrategy,
+                                   SearchByAuthorStrategy searchByAuthorStrategy,
+                                   SearchByTypeStrategy searchByTypeStrategy,
+                                   SearchByStateStrategy searchByStateStrategy,
+                                   SearchFuzzyStrategy searchFuzzyStrategy) {
+        estrategias.put(TITULO, searchByTitleStrategy);
+        estrategias.put(AUTOR, searchByAuthorStrategy);
+        estrategias.put(TIPO, searchByTypeStrategy);
+        estrategias.put(ESTADO, searchByStateStrategy);
+        estrategias.put(APROXIMADA, searchFuzzyStrategy);
+        estrategias.keySet().forEach(clave -> selectividades.put(clave, new Selectividad()));
+    }
+    
+    /**
+     * Compone el criterio a partir de pares clave-valor; los valores vacíos o null se omiten
+     * @param criterios valores por clave (titulo, autor, tipo, estado, aproximada)
+     * @return criterio con la forma "clave=valor&clave=valor"
+     */
+    public static String componerCriterio(Map<String, String> criterios) {
+        return criterios.entrySet().stream()
+                .filter(entrada -> entrada.getValue() != null && !entrada.getValue().trim().isEmpty())
+                .map(entrada -> entrada.getKey() + "=" + URLEncoder.encode(entrada.getValue(), StandardCharsets.UTF_8))
+                .collect(Collectors.joining("&"));
+    }
+    
+    @Override
+    public List<Libro> buscar(List<Libro> libros, String criterio) {
+        List<Condicion> condiciones = condiciones(criterio);
+        
+        if (condiciones.isEmpty()) {
+            return List.of();
+        }
+        
+        Predicate<Libro> predicado = conjuncion(condiciones);
+        return libros.stream()
+                .filter(predicado)
+                .collect(Collectors.toList());
+    }
+    
+    @Override
+    public Optional<List<Long>> buscarIds(String criterio) {
+        List<Condicion> condiciones = condiciones(criterio);
+        
+        if (condiciones.isEmpty()) {
+            return Optional.of(List.of());
+        }
+        
+        // Con un resultado vacío el AND ya está resuelto, aunque queden condiciones sin índice
+        List<Long> resultado = null;
+        for (Condicion condicion : condiciones) {
+            Optional<List<Long>> ids = condicion.estrategia().buscarIds(condicion.valor());
+            if (ids.isEmpty()) {
+                return Optional.empty();
+            }
+            if (resultado == null) {
+                resultado = ids.get();
+            } else {
+                List<Long> interseccion = interseccion(resultado, ids.get());
+                condicion.selectividad().evaluados.add(resultado.size());
+                condicion.selectividad().aceptados.add(interseccion.size());
+                resultado = interseccion;
+            }
+            if (resultado.isEmpty()) {
+                return Optional.of(List.of());
+            }
+        }
+        
+        return Optional.of(resultado);
+    }
+    
+    @Override
+    public Optional<Specification<Libro>> especificacion(String criterio) {
+        List<Condicion> condiciones = condiciones(criterio);
+        
+        if (condiciones.isEmpty()) {
+            return Optional.empty();
+        }
+        
+        Specification<Libro> combinada = null;
+        for (Condicion condicion : condiciones) {
+            Optional<Specification<Libro>> especificacion = condicion.estrategia().especificacion(condicion.valor());
+            if (especificacion.isEmpty()) {
+                return Optional.empty();
+            }
+            combinada = combinada == null ? especificacion.get() : combinada.and(especificacion.get());
+        }
+        
+        return Optional.of(combinada);
+    }
+    
+    @Override
+    public Predicate<Libro> predicado(String criterio) {
+        List<Condicion> condiciones = condiciones(criterio);
+        
+        if (condiciones.isEmpty()) {
+            return libro -> false;
+        }
+        
+        return conjuncion(condiciones);
+    }
+    
+    /**
+     * Misma conjunción sin registrar selectividad: las comprobaciones de la caché no son búsquedas
+     * y sesgarían el orden de los predicados hacia los libros que cambian
+     */
+    @Override
+    public Predicate<Libro> predicadoComprobacion(String criterio) {
+        List<Condicion> condiciones = condiciones(criterio);
+        
+        if (condiciones.isEmpty()) {
+            return libro -> false;
+        }
+        
+        List<Predicate<Libro>> predicados = condiciones.stream()
+                .map(condicion -> condicion.estrategia().predicadoComprobacion(condicion.valor()))
+                .toList();
+        return libro -> predicados.stream().allMatch(predicado -> predicado.test(libro));
+    }
+    
+    @Override
+    public int costeRelativo() {
+        return estrategias.values().stream().mapToInt(SearchStrategy::costeRelativo).sum();
+    }
+    
+    /**
+     * Obtiene las estadísticas de selectividad de cada predicado, en el orden en que se evalúan
+     * @return estadísticas por clave, de menor a mayor rango
+     */
+    public List<EstadisticaPredicado> obtenerEstadisticas() {
+        return estrategias.entrySet().stream()
+                .map(entrada -> {
+                    Selectividad selectividad = selectividades.get(entrada.getKey());
+                    int coste = entrada.getValue().costeRelativo();
+                    return new EstadisticaPredicado(entrada.getKey(),
+                            entrada.getValue().getNombreEstrategia(),
+                            coste,
+                            selectividad.evaluados.sum(),
+                            selectividad.aceptados.sum(),
+                            selectividad.estimar(),
+                            selectividad.rango(coste));
+                })
+                .sorted(Comparator.comparingDouble(EstadisticaPredicado::rango))
+                .toList();
+    }
+    
+    @Override
+    public String getNombreEstrategia() {
+        return "Búsqueda Combinada";
+    }
+    
+    /**
+     * Interpreta el criterio y ordena las condiciones por rango ascendente
+     */
+    private List<Condicion> condiciones(String criterio) {
+        if (criterio == null || criterio.trim().isEmpty()) {
+            return List.of();
+        }
+        
+        Map<String, String> valores = new LinkedHashMap<>();
+        for (String par : criterio.split("&")) {
+            int separador = par.indexOf('=');
+            if (separador <= 0) {
+                continue;
+            }
+            String clave = par.substring(0, separador).trim();
+            String valor = URLDecoder.decode(par.substring(separador + 1), StandardCharsets.UTF_8);
+            if (!estrategias.containsKey(clave)) {
+                throw new IllegalArgumentException("Clave de búsqueda desconocida: " + clave);
+            }
+            if (!valor.trim().isEmpty()) {
+                valores.put(clave, valor);
+            }
+        }
+        
+        return valores.entrySet().stream()
+                .map(entrada -> {
+                    SearchStrategy estrategia = estrategias.get(entrada.getKey());
+                    Selectividad selectividad = selectividades.get(entrada.getKey());
+                    return new Condicion(estrategia, entrada.getValue(), selectividad,
+                            selectividad.rango(estrategia.costeRelativo()));
+                })
+                .sorted(Comparator.comparingDouble(Condicion::rango))
+                .toList();
+    }
+    
+    /**
+     * AND con cortocircuito de las condiciones ya ordenadas, registrando cuántos libros
+     * evalúa y acepta cada una
+     */
+    private static Predicate<Libro> conjuncion(List<Condicion> condiciones) {
+        List<Predicate<Libro>> predicados = condiciones.stream()
+                .map(condicion -> condicion.estrategia().predicado(condicion.valor()))
+                .toList();
+        
+        return libro -> {
+            for (int i = 0; i < predicados.size(); i++) {
+                Selectividad selectividad = condiciones.get(i).selectividad();
+                selectividad.evaluados.increment();
+                if (!predicados.get(i).test(libro)) {
+                    return false;
+                }
+                selectividad.aceptados.increment();
+            }
+            return true;
+        };
+    }
+    
+    /**
+     * Intersección de dos listas de IDs en orden ascendente, sin estructuras auxiliares
+     * Recorre la más corta y avanza en la larga galopando (saltos de 1, 2, 4... y búsqueda binaria
+     * en el último tramo): O(m log(n / m)), que con listas de tamaño parecido equivale a una mezcla lineal
+     */
+    static List<Long> interseccion(List<Long> una, List<Long> otra) {
+        List<Long> menor = una.size() <= otra.size() ? una : otra;
+        List<Long> mayor = menor == una ? otra : una;
+        
+        List<Long> resultado = new ArrayList<>(menor.size());
+        int desde = 0;
+        for (int i = 0; i < menor.size() && desde < mayor.size(); i++) {
+            long id = menor.get(i);
+            desde = galopar(mayor, desde, id);
+            if (desde < mayor.size() && mayor.get(desde) == id) {
+                resultado.add(id);
+                desde++;
+            }
+        }
+        
+        return resultado;
+    }
+    
+    /**
+     * Primera posición a partir de desde cuyo ID es mayor o igual que id (o el tamaño si no hay)
+     */
+    private static int galopar(List<Long> ids, int desde, long id) {
+        int salto = 1;
+        int hasta = desde;
+        while (hasta < ids.size() && ids.get(hasta) < id) {
+            desde = hasta + 1;
+            hasta += salto;
+            salto <<= 1;
+        }
+        hasta = Math.min(hasta, ids.size());
+        
+        while (desde < hasta) {
+            int medio = (desde + hasta) >>> 1;
+            if (ids.get(medio) < id) {
+                desde = medio + 1;
+            } else {
+                hasta = medio;
+            }
+        }
+        return desde;
+    }
+    
+    /**
+     * Condición de la búsqueda: estrategia, valor buscado y su rango en el momento de ordenar
+     */
+    private record Condicion(SearchStrategy estrategia, String valor, Selectividad selectividad, double rango) {}
+    
+    /**
+     * Contadores acumulados de un predicado
+     * La selectividad se estima con suavizado de Laplace para no fijar el orden con las primeras muestras,
+     * y el rango coste / (1 - selectividad) es el criterio clásico para ordenar un AND con cortocircuito:
+     * primero lo barato que descarta mucho
+     */
+    private static final class Selectividad {
+        private final LongAdder evaluados = new LongAdder();
+        private final LongAdder aceptados = new LongAdder();
+        
+        private double estimar() {
+            return (aceptados.sum() + 1.0) / (evaluados.sum() + 2.0);
+        }
+        
+        private double rango(int coste) {
+            return coste / Math.max(1.0 - estimar(), 1e-6);
+        }
+    }
+    
+    /**
+     * Estadísticas de selectividad de un predicado
+     * @param clave clave del predicado en el criterio
+     * @param estrategia nombre de la estrategia
+     * @param coste coste relativo por evaluación
+     * @param evaluados libros evaluados por el predicado
+     * @param aceptados libros que lo cumplieron
+     * @param selectividad fracción estimada de libros que lo cumplen
+     * @param rango coste / (1 - selectividad): se evalúa antes cuanto menor es
+     */
+    public record EstadisticaPredicado(String clave, String estrategia, int coste,
+                                       long evaluados, long aceptados,
+                                       double selectividad, double rango) {}
+}
@@ -2,14 +2,19 @@ package com.biblioteca.patterns.strategy.impl;
 
 import com.biblioteca.model.entities.Libro;
 import com.biblioteca.patterns.strategy.SearchStrategy;
+import com.biblioteca.repository.LibroSpecifications;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
  * Implementación de Strategy para búsqueda por autor
- * Utiliza streams de Java para filtrado eficiente
+ * Delega el filtrado a la base de datos y, sobre listas ya cargadas, usa streams de Java
  */
 @Component
 public class SearchByAuthorStrategy implements SearchStrategy {
@@ -20,14 +25,35 @@ public class SearchByAuthorStrategy implements SearchStrategy {
             return List.of();
         }
         
-        String criterioBusqueda = criterio.trim().toLowerCase();
-        
         return libros.stream()
-                .filter(libro -> libro.getAutor() != null)
-                .filter(libro -> libro.getAutor().toLowerCase().contains(criterioBusqueda))
+                .filter(predicado(criterio))
                 .collect(Collectors.toList());
     }
     
+    @Override
+    public Predicate<Libro> predicado(String criterio) {
+        if (criterio == null || criterio.trim().isEmpty()) {
+            return libro -> false;
+        }
+        
+        String criterioBusqueda = criterio.trim().toLowerCase(Locale.ROOT);
+        return libro -> libro.getAutor() != null && libro.getAutor().toLowerCase(Locale.ROOT).contains(criterioBusqueda);
+    }
+    
+    @Override
+    public int costeRelativo() {
+        return 8;
+    }
+    
+    @Override
+    public Optional<Specification<Libro>> especificacion(String criterio) {
+        if (criterio == null || criterio.trim().isEmpty()) {
+            return Optional.empty();
+        }
+        
+        return Optional.of(LibroSpecifications.autorContiene(criterio));
+    }
+    
     @Override
     public String getNombreEstrategia() {
         return "Búsqueda por Autor";
@@ -0,0 +1,96 @@
+package com.biblioteca.patterns.strategy.impl;
+
+import com.biblioteca.index.IndiceBitmapEnumerados;
+import com.biblioteca.model.entities.Libro;
+import com.biblioteca.model.enums.EstadoLibro;
+import com.biblioteca.patterns.strategy.SearchStrategy;
+import com.biblioteca.repository.LibroSpecifications;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Implementación de Strategy para búsqueda por estado del libro
+ * Permite filtrar libros disponibles o prestados, usando el índice bitmap de estados
+ */
+@Component
+public class SearchByStateStrategy implements SearchStrategy {
+    
+    private final IndiceBitmapEnumerados indiceEnumerados;
+    
+    public SearchByStateStrategy(IndiceBitmapEnumerados indiceEnumerados) {
+        this.indiceEnumerados = indiceEnumerados;
+    }
+    
+    @Override
+    public List<Libro> buscar(List<Libro> libros, String criterio) {
+        return libros.stream()
+                .filter(predicado(criterio))
+                .collect(Collectors.toList());
+    }
+    
+    @Override
+    public Optional<List<Long>> buscarIds(String criterio) {
+        EstadoLibro estadoABuscar = determinarEstado(criterio);
+        
+        if (estadoABuscar == null) {
+            return Optional.of(List.of());
+        }
+        
+        return Optional.of(indiceEnumerados.filtrar(null, null, Set.of(estadoABuscar)));
+    }
+    
+    @Override
+    public Optional<Specification<Libro>> especificacion(String criterio) {
+        EstadoLibro estadoABuscar = determinarEstado(criterio);
+        
+        if (estadoABuscar == null) {
+            return Optional.empty();
+        }
+        
+        return Optional.of(LibroSpecifications.conEstado(estadoABuscar));
+    }
+    
+    @Override
+    public Predicate<Libro> predicado(String criterio) {
+        EstadoLibro estadoABuscar = determinarEstado(criterio);
+        return libro -> estadoABuscar != null && libro.getEstado() == estadoABuscar;
+    }
+    
+    @Override
+    public int costeRelativo() {
+        return 1;
+    }
+    
+    /**
+     * Determina el estado según el criterio, por nombre o por descripción
+     * @param criterio texto de búsqueda
+     * @return el estado correspondiente, o null si el criterio no corresponde a ninguno
+     */
+    private EstadoLibro determinarEstado(String criterio) {
+        if (criterio == null || criterio.trim().isEmpty()) {
+            return null;
+        }
+        
+        String criterioBusqueda = criterio.trim();
+        
+        for (EstadoLibro estado : EstadoLibro.values()) {
+            if (estado.name().equalsIgnoreCase(criterioBusqueda)
+                    || estado.getDescripcion().equalsIgnoreCase(criterioBusqueda)) {
+                return estado;
+            }
+        }
+        
+        return null;
+    }
+    
+    @Override
+    public String getNombreEstrategia() {
+        return "Búsqueda por Estado";
+    }
+}
@@ -1,33 +1,76 @@
 package com.biblioteca.patterns.strategy.impl;
 
+import com.biblioteca.index.IndiceTrigramasTitulo;
 import com.biblioteca.model.entities.Libro;
 import com.biblioteca.patterns.strategy.SearchStrategy;
+import com.biblioteca.repository.LibroSpecifications;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
  * Implementación de Strategy para búsqueda por título
- * Utiliza streams de Java para filtrado eficiente
+ * Utiliza el índice de trigramas de títulos y, sobre listas ya cargadas, streams de Java
  */
 @Component
 public class SearchByTitleStrategy implements SearchStrategy {
     
+    private final IndiceTrigramasTitulo indiceTitulos;
+    
+    public SearchByTitleStrategy(IndiceTrigramasTitulo indiceTitulos) {
+        this.indiceTitulos = indiceTitulos;
+    }
+    
     @Override
     public List<Libro> buscar(List<Libro> libros, String criterio) {
         if (criterio == null || criterio.trim().isEmpty()) {
             return List.of();
         }
         
-        String criterioBusqueda = criterio.trim().toLowerCase();
-        
         return libros.stream()
-                .filter(libro -> libro.getTitulo() != null)
-                .filter(libro -> libro.getTitulo().toLowerCase().contains(criterioBusqueda))
+                .filter(predicado(criterio))
                 .collect(Collectors.toList());
     }
     
+    @Override
+    public Predicate<Libro> predicado(String criterio) {
+        if (criterio == null || criterio.trim().isEmpty()) {
+            return libro -> false;
+        }
+        
+        // Misma normalización que el índice de trigramas, para que ambos caminos devuelvan los mismos libros
+        String criterioBusqueda = IndiceTrigramasTitulo.normalizar(criterio);
+        return libro -> libro.getTitulo() != null
+                && IndiceTrigramasTitulo.normalizar(libro.getTitulo()).contains(criterioBusqueda);
+    }
+    
+    @Override
+    public int costeRelativo() {
+        return 8;
+    }
+    
+    @Override
+    public Optional<List<Long>> buscarIds(String criterio) {
+        if (criterio == null || criterio.trim().isEmpty()) {
+            return Optional.of(List.of());
+        }
+        
+        return Optional.of(indiceTitulos.buscar(criterio));
+    }
+    
+    @Override
+    public Optional<Specification<Libro>> especificacion(String criterio) {
+        if (criterio == null || criterio.trim().isEmpty()) {
+            return Optional.empty();
+        }
+        
+        return Optional.of(LibroSpecifications.tituloContiene(criterio));
+    }
+    
     @Override
     public String getNombreEstrategia() {
         return "Búsqueda por Título";
@@ -1,44 +1,97 @@
 package com.biblioteca.patterns.strategy.impl;
 
+import com.biblioteca.index.IndiceBitmapEnumerados;
 import com.biblioteca.model.entities.Libro;
 import com.biblioteca.model.enums.TipoLibro;
 import com.biblioteca.patterns.strategy.SearchStrategy;
+import com.biblioteca.repository.LibroSpecifications;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
  * Implementación de Strategy para búsqueda por tipo de libro
- * Permite filtrar por Ficción o No Ficción
+ * Permite filtrar por Ficción o No Ficción, usando el índice bitmap de tipos
  */
 @Component
 public class SearchByTypeStrategy implements SearchStrategy {
     
+    private final IndiceBitmapEnumerados indiceEnumerados;
+    
+    public SearchByTypeStrategy(IndiceBitmapEnumerados indiceEnumerados) {
+        this.indiceEnumerados = indiceEnumerados;
+    }
+    
     @Override
     public List<Libro> buscar(List<Libro> libros, String criterio) {
-        if (criterio == null || criterio.trim().isEmpty()) {
+        TipoLibro tipoABuscar = determinarTipo(criterio);
+        
+        if (tipoABuscar == null) {
             return List.of();
         }
         
-        String criterioBusqueda = criterio.trim().toLowerCase();
-        TipoLibro tipoABuscar = null;
+        return libros.stream()
+                .filter(libro -> libro.getTipo() == tipoABuscar)
+                .collect(Collectors.toList());
+    }
+    
+    @Override
+    public Predicate<Libro> predicado(String criterio) {
+        TipoLibro tipoABuscar = determinarTipo(criterio);
+        return libro -> tipoABuscar != null && libro.getTipo() == tipoABuscar;
+    }
+    
+    @Override
+    public int costeRelativo() {
+        return 1;
+    }
+    
+    @Override
+    public Optional<List<Long>> buscarIds(String criterio) {
+        TipoLibro tipoABuscar = determinarTipo(criterio);
         
-        // Determinar el tipo según el criterio
-        if (criterioBusqueda.contains("ficcion") || criterioBusqueda.contains("ficción")) {
-            tipoABuscar = TipoLibro.FICCION;
-        } else if (criterioBusqueda.contains("no ficcion") || criterioBusqueda.contains("no ficción")) {
-            tipoABuscar = TipoLibro.NO_FICCION;
+        if (tipoABuscar == null) {
+            return Optional.of(List.of());
         }
         
+        return Optional.of(indiceEnumerados.filtrar(Set.of(tipoABuscar), null, null));
+    }
+    
+    @Override
+    public Optional<Specification<Libro>> especificacion(String criterio) {
+        TipoLibro tipoABuscar = determinarTipo(criterio);
+        
         if (tipoABuscar == null) {
-            return List.of();
+            return Optional.empty();
         }
         
-        final TipoLibro tipoFinal = tipoABuscar;
-        return libros.stream()
-                .filter(libro -> libro.getTipo() == tipoFinal)
-                .collect(Collectors.toList());
+        return Optional.of(LibroSpecifications.deTipo(tipoABuscar));
+    }
+    
+    /**
+     * Determina el tipo de libro según el criterio
+     * @param criterio texto de búsqueda
+     * @return el tipo correspondiente, o null si el criterio no corresponde a ninguno
+     */
+    private TipoLibro determinarTipo(String criterio) {
+        if (criterio == null || criterio.trim().isEmpty()) {
+            return null;
+        }
+        
+        String criterioBusqueda = criterio.trim().toLowerCase();
+        
+        if (criterioBusqueda.contains("ficcion") || criterioBusqueda.contains("ficción")) {
+            return TipoLibro.FICCION;
+        } else if (criterioBusqueda.contains("no ficcion") || criterioBusqueda.contains("no ficción")) {
+            return TipoLibro.NO_FICCION;
+        }
+        
+        return null;
     }
     
     @Override
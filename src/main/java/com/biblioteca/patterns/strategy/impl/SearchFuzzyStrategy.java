@@ -0,0 +1,84 @@
+package com.biblioteca.patterns.strategy.impl;
+
+import com.biblioteca.index.DistanciaEdicion;
+import com.biblioteca.index.IndiceDifuso;
+import com.biblioteca.model.entities.Libro;
+import com.biblioteca.patterns.strategy.SearchStrategy;
+import com.biblioteca.util.TextoNormalizador;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Implementación de Strategy para búsqueda aproximada por título y autor
+ * Tolera errores tipográficos ("Garcia Marques") usando el índice BK-tree de términos
+ */
+@Component
+public class SearchFuzzyStrategy implements SearchStrategy {
+    
+    private final IndiceDifuso indiceDifuso;
+    
+    public SearchFuzzyStrategy(IndiceDifuso indiceDifuso) {
+        this.indiceDifuso = indiceDifuso;
+    }
+    
+    @Override
+    public List<Libro> buscar(List<Libro> libros, String criterio) {
+        if (criterio == null || criterio.trim().isEmpty()) {
+            return List.of();
+        }
+        
+        String[] terminosConsulta = DistanciaEdicion.terminos(TextoNormalizador.normalizar(criterio));
+        
+        return libros.stream()
+                .filter(libro -> coincide(libro, terminosConsulta))
+                .collect(Collectors.toList());
+    }
+    
+    @Override
+    public Optional<List<Long>> buscarIds(String criterio) {
+        if (criterio == null || criterio.trim().isEmpty()) {
+            return Optional.of(List.of());
+        }
+        
+        return Optional.of(indiceDifuso.buscar(criterio));
+    }
+    
+    @Override
+    public Predicate<Libro> predicado(String criterio) {
+        if (criterio == null || criterio.trim().isEmpty()) {
+            return libro -> false;
+        }
+        
+        String[] terminosConsulta = DistanciaEdicion.terminos(TextoNormalizador.normalizar(criterio));
+        return libro -> coincide(libro, terminosConsulta);
+    }
+    
+    @Override
+    public int costeRelativo() {
+        return 50;
+    }
+    
+    @Override
+    public String getNombreEstrategia() {
+        return "Búsqueda Aproximada";
+    }
+    
+    /**
+     * Un libro coincide si cada término de la consulta está cerca de algún término de su título o autor
+     */
+    private boolean coincide(Libro libro, String[] terminosConsulta) {
+        String texto = TextoNormalizador.normalizar(libro.getTitulo()) + " " + TextoNormalizador.normalizar(libro.getAutor());
+        String[] terminosLibro = DistanciaEdicion.terminos(texto);
+        
+        return Arrays.stream(terminosConsulta).allMatch(termino -> {
+            int tolerancia = DistanciaEdicion.toleranciaPara(termino);
+            return Arrays.stream(terminosLibro)
+                    .anyMatch(candidato -> DistanciaEdicion.levenshtein(termino, candidato) <= tolerancia);
+        });
+    }
+}
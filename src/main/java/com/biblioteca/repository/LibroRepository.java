@@ -1,36 +1,41 @@
 package com.biblioteca.repository;
 
+import com.biblioteca.model.dto.ConteoLibros;
 import com.biblioteca.model.entities.Libro;
 import com.biblioteca.model.enums.EstadoLibro;
 import com.biblioteca.model.enums.FormatoLibro;
 import com.biblioteca.model.enums.TipoLibro;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Repositorio JPA para la entidad Libro
  * Implementa el patrón Repository para acceso a datos
+ * Cada consulta filtrada se resuelve con un índice de las migraciones (ver LibroRepositoryPlanesTest);
+ * las búsquedas por subcadena las resuelven los índices en memoria, no la base de datos
  */
 @Repository
-public interface LibroRepository extends JpaRepository<Libro, Long> {
+public interface LibroRepository extends JpaRepository<Libro, Long>, JpaSpecificationExecutor<Libro>,
+        LibroRepositoryCustom {
     
     /**
-     * Busca libros por título (case-insensitive y parcial)
-     * @param titulo título a buscar
-     * @return lista de libros que coinciden
-     */
-    List<Libro> findByTituloContainingIgnoreCase(String titulo);
-    
-    /**
-     * Busca libros por autor (case-insensitive y parcial)
-     * @param autor autor a buscar
-     * @return lista de libros que coinciden
+     * Espacio de consulta de los UPDATE nativos de estado: no es el de ninguna entidad, así que
+     * Hibernate no vacía la región de Libro de la caché de segundo nivel al ejecutarlos.
+     * Quien los ejecuta invalida solo las entradas afectadas (RouterShards.invalidarCache)
      */
-    List<Libro> findByAutorContainingIgnoreCase(String autor);
+    String ESPACIO_CAMBIOS_ESTADO = "libros_cambios_estado";
     
     /**
      * Busca libros por tipo
@@ -75,38 +80,65 @@ public interface LibroRepository extends JpaRepository<Libro, Long> {
     long countByEstado(EstadoLibro estado);
     
     /**
-     * Búsqueda personalizada por título y autor
-     * @param titulo título a buscar (puede ser null)
-     * @param autor autor a buscar (puede ser null)
+     * Cuenta los libros de cada combinación de estado, tipo y formato en un único recorrido
+     * Agrega la tabla entera a propósito: es un único recorrido en lugar de una consulta por combinación
+     * El resultado se guarda en la caché de consultas, que Hibernate invalida al modificar la tabla
+     * @return una fila por combinación con libros
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    @Query("SELECT new com.biblioteca.model.dto.ConteoLibros(l.estado, l.tipo, l.formato, COUNT(l)) " +
+           "FROM Libro l GROUP BY l.estado, l.tipo, l.formato")
+    List<ConteoLibros> contarPorEstadoTipoYFormato();
+    
+    /**
+     * Búsqueda por título y autor sobre las columnas normalizadas (sin acentos ni mayúsculas)
+     * El título se busca por prefijo y el autor por igualdad, así que se resuelven con los índices
+     * de titulo_norm y autor_norm en lugar de recorrer la tabla
+     * @param titulo prefijo del título (puede ser null)
+     * @param autor autor exacto (puede ser null)
      * @return lista de libros que coinciden
      */
-    @Query("SELECT l FROM Libro l WHERE " +
-           "(:titulo IS NULL OR LOWER(l.titulo) LIKE LOWER(CONCAT('%', :titulo, '%'))) AND " +
-           "(:autor IS NULL OR LOWER(l.autor) LIKE LOWER(CONCAT('%', :autor, '%')))")
-    List<Libro> findByTituloAndAutor(@Param("titulo") String titulo, @Param("autor") String autor);
+    default List<Libro> findByTituloAndAutor(String titulo, String autor) {
+        Specification<Libro> especificacion = Specification.where(null);
+        if (titulo != null) {
+            especificacion = especificacion.and(LibroSpecifications.tituloEmpiezaPor(titulo));
+        }
+        if (autor != null) {
+            especificacion = especificacion.and(LibroSpecifications.autorIgual(autor));
+        }
+        return findAll(especificacion);
+    }
     
     /**
      * Búsqueda avanzada con múltiples criterios
-     * @param titulo título a buscar (opcional)
-     * @param autor autor a buscar (opcional)
+     * Título y autor se buscan por prefijo sobre las columnas normalizadas; el resto, por igualdad
+     * @param titulo prefijo del título (opcional)
+     * @param autor prefijo del autor (opcional)
      * @param tipo tipo de libro (opcional)
      * @param formato formato del libro (opcional)
      * @param estado estado del libro (opcional)
      * @return lista de libros que coinciden con los criterios
      */
-    @Query("SELECT l FROM Libro l WHERE " +
-           "(:titulo IS NULL OR LOWER(l.titulo) LIKE LOWER(CONCAT('%', :titulo, '%'))) AND " +
-           "(:autor IS NULL OR LOWER(l.autor) LIKE LOWER(CONCAT('%', :autor, '%'))) AND " +
-           "(:tipo IS NULL OR l.tipo = :tipo) AND " +
-           "(:formato IS NULL OR l.formato = :formato) AND " +
-           "(:estado IS NULL OR l.estado = :estado)")
-    List<Libro> findByMultipleCriteria(
-            @Param("titulo") String titulo,
-            @Param("autor") String autor,
-            @Param("tipo") TipoLibro tipo,
-            @Param("formato") FormatoLibro formato,
-            @Param("estado") EstadoLibro estado
-    );
+    default List<Libro> findByMultipleCriteria(String titulo, String autor, TipoLibro tipo,
+                                               FormatoLibro formato, EstadoLibro estado) {
+        Specification<Libro> especificacion = Specification.where(null);
+        if (titulo != null) {
+            especificacion = especificacion.and(LibroSpecifications.tituloEmpiezaPor(titulo));
+        }
+        if (autor != null) {
+            especificacion = especificacion.and(LibroSpecifications.autorEmpiezaPor(autor));
+        }
+        if (tipo != null) {
+            especificacion = especificacion.and(LibroSpecifications.deTipo(tipo));
+        }
+        if (formato != null) {
+            especificacion = especificacion.and(LibroSpecifications.enFormato(formato));
+        }
+        if (estado != null) {
+            especificacion = especificacion.and(LibroSpecifications.conEstado(estado));
+        }
+        return findAll(especificacion);
+    }
     
     /**
      * Verifica si existe un libro con el mismo título y autor
@@ -115,4 +147,80 @@ public interface LibroRepository extends JpaRepository<Libro, Long> {
      * @return true si existe, false en caso contrario
      */
     boolean existsByTituloAndAutor(String titulo, String autor);
-}
\ No newline at end of file
+    
+    /**
+     * Cambia el estado de un libro solo si está en el estado esperado, en una única sentencia
+     * Comprobación y escritura son atómicas: de dos peticiones concurrentes solo una actualiza la fila.
+     * Incrementa la versión como un UPDATE de la entidad y fija fecha_actualizacion, porque la
+     * sentencia no pasa por @PreUpdate
+     * @param id ID del libro
+     * @param esperado nombre del estado que debe tener el libro
+     * @param nuevo nombre del estado a asignar
+     * @return filas actualizadas: 1 si se aplicó, 0 si no existe o no estaba en el estado esperado
+     */
+    @Modifying(flushAutomatically = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = ESPACIO_CAMBIOS_ESTADO))
+    @Query(value = "UPDATE libros SET estado = :nuevo, version = version + 1, fecha_actualizacion = LOCALTIMESTAMP " +
+                   "WHERE id = :id AND estado = :esperado", nativeQuery = true)
+    int cambiarEstadoSiEs(@Param("id") Long id, @Param("esperado") String esperado, @Param("nuevo") String nuevo);
+    
+    /**
+     * Carga un libro sin leer ni escribir la caché de segundo nivel
+     * Tras un UPDATE nativo en la misma transacción la caché no debe recibir la fila sin confirmar
+     * @param id ID del libro
+     * @return el libro, si existe
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE"))
+    @Query("SELECT l FROM Libro l WHERE l.id = :id")
+    Optional<Libro> findByIdSinCache(@Param("id") Long id);
+    
+    /**
+     * Obtiene el título de un libro sin cargar la entidad
+     * @param id ID del libro
+     * @return el título, si el libro existe
+     */
+    @Query("SELECT l.titulo FROM Libro l WHERE l.id = :id")
+    Optional<String> findTituloById(@Param("id") Long id);
+    
+    /**
+     * Cambia el estado de varios libros con un único UPDATE condicional y devuelve los IDs que cambió
+     * FINAL TABLE (H2) devuelve las filas tal como quedan tras el UPDATE de la misma sentencia, así que
+     * distingue los libros cambiados de los que ya estaban en otro estado sin volver a leer la tabla.
+     * Como cambiarEstadoSiEs, incrementa la versión y solo declara su propio espacio de consulta
+     * @param ids IDs de los libros
+     * @param esperado nombre del estado que deben tener los libros
+     * @param nuevo nombre del estado a asignar
+     * @return IDs de los libros cambiados (los demás no existen o no estaban en el estado esperado)
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = ESPACIO_CAMBIOS_ESTADO))
+    @Query(value = "SELECT id FROM FINAL TABLE (UPDATE libros SET estado = :nuevo, version = version + 1, " +
+                   "fecha_actualizacion = LOCALTIMESTAMP WHERE id IN (:ids) AND estado = :esperado)", nativeQuery = true)
+    List<Long> cambiarEstadoSiEs(@Param("ids") Collection<Long> ids, @Param("esperado") String esperado,
+                                 @Param("nuevo") String nuevo);
+    
+    /**
+     * Carga varios libros sin leer ni escribir la caché de segundo nivel (ver findByIdSinCache)
+     * @param ids IDs de los libros
+     * @return libros encontrados
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE"))
+    @Query("SELECT l FROM Libro l WHERE l.id IN :ids")
+    List<Libro> findAllByIdSinCache(@Param("ids") Collection<Long> ids);
+    
+    /**
+     * Obtiene cuáles de los IDs existen, sin cargar las entidades
+     * @param ids IDs a comprobar
+     * @return IDs existentes
+     */
+    @Query("SELECT l.id FROM Libro l WHERE l.id IN :ids")
+    List<Long> findIdsExistentes(@Param("ids") Collection<Long> ids);
+    
+    /**
+     * Obtiene los pares título-autor ya registrados para un conjunto de títulos
+     * Permite comprobar duplicados de un lote entero con una sola consulta
+     * @param titulos títulos a comprobar
+     * @return filas [titulo, autor] existentes
+     */
+    @Query("SELECT l.titulo, l.autor FROM Libro l WHERE l.titulo IN :titulos")
+    List<Object[]> findTituloYAutorByTituloIn(@Param("titulos") Collection<String> titulos);
+}
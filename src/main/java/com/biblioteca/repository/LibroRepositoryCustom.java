@@ -0,0 +1,62 @@
+package com.biblioteca.repository;
+
+import com.biblioteca.model.dto.LibroResumen;
+import com.biblioteca.model.entities.Libro;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Operaciones de repositorio que no se pueden expresar como métodos derivados de Spring Data
+ */
+public interface LibroRepositoryCustom {
+    
+    /**
+     * Obtiene una página de resúmenes por keyset: libros con id > despuesDe, ordenados por id
+     * A diferencia de OFFSET, el costo de una página profunda es el mismo que el de la primera,
+     * porque la base de datos salta directamente al cursor usando la clave primaria.
+     * Solo se seleccionan las columnas del resumen, que se construyen como LibroResumen
+     * sin pasar por el contexto de persistencia
+     * @param especificacion filtro adicional (puede ser null)
+     * @param despuesDe último ID de la página anterior (null para la primera página)
+     * @param limite número máximo de libros a devolver
+     * @return resúmenes de la página en orden ascendente de id
+     */
+    List<LibroResumen> buscarPaginaResumen(Specification<Libro> especificacion, Long despuesDe, int limite);
+    
+    /**
+     * Obtiene los resúmenes de una lista de IDs
+     * @param ids IDs a cargar
+     * @return resúmenes encontrados en orden ascendente de id
+     */
+    List<LibroResumen> buscarResumenesPorIds(Collection<Long> ids);
+    
+    /**
+     * Recorre los libros que cumplen la especificación en orden de id, leyéndolos del cursor JDBC
+     * con un fetch size acotado y en modo solo lectura (sin snapshots para dirty checking)
+     * El Stream debe cerrarse (try-with-resources) y consumirse dentro de una transacción
+     * @param especificacion filtro (null para recorrer todo el catálogo)
+     * @param fetchSize número de filas que se piden al driver por viaje
+     * @return stream perezoso de libros
+     */
+    Stream<Libro> recorrer(Specification<Libro> especificacion, int fetchSize);
+    
+    /**
+     * Igual que recorrer, pero leyendo solo las columnas del resumen: no se hidratan entidades ni se
+     * guardan en el contexto de persistencia
+     * El Stream debe cerrarse (try-with-resources) y consumirse dentro de una transacción
+     * @param especificacion filtro (null para recorrer todo el catálogo)
+     * @param fetchSize número de filas que se piden al driver por viaje
+     * @return stream perezoso de resúmenes en orden de id
+     */
+    Stream<LibroResumen> recorrerResumenes(Specification<Libro> especificacion, int fetchSize);
+    
+    /**
+     * Obtiene solo los IDs de los libros que cumplen la especificación, sin hidratar entidades
+     * @param especificacion filtro (null para todo el catálogo)
+     * @return IDs coincidentes en orden ascendente
+     */
+    List<Long> buscarIds(Specification<Libro> especificacion);
+}
\ No newline at end of file
@@ -0,0 +1,125 @@
+package com.biblioteca.repository;
+
+import com.biblioteca.model.dto.LibroResumen;
+import com.biblioteca.model.entities.Libro;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.CacheMode;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Implementación de las operaciones personalizadas del repositorio de libros
+ */
+public class LibroRepositoryCustomImpl implements LibroRepositoryCustom {
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    public LibroRepositoryCustomImpl() {
+    }
+    
+    /**
+     * Para los repositorios de los shards adicionales, que no crea Spring (ver RouterShards)
+     * @param entityManager EntityManager compartido del shard
+     */
+    public LibroRepositoryCustomImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+    
+    @Override
+    public List<LibroResumen> buscarPaginaResumen(Specification<Libro> especificacion, Long despuesDe, int limite) {
+        return entityManager.createQuery(consultaResumenPorId(especificacion, despuesDe))
+                .setMaxResults(limite)
+                .getResultList();
+    }
+    
+    @Override
+    public List<LibroResumen> buscarResumenesPorIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return buscarPaginaResumen((root, query, cb) -> root.get("id").in(ids), null, ids.size());
+    }
+    
+    @Override
+    public Stream<Libro> recorrer(Specification<Libro> especificacion, int fetchSize) {
+        return entityManager.createQuery(consultaPorId(especificacion))
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                // Un recorrido completo no debe desplazar de la caché de segundo nivel a los libros consultados a menudo
+                .setHint(HibernateHints.HINT_CACHE_MODE, CacheMode.IGNORE)
+                .getResultStream();
+    }
+    
+    @Override
+    public Stream<LibroResumen> recorrerResumenes(Specification<Libro> especificacion, int fetchSize) {
+        return entityManager.createQuery(consultaResumenPorId(especificacion, null))
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .getResultStream();
+    }
+    
+    @Override
+    public List<Long> buscarIds(Specification<Libro> especificacion) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Libro> root = query.from(Libro.class);
+        
+        query.select(root.get("id"))
+                .where(condiciones(root, query, cb, especificacion, null))
+                .orderBy(cb.asc(root.get("id")));
+        return entityManager.createQuery(query).getResultList();
+    }
+    
+    /**
+     * Construye SELECT l FROM Libro l WHERE [especificacion] ORDER BY l.id
+     */
+    private CriteriaQuery<Libro> consultaPorId(Specification<Libro> especificacion) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Libro> query = cb.createQuery(Libro.class);
+        Root<Libro> root = query.from(Libro.class);
+        
+        return query.select(root)
+                .where(condiciones(root, query, cb, especificacion, null))
+                .orderBy(cb.asc(root.get("id")));
+    }
+    
+    /**
+     * Construye SELECT new LibroResumen(...) FROM Libro l WHERE [especificacion] AND l.id > despuesDe ORDER BY l.id
+     */
+    private CriteriaQuery<LibroResumen> consultaResumenPorId(Specification<Libro> especificacion, Long despuesDe) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<LibroResumen> query = cb.createQuery(LibroResumen.class);
+        Root<Libro> root = query.from(Libro.class);
+        
+        return query.select(cb.construct(LibroResumen.class,
+                        root.get("id"), root.get("titulo"), root.get("autor"),
+                        root.get("tipo"), root.get("formato"), root.get("estado")))
+                .where(condiciones(root, query, cb, especificacion, despuesDe))
+                .orderBy(cb.asc(root.get("id")));
+    }
+    
+    private static Predicate[] condiciones(Root<Libro> root, CriteriaQuery<?> query, CriteriaBuilder cb,
+                                           Specification<Libro> especificacion, Long despuesDe) {
+        List<Predicate> condiciones = new ArrayList<>();
+        if (despuesDe != null) {
+            condiciones.add(cb.greaterThan(root.get("id"), despuesDe));
+        }
+        if (especificacion != null) {
+            Predicate filtro = especificacion.toPredicate(root, query, cb);
+            if (filtro != null) {
+                condiciones.add(filtro);
+            }
+        }
+        return condiciones.toArray(Predicate[]::new);
+    }
+}
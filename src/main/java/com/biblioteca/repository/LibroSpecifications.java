@@ -0,0 +1,109 @@
+package com.biblioteca.repository;
+
+import com.biblioteca.model.entities.Libro;
+import com.biblioteca.model.enums.EstadoLibro;
+import com.biblioteca.model.enums.FormatoLibro;
+import com.biblioteca.model.enums.TipoLibro;
+import com.biblioteca.util.TextoNormalizador;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.Locale;
+
+/**
+ * Fábrica de Specifications JPA para Libro
+ * Permite que las estrategias de búsqueda deleguen el filtrado a la base de datos
+ */
+public final class LibroSpecifications {
+    
+    private static final char ESCAPE = '\\';
+    
+    /**
+     * Constructor privado: clase de utilidad sin instancias
+     */
+    private LibroSpecifications() {}
+    
+    /**
+     * Título que contiene el texto (sin distinguir mayúsculas)
+     * @param texto texto a buscar
+     * @return specification para el título
+     */
+    public static Specification<Libro> tituloContiene(String texto) {
+        return (root, query, cb) -> cb.like(cb.lower(root.get("titulo")), patronContiene(texto), ESCAPE);
+    }
+    
+    /**
+     * Autor que contiene el texto (sin distinguir mayúsculas)
+     * @param texto texto a buscar
+     * @return specification para el autor
+     */
+    public static Specification<Libro> autorContiene(String texto) {
+        return (root, query, cb) -> cb.like(cb.lower(root.get("autor")), patronContiene(texto), ESCAPE);
+    }
+    
+    /**
+     * Título que empieza por el texto, sin acentos ni mayúsculas
+     * Usa la columna titulo_norm, por lo que se resuelve con un rango sobre su índice
+     * @param prefijo prefijo a buscar
+     * @return specification para el prefijo del título
+     */
+    public static Specification<Libro> tituloEmpiezaPor(String prefijo) {
+        return empiezaPor("tituloNormalizado", prefijo);
+    }
+    
+    /**
+     * Autor que empieza por el texto, sin acentos ni mayúsculas
+     * Usa la columna autor_norm, por lo que se resuelve con un rango sobre su índice
+     * @param prefijo prefijo a buscar
+     * @return specification para el prefijo del autor
+     */
+    public static Specification<Libro> autorEmpiezaPor(String prefijo) {
+        return empiezaPor("autorNormalizado", prefijo);
+    }
+    
+    /**
+     * Autor igual al texto, sin acentos ni mayúsculas (búsqueda por igualdad sobre autor_norm)
+     * @param autor autor a buscar
+     * @return specification para el autor exacto
+     */
+    public static Specification<Libro> autorIgual(String autor) {
+        return (root, query, cb) -> cb.equal(root.get("autorNormalizado"), TextoNormalizador.normalizar(autor));
+    }
+    
+    public static Specification<Libro> deTipo(TipoLibro tipo) {
+        return (root, query, cb) -> cb.equal(root.get("tipo"), tipo);
+    }
+    
+    public static Specification<Libro> enFormato(FormatoLibro formato) {
+        return (root, query, cb) -> cb.equal(root.get("formato"), formato);
+    }
+    
+    public static Specification<Libro> conEstado(EstadoLibro estado) {
+        return (root, query, cb) -> cb.equal(root.get("estado"), estado);
+    }
+    
+    /**
+     * Construye el patrón LIKE '%texto%' escapando los comodines del usuario
+     */
+    private static String patronContiene(String texto) {
+        return "%" + escaparComodines(texto.trim().toLowerCase(Locale.ROOT)) + "%";
+    }
+    
+    /**
+     * Prefijo expresado como el rango [prefijo, prefijo + U+FFFF) sobre una columna normalizada
+     * Un rango con parámetros se resuelve sobre el índice aunque el optimizador no conozca los valores
+     * al preparar la sentencia, cosa que un LIKE ? no garantiza
+     */
+    private static Specification<Libro> empiezaPor(String atributo, String prefijo) {
+        String desde = TextoNormalizador.normalizar(prefijo);
+        String hasta = desde + Character.MAX_VALUE;
+        return (root, query, cb) -> cb.and(
+                cb.greaterThanOrEqualTo(root.<String>get(atributo), desde),
+                cb.lessThan(root.<String>get(atributo), hasta));
+    }
+    
+    private static String escaparComodines(String texto) {
+        return texto.replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+    }
+}
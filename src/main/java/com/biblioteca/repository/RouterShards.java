@@ -0,0 +1,617 @@
+package com.biblioteca.repository;
+
+import com.biblioteca.model.dto.ConteoLibros;
+import com.biblioteca.model.dto.LibroResumen;
+import com.biblioteca.model.entities.Libro;
+import com.biblioteca.util.Transacciones;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.flywaydb.core.Flyway;
+import org.hibernate.engine.spi.CacheImplementor;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.JpaProperties;
+import org.springframework.boot.orm.jpa.EntityManagerFactoryBuilder;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
+import org.springframework.data.repository.core.support.RepositoryComposition.RepositoryFragments;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+/**
+ * Reparte el catálogo entre N bases de datos (shards) según el hash de la clave (título, autor)
+ * El ID de cada libro se elige entre los que el hash de ID asigna a ese mismo shard, así que las
+ * operaciones por ID siguen yendo directas a su shard y los duplicados de una clave caen siempre en el
+ * mismo shard, donde los rechaza la restricción única (titulo, autor) de su tabla.
+ * El shard 0 es el DataSource de spring.datasource con el LibroRepository de Spring; los demás se
+ * crean a partir de biblioteca.shards.urls, cada uno con su pool, sus migraciones, su EntityManagerFactory
+ * y su gestor de transacciones. Sin URLs hay un único shard y todo se comporta como antes.
+ * Las operaciones sobre un libro van a su shard; las búsquedas y los conteos se lanzan en paralelo
+ * (hilos virtuales) a todos los shards y se combinan en orden de ID.
+ * Cada shard tiene su propia transacción: el shard 0 se une a la del servicio y el resto confirma
+ * por separado, en un hilo virtual, así que una escritura repartida entre varios shards no es atómica.
+ * Lo que una escritura deba hacer tras el commit (notificar a los observadores) se hace dentro de la
+ * operación del shard, para que quede ligado a la transacción que escribió la fila.
+ * El número de shards es fijo: no hay redistribución, así que cambiar biblioteca.shards.urls con datos
+ * exige exportar el catálogo (GET /api/libros en NDJSON) y volver a darlo de alta sobre shards vacíos;
+ * verificarReparto impide arrancar si los libros ya no están en el shard que les corresponde
+ */
+@Component
+public class RouterShards {
+
+    /** IDs reservados por viaje a libros_seq: igual que su INCREMENT BY (migración V1) */
+    private static final int BLOQUE_IDS = 50;
+    /** Tabla de Libro: espacio de consulta de sus resultados en la caché de consultas */
+    private static final String TABLA_LIBROS = "libros";
+    /** IDs de cada shard que se comprueban al arrancar para detectar un cambio en el número de shards */
+    private static final int MUESTRA_REPARTO = 100;
+
+    private final List<Shard> shards = new ArrayList<>();
+    private final List<AutoCloseable> recursos = new ArrayList<>();
+    private final ExecutorService ejecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final String siguienteValorSecuencia;
+    /** IDs reservados de libros_seq pendientes de asignar, por el shard al que los lleva su hash */
+    private final Map<Integer, ArrayDeque<Long>> idsLibres = new HashMap<>();
+
+    public RouterShards(LibroRepository libroRepository,
+                        EntityManager entityManager,
+                        PlatformTransactionManager transactionManager,
+                        EntityManagerFactoryBuilder entityManagerFactoryBuilder,
+                        DataSourceProperties propiedades,
+                        JpaProperties jpaProperties,
+                        HibernateProperties hibernateProperties,
+                        @Value("${spring.flyway.locations:classpath:db/migration}") String migraciones,
+                        @Value("${biblioteca.shards.urls:}") List<String> urls) {
+        shards.add(new Shard(0, libroRepository, entityManager, transactionManager));
+        if (urls.stream().anyMatch(url -> !url.isBlank())) {
+            // Mismas propiedades que la unidad de persistencia principal (nombres, lotes JDBC, validación)
+            Map<String, Object> propiedadesJpa = new HashMap<>(hibernateProperties.determineHibernateProperties(
+                    jpaProperties.getProperties(), new HibernateSettings()));
+            // La caché de segundo nivel es del shard 0: las regiones de hibernate-cache.conf no se comparten
+            propiedadesJpa.put("hibernate.cache.use_second_level_cache", "false");
+            propiedadesJpa.put("hibernate.cache.use_query_cache", "false");
+            for (String url : urls) {
+                if (!url.isBlank()) {
+                    shards.add(crearShard(shards.size(), url.trim(), entityManagerFactoryBuilder,
+                            propiedades, propiedadesJpa, migraciones));
+                }
+            }
+        }
+
+        siguienteValorSecuencia = entityManager.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class)
+                .getJdbcServices().getDialect().getSequenceSupport().getSequenceNextValString("libros_seq");
+    }
+
+    /**
+     * Indica si el catálogo está repartido en más de un shard
+     * @return true si hay biblioteca.shards.urls
+     */
+    public boolean isFragmentado() {
+        return shards.size() > 1;
+    }
+
+    /**
+     * Obtiene el número de shards, incluido el principal
+     * @return número de shards
+     */
+    public int getNumeroShards() {
+        return shards.size();
+    }
+
+    /**
+     * Comprueba al arrancar que una muestra de los libros de cada shard sigue correspondiendo a ese shard,
+     * por ID y por clave. Si biblioteca.shards.urls cambió de tamaño (o se activaron los shards sobre una
+     * base con datos) los libros existentes quedarían fuera de su shard: las lecturas por ID no los
+     * encontrarían y la restricción única dejaría de cubrir sus claves
+     */
+    @PostConstruct
+    void verificarReparto() {
+        if (!isFragmentado()) {
+            return;
+        }
+        for (Shard shard : shards) {
+            for (LibroResumen fila : shard.leer(repositorio -> repositorio.buscarPaginaResumen(null, null, MUESTRA_REPARTO))) {
+                int esperado = shardDe(fila.id());
+                if (esperado != shard.indice() || shardDeClave(fila.titulo(), fila.autor()) != shard.indice()) {
+                    throw new IllegalStateException("El libro " + fila.id() + " está en el shard " + shard.indice()
+                            + " pero con " + shards.size() + " shards le corresponden el " + esperado + " por ID y el "
+                            + shardDeClave(fila.titulo(), fila.autor()) + " por clave: el número de shards no puede"
+                            + " cambiar con datos (no hay redistribución)");
+                }
+            }
+        }
+    }
+
+    /**
+     * Calcula el shard de un ID: la multiplicación de Fibonacci dispersa los IDs consecutivos
+     * de un mismo bloque de la secuencia entre todos los shards.
+     * El resultado depende del número de shards: si cambia, casi todos los IDs cambian de shard
+     * @param id ID del libro
+     * @return índice del shard
+     */
+    public int shardDe(Long id) {
+        return (int) Long.remainderUnsigned(id * 0x9E3779B97F4A7C15L >>> 16, shards.size());
+    }
+
+    /**
+     * Calcula el shard de una clave (título, autor) tal y como la compara la restricción única:
+     * hashCode de String (estable entre ejecuciones) mezclado con la misma multiplicación de Fibonacci
+     * @param titulo título del libro
+     * @param autor autor del libro
+     * @return índice del shard donde se guarda (o se guardaría) un libro con esa clave
+     */
+    public int shardDeClave(String titulo, String autor) {
+        long h = (titulo + '\u0000' + autor).hashCode();
+        return (int) Long.remainderUnsigned(h * 0x9E3779B97F4A7C15L >>> 16, shards.size());
+    }
+
+    // Operaciones sobre un libro: van solo a su shard
+
+    public Optional<Libro> findById(Long id) {
+        Shard shard = shards.get(shardDe(id));
+        return shard.leer(repositorio -> repositorio.findById(id));
+    }
+
+    /**
+     * Ejecuta una escritura en el shard del libro, en una transacción de ese shard
+     * El shard 0 se une a la transacción del llamante; los demás escriben en un hilo virtual, con una
+     * transacción y una sincronización propias: lo que la operación registre para después del commit
+     * se ejecuta cuando confirma ese shard, no cuando termina la transacción del llamante
+     * @param id ID del libro
+     * @param operacion operación sobre el repositorio del shard
+     * @return resultado de la operación
+     */
+    public <T> T enShard(Long id, Function<LibroRepository, T> operacion) {
+        int indice = shardDe(id);
+        if (indice == 0) {
+            return shards.get(0).escribir(operacion);
+        }
+        return esperar(ejecutor.submit(() -> shards.get(indice).escribir(operacion)));
+    }
+
+    /**
+     * Guarda un libro nuevo en su shard y, dentro de la misma transacción, tras escribirlo, llama a alGuardar
+     * Con varios shards el ID se asigna antes de guardar, entre los del shard de su clave
+     * @param libro el libro nuevo
+     * @param alGuardar recibe el libro guardado (normalmente, la notificación a los observadores)
+     * @return el libro guardado
+     */
+    public Libro saveAndFlush(Libro libro, Consumer<Libro> alGuardar) {
+        if (!isFragmentado()) {
+            Libro guardado = shards.get(0).repositorio().saveAndFlush(libro);
+            alGuardar.accept(guardado);
+            return guardado;
+        }
+        asignarId(libro);
+        return enShard(libro.getId(), repositorio -> {
+            Libro guardado = repositorio.saveAndFlush(libro);
+            alGuardar.accept(guardado);
+            return guardado;
+        });
+    }
+
+    /**
+     * Guarda libros nuevos agrupados por shard: un saveAll y un flush por shard, en paralelo
+     * Spring Data decide entre persist y merge por la versión (null en un libro nuevo), no por el ID
+     * asignado; aun así el resultado son las entidades que devuelve saveAll, no las recibidas.
+     * alGuardar se llama una vez por shard, dentro de su transacción, con los libros que guardó
+     * @return los libros guardados, en el orden de entrada
+     */
+    public List<Libro> saveAll(Collection<Libro> libros, Consumer<List<Libro>> alGuardar) {
+        if (!isFragmentado()) {
+            List<Libro> guardados = shards.get(0).repositorio().saveAll(libros);
+            shards.get(0).repositorio().flush();
+            alGuardar.accept(guardados);
+            return guardados;
+        }
+        libros.forEach(this::asignarId);
+
+        Map<Integer, List<Libro>> porShard = new LinkedHashMap<>();
+        libros.forEach(libro -> porShard.computeIfAbsent(shardDe(libro.getId()), i -> new ArrayList<>()).add(libro));
+        List<Libro> guardados = repartir(porShard, (shard, grupo) -> shard.escribir(repositorio -> {
+            List<Libro> grupoGuardado = repositorio.saveAll(grupo);
+            repositorio.flush();
+            alGuardar.accept(grupoGuardado);
+            return grupoGuardado;
+        }));
+
+        Map<Long, Libro> porId = new HashMap<>();
+        guardados.forEach(libro -> porId.put(libro.getId(), libro));
+        return libros.stream().map(libro -> porId.get(libro.getId())).toList();
+    }
+
+    /**
+     * Borra el libro de su shard y escribe el borrado en el acto, como las altas: alBorrar se llama
+     * después, en la misma transacción, con la fila ya borrada y bloqueada hasta el commit
+     * @param libro el libro a borrar
+     * @param alBorrar recibe el libro borrado (normalmente, la notificación a los observadores)
+     */
+    public void delete(Libro libro, Consumer<Libro> alBorrar) {
+        enShard(libro.getId(), repositorio -> {
+            repositorio.delete(libro);
+            repositorio.flush();
+            alBorrar.accept(libro);
+            return null;
+        });
+    }
+
+    /**
+     * Invalida en la caché de segundo nivel lo que cambió un UPDATE nativo de estado
+     * (LibroRepository.ESPACIO_CAMBIOS_ESTADO): solo las entradas de esos libros, no la región entera,
+     * y los resultados cacheados de las consultas sobre libros. Como hace Hibernate con sus propios
+     * UPDATE, se invalida ya y otra vez al terminar la transacción, para que tampoco sobreviva lo que
+     * otra sesión lea y cachee mientras tanto. Solo el shard 0 tiene caché: el resto de IDs se ignoran.
+     * Se llama dentro de la transacción que escribió
+     * @param ids IDs de los libros cambiados
+     */
+    public void invalidarCache(Collection<Long> ids) {
+        List<Long> cacheados = ids.stream().filter(id -> shardDe(id) == 0).toList();
+        if (cacheados.isEmpty()) {
+            return;
+        }
+        SharedSessionContractImplementor sesion = shards.get(0).entityManager().unwrap(SharedSessionContractImplementor.class);
+        CacheImplementor cache = sesion.getFactory().getCache();
+        String[] espacios = {TABLA_LIBROS};
+        
+        cacheados.forEach(id -> cache.evictEntityData(Libro.class, id));
+        cache.getTimestampsCache().preInvalidate(espacios, sesion);
+        Transacciones.alTerminar(() -> {
+            cacheados.forEach(id -> cache.evictEntityData(Libro.class, id));
+            cache.getTimestampsCache().invalidate(espacios, sesion);
+        });
+    }
+
+    // Operaciones sobre varios IDs: una consulta por shard con sus IDs, en paralelo
+
+    public List<Libro> findAllById(Collection<Long> ids) {
+        return leerPorIds(ids, LibroRepository::findAllById);
+    }
+
+    public List<LibroResumen> buscarResumenesPorIds(Collection<Long> ids) {
+        return ordenarPorId(leerPorIds(ids, LibroRepository::buscarResumenesPorIds), LibroResumen::id);
+    }
+
+    /**
+     * Ejecuta una consulta por shard con los IDs que le corresponden, en una transacción de solo lectura
+     */
+    public <T> List<T> leerPorIds(Collection<Long> ids, BiFunction<LibroRepository, List<Long>, List<T>> consulta) {
+        return repartir(agruparPorShard(ids), (shard, grupo) -> shard.leer(repositorio -> consulta.apply(repositorio, grupo)));
+    }
+
+    /**
+     * Ejecuta una escritura por shard con los IDs que le corresponden, en una transacción de cada shard
+     * Como en enShard, lo que la operación registre para después del commit queda ligado a su shard.
+     * Cada shard confirma o revierte por su cuenta: un error de acceso a datos en uno no impide que los
+     * demás confirmen, así que el resultado de cada shard dice si confirmó. El llamante no debe tener una transacción
+     * abierta, o la del shard 0 sería la suya y un fallo de ese shard la marcaría para revertir
+     * @return un resultado por shard implicado
+     */
+    public <T> List<EscrituraShard<T>> escribirPorIds(Collection<Long> ids, BiFunction<LibroRepository, List<Long>, T> operacion) {
+        return repartir(agruparPorShard(ids), (shard, grupo) -> {
+            try {
+                return List.of(new EscrituraShard<>(grupo, shard.escribir(repositorio -> operacion.apply(repositorio, grupo)), null));
+            } catch (DataAccessException e) {
+                return List.of(new EscrituraShard<>(grupo, null, e));
+            }
+        });
+    }
+
+    /**
+     * Resultado de la escritura de un shard en escribirPorIds
+     * @param ids IDs del shard
+     * @param resultado lo que devolvió la operación, si el shard confirmó
+     * @param error la excepción por la que el shard revirtió su transacción, o null si confirmó
+     */
+    public record EscrituraShard<T>(List<Long> ids, T resultado, DataAccessException error) {}
+
+    // Búsquedas y conteos: se lanzan a todos los shards y se combinan
+
+    public List<Libro> findAll() {
+        return ordenarPorId(leerTodos(LibroRepository::findAll), Libro::getId);
+    }
+
+    public List<Long> buscarIds(Specification<Libro> especificacion) {
+        return ordenarPorId(leerTodos(repositorio -> repositorio.buscarIds(especificacion)), Function.identity());
+    }
+
+    /**
+     * Cada shard devuelve sus primeras limite filas tras el cursor; la página son las limite
+     * de menor ID entre todas ellas
+     */
+    public List<LibroResumen> buscarPaginaResumen(Specification<Libro> especificacion, Long despuesDe, int limite) {
+        List<LibroResumen> filas = ordenarPorId(
+                leerTodos(repositorio -> repositorio.buscarPaginaResumen(especificacion, despuesDe, limite)),
+                LibroResumen::id);
+        return filas.size() > limite ? filas.subList(0, limite) : filas;
+    }
+
+    /**
+     * El desglose de cada shard se concatena: EstadisticasBiblioteca.desdeConteos suma las filas repetidas
+     */
+    public List<ConteoLibros> contarPorEstadoTipoYFormato() {
+        return leerTodos(LibroRepository::contarPorEstadoTipoYFormato);
+    }
+
+    public long count() {
+        return leerTodos(repositorio -> List.of(repositorio.count())).stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * Una clave solo puede estar en su shard: la comprobación de duplicados consulta solo ese
+     */
+    public boolean existsByTituloAndAutor(String titulo, String autor) {
+        return shards.get(shardDeClave(titulo, autor)).leer(repositorio -> repositorio.existsByTituloAndAutor(titulo, autor));
+    }
+
+    public List<Object[]> findTituloYAutorByTituloIn(Collection<String> titulos) {
+        return leerTodos(repositorio -> repositorio.findTituloYAutorByTituloIn(titulos));
+    }
+
+    /**
+     * Ejecuta una consulta en todos los shards en paralelo y concatena los resultados por orden de shard
+     */
+    public <T> List<T> leerTodos(Function<LibroRepository, List<T>> consulta) {
+        Map<Integer, Void> todos = new LinkedHashMap<>();
+        shards.forEach(shard -> todos.put(shard.indice(), null));
+        return repartir(todos, (shard, sinDatos) -> shard.leer(consulta));
+    }
+
+    /**
+     * Recorre los libros de una Specification en orden global de ID, entregando lotes de tamanoLote libros
+     * Se abre un cursor por shard (cada uno en su transacción de lectura) y se mezclan por ID con una
+     * cola de prioridad de sus cabezas: los índices reciben los IDs en orden creciente y las PostingList
+     * solo añaden al final. Tras cada lote se vacía el contexto de persistencia de todos los shards
+     * @param especificacion filtro (null para todo el catálogo)
+     * @param tamanoLote libros por lote y fetch size de la consulta
+     * @param receptor procesa cada lote y devuelve cuántos libros entregó
+     * @return suma de lo devuelto por el receptor
+     */
+    public long recorrer(Specification<Libro> especificacion, int tamanoLote, ToLongFunction<List<Libro>> receptor) {
+        return abrirCursores(0, repositorio -> repositorio.recorrer(especificacion, tamanoLote), Libro::getId,
+                tamanoLote, new ArrayList<>(), receptor);
+    }
+
+    /**
+     * Igual que recorrer, pero con la proyección LibroResumen: no se hidratan entidades
+     * @param especificacion filtro (null para todo el catálogo)
+     * @param tamanoLote resúmenes por lote y fetch size de la consulta
+     * @param receptor procesa cada lote y devuelve cuántos resúmenes entregó
+     * @return suma de lo devuelto por el receptor
+     */
+    public long recorrerResumenes(Specification<Libro> especificacion, int tamanoLote,
+                                  ToLongFunction<List<LibroResumen>> receptor) {
+        return abrirCursores(0, repositorio -> repositorio.recorrerResumenes(especificacion, tamanoLote), LibroResumen::id,
+                tamanoLote, new ArrayList<>(), receptor);
+    }
+
+    /**
+     * Abre el cursor del shard desde dentro de la transacción del anterior, de forma que todos
+     * sigan abiertos mientras se mezclan
+     */
+    private <T> long abrirCursores(int desde, Function<LibroRepository, Stream<T>> consulta, Function<T, Long> id,
+                                   int tamanoLote, List<Iterator<T>> cursores, ToLongFunction<List<T>> receptor) {
+        if (desde == shards.size()) {
+            return mezclar(cursores, id, tamanoLote, receptor);
+        }
+        Shard shard = shards.get(desde);
+        return shard.lectura().execute(estado -> {
+            try (Stream<T> filas = consulta.apply(shard.repositorio())) {
+                cursores.add(filas.iterator());
+                return abrirCursores(desde + 1, consulta, id, tamanoLote, cursores, receptor);
+            }
+        });
+    }
+
+    private <T> long mezclar(List<Iterator<T>> cursores, Function<T, Long> id, int tamanoLote,
+                             ToLongFunction<List<T>> receptor) {
+        PriorityQueue<Cabeza<T>> cabezas = new PriorityQueue<>(Comparator.comparing((Cabeza<T> cabeza) -> id.apply(cabeza.fila())));
+        cursores.stream().filter(Iterator::hasNext).forEach(cursor -> cabezas.add(new Cabeza<>(cursor.next(), cursor)));
+
+        long entregados = 0;
+        List<T> lote = new ArrayList<>(tamanoLote);
+        while (!cabezas.isEmpty()) {
+            Cabeza<T> cabeza = cabezas.poll();
+            lote.add(cabeza.fila());
+            if (cabeza.cursor().hasNext()) {
+                cabezas.add(new Cabeza<>(cabeza.cursor().next(), cabeza.cursor()));
+            }
+            if (lote.size() == tamanoLote) {
+                entregados += entregarLote(lote, receptor);
+            }
+        }
+        return entregados + entregarLote(lote, receptor);
+    }
+
+    private <T> long entregarLote(List<T> lote, ToLongFunction<List<T>> receptor) {
+        long entregados = lote.isEmpty() ? 0 : receptor.applyAsLong(lote);
+        lote.clear();
+        shards.forEach(shard -> shard.entityManager().clear());
+        return entregados;
+    }
+
+    /** Siguiente fila de un cursor durante la mezcla */
+    private record Cabeza<T>(T fila, Iterator<T> cursor) {}
+
+    /**
+     * Asigna a un libro nuevo un ID global que lleve al shard de su clave
+     * Los IDs salen de libros_seq del shard 0 en bloques de BLOQUE_IDS, como el optimizador pooled de
+     * Hibernate: un valor v de la secuencia reserva (v - BLOQUE_IDS, v], así que no se solapan con
+     * los IDs que Hibernate asignó antes de activar los shards. Cada ID del bloque queda libre para el
+     * shard de su hash; un libro toma el primero libre de su shard y, si no hay, se reserva otro bloque
+     */
+    private synchronized void asignarId(Libro libro) {
+        if (libro.getId() != null) {
+            return;
+        }
+        ArrayDeque<Long> libres = idsLibres.computeIfAbsent(shardDeClave(libro.getTitulo(), libro.getAutor()),
+                indice -> new ArrayDeque<>());
+        while (libres.isEmpty()) {
+            long valor = shards.get(0).escribir(repositorio -> ((Number) shards.get(0).entityManager()
+                    .createNativeQuery(siguienteValorSecuencia).getSingleResult()).longValue());
+            for (long id = Math.max(1, valor - BLOQUE_IDS + 1); id <= valor; id++) {
+                idsLibres.computeIfAbsent(shardDe(id), indice -> new ArrayDeque<>()).add(id);
+            }
+        }
+        libro.setId(libres.poll());
+    }
+
+    private Map<Integer, List<Long>> agruparPorShard(Collection<Long> ids) {
+        Map<Integer, List<Long>> porShard = new LinkedHashMap<>();
+        ids.forEach(id -> porShard.computeIfAbsent(shardDe(id), i -> new ArrayList<>()).add(id));
+        return porShard;
+    }
+
+    /**
+     * Ejecuta la operación de cada shard implicado: los shards adicionales en hilos virtuales y el
+     * shard 0 en el hilo llamante, para que se una a su transacción; concatena por orden de shard
+     */
+    private <G, T> List<T> repartir(Map<Integer, G> porShard, BiFunction<Shard, G, List<T>> operacion) {
+        Map<Integer, Future<List<T>>> pendientes = new LinkedHashMap<>();
+        porShard.forEach((indice, grupo) -> {
+            if (indice != 0) {
+                pendientes.put(indice, ejecutor.submit(() -> operacion.apply(shards.get(indice), grupo)));
+            }
+        });
+
+        List<T> resultado = new ArrayList<>();
+        if (porShard.containsKey(0)) {
+            resultado.addAll(operacion.apply(shards.get(0), porShard.get(0)));
+        }
+        for (Future<List<T>> pendiente : pendientes.values()) {
+            resultado.addAll(esperar(pendiente));
+        }
+        return resultado;
+    }
+
+    private static <T> T esperar(Future<T> pendiente) {
+        try {
+            return pendiente.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Consulta a los shards interrumpida", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw new IllegalStateException("Error en la consulta a un shard", e.getCause());
+        }
+    }
+
+    private static <T> List<T> ordenarPorId(List<T> filas, Function<T, Long> id) {
+        filas.sort(Comparator.comparing(id));
+        return filas;
+    }
+
+    private Shard crearShard(int indice, String url, EntityManagerFactoryBuilder builder,
+                             DataSourceProperties propiedades, Map<String, Object> propiedadesJpa,
+                             String migraciones) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("shard-" + indice);
+        dataSource.setDriverClassName(propiedades.determineDriverClassName());
+        dataSource.setJdbcUrl(url);
+        dataSource.setUsername(propiedades.determineUsername());
+        dataSource.setPassword(propiedades.determinePassword());
+        recursos.add(dataSource);
+
+        Flyway.configure().dataSource(dataSource).locations(migraciones.split(",")).load().migrate();
+
+        LocalContainerEntityManagerFactoryBean fabrica = builder.dataSource(dataSource)
+                .packages(Libro.class)
+                .persistenceUnit("shard-" + indice)
+                .properties(propiedadesJpa)
+                .build();
+        fabrica.afterPropertiesSet();
+        EntityManagerFactory entityManagerFactory = fabrica.getObject();
+        recursos.add(entityManagerFactory::close);
+
+        EntityManager entityManager = SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory);
+        LibroRepository repositorio = new JpaRepositoryFactory(entityManager).getRepository(LibroRepository.class,
+                RepositoryFragments.just(new LibroRepositoryCustomImpl(entityManager)));
+        return new Shard(indice, repositorio, entityManager, new JpaTransactionManager(entityManagerFactory));
+    }
+
+    @PreDestroy
+    public void cerrar() throws Exception {
+        ejecutor.shutdownNow();
+        for (AutoCloseable recurso : recursos.reversed()) {
+            recurso.close();
+        }
+    }
+
+    /**
+     * Un shard con su repositorio y sus transacciones
+     * REQUIRED: en el shard 0 las operaciones se unen a la transacción del servicio si la hay
+     */
+    private record Shard(int indice, LibroRepository repositorio, EntityManager entityManager,
+                         TransactionTemplate escritura, TransactionTemplate lectura) {
+
+        Shard(int indice, LibroRepository repositorio, EntityManager entityManager,
+              PlatformTransactionManager transactionManager) {
+            this(indice, repositorio, entityManager, new TransactionTemplate(transactionManager),
+                    soloLectura(transactionManager));
+        }
+
+        private static TransactionTemplate soloLectura(PlatformTransactionManager transactionManager) {
+            TransactionTemplate transaccion = new TransactionTemplate(transactionManager);
+            transaccion.setReadOnly(true);
+            return transaccion;
+        }
+
+        <T> T escribir(Function<LibroRepository, T> operacion) {
+            return traducir(escritura, operacion);
+        }
+
+        <T> T leer(Function<LibroRepository, T> operacion) {
+            return traducir(lectura, operacion);
+        }
+
+        /**
+         * Los repositorios de los shards adicionales no pasan por la traducción de excepciones de Spring:
+         * se convierten aquí para que el servicio reciba DataAccessException como con el shard 0
+         */
+        private <T> T traducir(TransactionTemplate transaccion, Function<LibroRepository, T> operacion) {
+            try {
+                return transaccion.execute(estado -> operacion.apply(repositorio));
+            } catch (DataAccessException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                DataAccessException traducida = EntityManagerFactoryUtils.convertJpaAccessExceptionIfPossible(e);
+                throw traducida != null ? traducida : e;
+            }
+        }
+    }
+}
@@ -1,10 +1,18 @@
 package com.biblioteca.service;
 
+import com.biblioteca.exception.ConflictoEstadoException;
 import com.biblioteca.exception.LibroNoEncontradoException;
 import com.biblioteca.exception.OperacionInvalidaException;
 import com.biblioteca.exception.ValidationException;
+import com.biblioteca.index.FiltroBloomDuplicados;
+import com.biblioteca.index.IndiceBM25;
+import com.biblioteca.index.IndiceBitmapEnumerados;
+import com.biblioteca.model.dto.ConteoLibros;
+import com.biblioteca.model.dto.LibroResumen;
 import com.biblioteca.model.entities.Libro;
 import com.biblioteca.model.enums.EstadoLibro;
+import com.biblioteca.model.enums.FormatoLibro;
+import com.biblioteca.model.enums.TipoLibro;
 import com.biblioteca.patterns.chainofresponsibility.LibroValidator;
 import com.biblioteca.patterns.chainofresponsibility.ValidationResult;
 import com.biblioteca.patterns.chainofresponsibility.impl.AutorValidator;
@@ -12,13 +20,45 @@ import com.biblioteca.patterns.chainofresponsibility.impl.ConsistenciaValidator;
 import com.biblioteca.patterns.chainofresponsibility.impl.TituloValidator;
 import com.biblioteca.patterns.observer.LibroObserver;
 import com.biblioteca.patterns.observer.LibroSubject;
+import com.biblioteca.patterns.strategy.EjecutorBusquedaParalela;
 import com.biblioteca.patterns.strategy.SearchStrategy;
 import com.biblioteca.repository.LibroRepository;
+import com.biblioteca.repository.LibroSpecifications;
+import com.biblioteca.repository.RouterShards;
+import com.biblioteca.repository.RouterShards.EscrituraShard;
+import jakarta.persistence.EntityManager;
+import org.hibernate.cache.jcache.internal.JCacheRegionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 /**
  * Servicio principal para la gestión de libros
@@ -29,12 +69,45 @@ import java.util.List;
 @Transactional
 public class BibliotecaService implements LibroSubject {
     
-    private final LibroRepository libroRepository;
+    public static final int TAMANO_PAGINA_MAXIMO = 500;
+    public static final int TAMANO_LOTE_STREAMING = 500;
+    
+    private final RouterShards shards;
+    private final EntityManager entityManager;
     private final List<LibroObserver> observadores;
     private final LibroValidator validadorChain;
+    private final IndiceBitmapEnumerados indiceEnumerados;
+    private final IndiceBM25 indiceRelevancia;
+    private final FiltroBloomDuplicados filtroDuplicados;
+    private final EjecutorBusquedaParalela ejecutorParalelo;
+    private final CacheBusquedas cacheBusquedas;
+    private final ContadoresLibros contadoresLibros;
+    private final DespachadorObservadores despachador;
+    private final TransactionTemplate transaccionLote;
+    private final int tamanoLote;
     
-    public BibliotecaService(LibroRepository libroRepository) {
-        this.libroRepository = libroRepository;
+    public BibliotecaService(RouterShards shards,
+                             EntityManager entityManager,
+                             IndiceBitmapEnumerados indiceEnumerados,
+                             IndiceBM25 indiceRelevancia,
+                             FiltroBloomDuplicados filtroDuplicados,
+                             EjecutorBusquedaParalela ejecutorParalelo,
+                             CacheBusquedas cacheBusquedas,
+                             ContadoresLibros contadoresLibros,
+                             DespachadorObservadores despachador,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${biblioteca.lote.tamano:1000}") int tamanoLote) {
+        this.shards = shards;
+        this.entityManager = entityManager;
+        this.indiceEnumerados = indiceEnumerados;
+        this.indiceRelevancia = indiceRelevancia;
+        this.filtroDuplicados = filtroDuplicados;
+        this.ejecutorParalelo = ejecutorParalelo;
+        this.cacheBusquedas = cacheBusquedas;
+        this.contadoresLibros = contadoresLibros;
+        this.despachador = despachador;
+        this.transaccionLote = new TransactionTemplate(transactionManager);
+        this.tamanoLote = tamanoLote;
         this.observadores = new ArrayList<>();
         this.validadorChain = configurarCadenaValidacion();
     }
@@ -69,18 +142,19 @@ public class BibliotecaService implements LibroSubject {
             throw new ValidationException(resultado);
         }
         
-        // Verificar duplicados
-        if (libroRepository.existsByTituloAndAutor(libro.getTitulo(), libro.getAutor())) {
-            throw new OperacionInvalidaException(
-                "Ya existe un libro con el mismo título y autor: " + libro.getTitulo() + " - " + libro.getAutor()
-            );
+        // Verificar duplicados: el filtro de Bloom evita la consulta si la clave seguro que no existe
+        if (existeDuplicado(libro.getTitulo(), libro.getAutor())) {
+            throw duplicado(libro);
         }
         
-        // Guardar el libro
-        Libro libroGuardado = libroRepository.save(libro);
-        
-        // Notificar a observadores
-        notificarLibroAgregado(libroGuardado);
+        // Guardar el libro; la restricción única cubre un alta concurrente con la misma clave.
+        // Se notifica a los observadores dentro de la transacción del shard que lo escribe
+        Libro libroGuardado;
+        try {
+            libroGuardado = shards.saveAndFlush(libro, this::notificarLibroAgregado);
+        } catch (DataIntegrityViolationException e) {
+            throw duplicado(libro);
+        }
         
         // Mostrar advertencias si las hay
         if (resultado.tieneAdvertencias()) {
@@ -91,16 +165,374 @@ public class BibliotecaService implements LibroSubject {
         return libroGuardado;
     }
     
+    /**
+     * Agrega una lista de libros en transacciones de tamanoLote libros
+     * Cada libro pasa por la cadena de validación y la comprobación de duplicados
+     * (contra la base de datos con una consulta por lote y contra el resto de la lista);
+     * los válidos de cada lote se insertan juntos, en lotes JDBC, y los observadores
+     * reciben lo que guardó cada shard tras su commit. Un fallo al persistir solo afecta a su lote
+     * @param libros proveedores de los libros (normalmente un LibroBuilder), en orden
+     * @return un resultado por libro, en el mismo orden
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<ResultadoLote> agregarLibros(List<Supplier<Libro>> libros) {
+        List<ResultadoLote> resultados = new ArrayList<>(Collections.nCopies(libros.size(), null));
+        Set<String> clavesSolicitadas = new HashSet<>();
+        
+        for (int desde = 0; desde < libros.size(); desde += tamanoLote) {
+            Map<Integer, Libro> candidatos = new LinkedHashMap<>();
+            
+            for (int i = desde; i < Math.min(libros.size(), desde + tamanoLote); i++) {
+                Libro libro;
+                try {
+                    libro = libros.get(i).get();
+                } catch (IllegalStateException e) {
+                    resultados.set(i, ResultadoLote.rechazado(i, EstadoLote.INVALIDO, List.of(e.getMessage())));
+                    continue;
+                }
+                
+                ValidationResult validacion = validadorChain.validar(libro);
+                if (!validacion.isValido()) {
+                    resultados.set(i, ResultadoLote.rechazado(i, EstadoLote.INVALIDO, validacion.getErrores()));
+                } else if (!clavesSolicitadas.add(claveDuplicado(libro.getTitulo(), libro.getAutor()))) {
+                    resultados.set(i, ResultadoLote.rechazado(i, EstadoLote.DUPLICADO,
+                            List.of("Libro repetido en la misma solicitud")));
+                } else {
+                    candidatos.put(i, libro);
+                }
+            }
+            
+            persistirLote(candidatos, resultados);
+        }
+        
+        return resultados;
+    }
+    
+    private void persistirLote(Map<Integer, Libro> candidatos, List<ResultadoLote> resultados) {
+        if (candidatos.isEmpty()) {
+            return;
+        }
+        
+        Map<Integer, Libro> guardados;
+        try {
+            guardados = transaccionLote.execute(estado -> {
+                Set<String> existentes = clavesExistentes(candidatos.values());
+                List<Integer> indices = new ArrayList<>();
+                List<Libro> nuevos = new ArrayList<>();
+                candidatos.forEach((indice, libro) -> {
+                    if (existentes.contains(claveDuplicado(libro.getTitulo(), libro.getAutor()))) {
+                        resultados.set(indice, ResultadoLote.rechazado(indice, EstadoLote.DUPLICADO,
+                                List.of("Ya existe un libro con el mismo título y autor")));
+                    } else {
+                        indices.add(indice);
+                        nuevos.add(libro);
+                    }
+                });
+                
+                // Se notifican las entidades devueltas por saveAll, que con ID asignado no son las recibidas;
+                // una notificación por shard, en su transacción: los observadores procesan su alta entera de una vez
+                List<Libro> persistidos = shards.saveAll(nuevos, this::notificarLibrosAgregados);
+                entityManager.clear();
+                Map<Integer, Libro> porIndice = new LinkedHashMap<>();
+                for (int i = 0; i < indices.size(); i++) {
+                    porIndice.put(indices.get(i), persistidos.get(i));
+                }
+                return porIndice;
+            });
+        } catch (DataAccessException e) {
+            candidatos.keySet().forEach(indice -> resultados.set(indice,
+                    ResultadoLote.rechazado(indice, EstadoLote.ERROR, List.of(e.getMostSpecificCause().getMessage()))));
+            return;
+        }
+        
+        guardados.forEach((indice, libro) ->
+                resultados.set(indice, new ResultadoLote(indice, EstadoLote.CREADO, libro.getId(), List.of())));
+    }
+    
+    /**
+     * Consulta solo los títulos cuya clave el filtro de duplicados no puede descartar
+     */
+    private Set<String> clavesExistentes(Collection<Libro> libros) {
+        List<Libro> dudosos = libros.stream()
+                .filter(libro -> filtroDuplicados.podriaContener(libro.getTitulo(), libro.getAutor()))
+                .toList();
+        if (dudosos.isEmpty()) {
+            return Set.of();
+        }
+        
+        Set<String> titulos = dudosos.stream().map(Libro::getTitulo).collect(Collectors.toSet());
+        Set<String> existentes = shards.findTituloYAutorByTituloIn(titulos).stream()
+                .map(fila -> claveDuplicado((String) fila[0], (String) fila[1]))
+                .collect(Collectors.toSet());
+        dudosos.stream()
+                .filter(libro -> !existentes.contains(claveDuplicado(libro.getTitulo(), libro.getAutor())))
+                .forEach(libro -> filtroDuplicados.registrarFalsoPositivo());
+        return existentes;
+    }
+    
+    private boolean existeDuplicado(String titulo, String autor) {
+        if (!filtroDuplicados.podriaContener(titulo, autor)) {
+            return false;
+        }
+        
+        boolean existe = shards.existsByTituloAndAutor(titulo, autor);
+        if (!existe) {
+            filtroDuplicados.registrarFalsoPositivo();
+        }
+        return existe;
+    }
+    
+    private static OperacionInvalidaException duplicado(Libro libro) {
+        return new OperacionInvalidaException(
+            "Ya existe un libro con el mismo título y autor: " + libro.getTitulo() + " - " + libro.getAutor()
+        );
+    }
+    
+    private static String claveDuplicado(String titulo, String autor) {
+        return titulo + "\u0000" + autor;
+    }
+    
     /**
      * Busca libros usando una estrategia de búsqueda específica
+     * Los IDs coincidentes se sirven desde la caché de búsquedas; si no están se calculan
+     * con idsCoincidentes y solo se cargan de la base de datos los libros encontrados
      * @param estrategia la estrategia de búsqueda a usar
      * @param criterio el criterio de búsqueda
      * @return lista de libros encontrados
      */
     @Transactional(readOnly = true)
     public List<Libro> buscarLibros(SearchStrategy estrategia, String criterio) {
-        List<Libro> todosLosLibros = libroRepository.findAll();
-        return estrategia.buscar(todosLosLibros, criterio);
+        return cargarPorIds(idsEnCache(estrategia, criterio));
+    }
+    
+    /**
+     * Busca una página de libros usando una estrategia de búsqueda (paginación por keyset)
+     * Si los IDs coincidentes están en caché, o la estrategia tiene índice, el cursor se resuelve con
+     * búsqueda binaria sobre la lista completa, que no depende de la página y se cachea. Si no, la
+     * Specification pide a la base de datos solo la página tras el cursor, sin cachear nada
+     * @param estrategia la estrategia de búsqueda a usar
+     * @param criterio el criterio de búsqueda
+     * @param despuesDe cursor: último ID de la página anterior (null para la primera)
+     * @param tamano tamaño de la página
+     * @return página de resúmenes de libros encontrados con el cursor de la siguiente
+     */
+    @Transactional(readOnly = true)
+    public Pagina<LibroResumen> buscarLibros(SearchStrategy estrategia, String criterio, Long despuesDe, int tamano) {
+        int limite = limitarTamano(tamano);
+        Optional<List<Long>> ids = cacheBusquedas.obtenerSi(estrategia, criterio, () -> idsSinConsulta(estrategia, criterio));
+        if (ids.isEmpty()) {
+            Specification<Libro> especificacion = estrategia.especificacion(criterio).orElseThrow();
+            return crearPagina(shards.buscarPaginaResumen(especificacion, despuesDe, limite + 1), limite);
+        }
+        return crearPagina(shards.buscarResumenesPorIds(idsDespuesDe(ids.get(), despuesDe, limite + 1)), limite);
+    }
+    
+    /**
+     * Obtiene los contadores de la caché de búsquedas
+     * @return aciertos, fallos, desalojos e invalidaciones
+     */
+    public CacheBusquedas.EstadisticasCache obtenerEstadisticasCache() {
+        return cacheBusquedas.obtenerEstadisticas();
+    }
+    
+    /**
+     * Obtiene las métricas del filtro de Bloom de duplicados
+     * @return ocupación, consultas evitadas y tasa de falsos positivos
+     */
+    public FiltroBloomDuplicados.EstadisticasFiltro obtenerEstadisticasDuplicados() {
+        return filtroDuplicados.obtenerEstadisticas();
+    }
+    
+    /**
+     * Obtiene las estadísticas de cada región de la caché de segundo nivel de Hibernate
+     * (entidades Libro y resultados de consultas cacheables)
+     * @return aciertos, fallos, escrituras y tamaño por región
+     */
+    public List<EstadisticaRegionCache> obtenerEstadisticasCacheEntidades() {
+        SessionFactoryImplementor sessionFactory = entityManager.getEntityManagerFactory()
+                .unwrap(SessionFactoryImplementor.class);
+        Statistics estadisticas = sessionFactory.getStatistics();
+        
+        return Arrays.stream(estadisticas.getSecondLevelCacheRegionNames())
+                .sorted()
+                .map(region -> {
+                    CacheRegionStatistics regionStats = estadisticas.getCacheRegionStatistics(region);
+                    long aciertos = regionStats.getHitCount();
+                    long fallos = regionStats.getMissCount();
+                    return new EstadisticaRegionCache(region, aciertos, fallos, regionStats.getPutCount(),
+                            tamanoRegion(sessionFactory, region),
+                            aciertos + fallos == 0 ? 0.0 : (double) aciertos / (aciertos + fallos));
+                })
+                .toList();
+    }
+    
+    /**
+     * Las regiones JCache no informan de su tamaño a las estadísticas de Hibernate:
+     * se consulta directamente la caché de Caffeine que hay debajo
+     */
+    private static long tamanoRegion(SessionFactoryImplementor sessionFactory, String region) {
+        if (sessionFactory.getCache().getRegionFactory() instanceof JCacheRegionFactory regionFactory) {
+            javax.cache.Cache<Object, Object> cache = regionFactory.getCacheManager().getCache(region);
+            if (cache != null) {
+                return cache.unwrap(com.github.benmanes.caffeine.cache.Cache.class).estimatedSize();
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Recorre los libros encontrados por una estrategia entregando su resumen uno a uno al consumidor
+     * La memoria usada no depende del número de resultados: los resúmenes se leen con la proyección,
+     * sin entidades; solo el último recurso (filtrar en memoria) carga entidades, y RouterShards vacía
+     * el contexto de persistencia tras cada lote de TAMANO_LOTE_STREAMING libros
+     * @param estrategia la estrategia de búsqueda a usar
+     * @param criterio el criterio de búsqueda
+     * @param consumidor receptor del resumen de cada libro encontrado
+     * @return número de libros entregados
+     */
+    @Transactional(readOnly = true)
+    public long recorrerBusqueda(SearchStrategy estrategia, String criterio, Consumer<LibroResumen> consumidor) {
+        Optional<List<Long>> ids = estrategia.buscarIds(criterio);
+        if (ids.isPresent()) {
+            return recorrerIds(ids.get(), consumidor);
+        }
+        
+        Optional<Specification<Libro>> especificacion = estrategia.especificacion(criterio);
+        if (especificacion.isPresent()) {
+            return recorrer(especificacion.get(), consumidor);
+        }
+        
+        // Sin índice ni Specification: se filtra el catálogo por lotes en lugar de cargarlo entero
+        return shards.recorrer(null, TAMANO_LOTE_STREAMING,
+                lote -> entregarLote(estrategia.buscar(lote, criterio).stream().map(LibroResumen::de).toList(), consumidor));
+    }
+    
+    /**
+     * Busca libros por relevancia en título y autor (BM25), devolviendo solo los k mejores
+     * El tamaño de la respuesta no depende de lo amplia que sea la consulta
+     * @param consulta texto libre
+     * @param limite número máximo de resultados
+     * @return libros ordenados por relevancia descendente
+     */
+    @Transactional(readOnly = true)
+    public List<ResultadoRelevancia> buscarPorRelevancia(String consulta, int limite) {
+        List<IndiceBM25.Resultado> mejores = indiceRelevancia.buscar(consulta, limite);
+        if (mejores.isEmpty()) {
+            return List.of();
+        }
+        
+        Map<Long, Libro> librosPorId = shards.findAllById(
+                        mejores.stream().map(IndiceBM25.Resultado::id).toList())
+                .stream()
+                .collect(Collectors.toMap(Libro::getId, Function.identity()));
+        
+        return mejores.stream()
+                .filter(resultado -> librosPorId.containsKey(resultado.id()))
+                .map(resultado -> new ResultadoRelevancia(librosPorId.get(resultado.id()), resultado.puntuacion()))
+                .toList();
+    }
+    
+    /**
+     * Busca una página de libros cuyo título y/o autor empiezan por los prefijos dados,
+     * sin acentos ni mayúsculas (paginación por keyset)
+     * Se resuelve con rangos sobre los índices de las columnas titulo_norm y autor_norm
+     * @param prefijoTitulo prefijo del título (opcional)
+     * @param prefijoAutor prefijo del autor (opcional)
+     * @param despuesDe cursor: último ID de la página anterior (null para la primera)
+     * @param tamano tamaño de la página
+     * @return página de resúmenes de libros encontrados con el cursor de la siguiente
+     */
+    @Transactional(readOnly = true)
+    public Pagina<LibroResumen> buscarPorPrefijo(String prefijoTitulo, String prefijoAutor, Long despuesDe, int tamano) {
+        int limite = limitarTamano(tamano);
+        return crearPagina(shards.buscarPaginaResumen(prefijos(prefijoTitulo, prefijoAutor), despuesDe, limite + 1), limite);
+    }
+    
+    private Specification<Libro> prefijos(String prefijoTitulo, String prefijoAutor) {
+        Specification<Libro> especificacion = Specification.where(null);
+        
+        if (prefijoTitulo != null && !prefijoTitulo.isBlank()) {
+            especificacion = especificacion.and(LibroSpecifications.tituloEmpiezaPor(prefijoTitulo));
+        }
+        if (prefijoAutor != null && !prefijoAutor.isBlank()) {
+            especificacion = especificacion.and(LibroSpecifications.autorEmpiezaPor(prefijoAutor));
+        }
+        
+        return especificacion;
+    }
+    
+    private List<Long> idsEnCache(SearchStrategy estrategia, String criterio) {
+        return cacheBusquedas.obtener(estrategia, criterio, () -> idsCoincidentes(estrategia, criterio));
+    }
+    
+    /**
+     * Calcula los IDs que cumplen la búsqueda, en orden ascendente
+     * Orden de preferencia: índice en memoria de la estrategia, Specification ejecutada
+     * en la base de datos (solo la columna id) y, como último recurso, filtrado del catálogo en memoria
+     */
+    private List<Long> idsCoincidentes(SearchStrategy estrategia, String criterio) {
+        return idsSinConsulta(estrategia, criterio)
+                .orElseGet(() -> shards.buscarIds(estrategia.especificacion(criterio).orElseThrow()));
+    }
+    
+    /**
+     * IDs de la búsqueda cuando no hay Specification que ejecutar en la base de datos: los del índice
+     * en memoria de la estrategia o, como último recurso, los del catálogo filtrado en memoria
+     * @return vacío si la estrategia no tiene índice pero sí Specification
+     */
+    private Optional<List<Long>> idsSinConsulta(SearchStrategy estrategia, String criterio) {
+        Optional<List<Long>> ids = estrategia.buscarIds(criterio);
+        if (ids.isPresent() || estrategia.especificacion(criterio).isPresent()) {
+            return ids;
+        }
+        
+        return Optional.of(ejecutorParalelo.buscar(estrategia, shards.findAll(), criterio).stream()
+                .map(Libro::getId)
+                .sorted()
+                .toList());
+    }
+    
+    /**
+     * Carga los libros de una lista de IDs conservando el orden por ID
+     * @param ids IDs a cargar
+     * @return libros encontrados
+     */
+    private List<Libro> cargarPorIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        
+        return shards.findAllById(ids).stream()
+                .sorted(Comparator.comparing(Libro::getId))
+                .toList();
+    }
+    
+    /**
+     * Toma hasta limite IDs mayores que el cursor de una lista ordenada, con búsqueda binaria
+     */
+    private static List<Long> idsDespuesDe(List<Long> idsOrdenados, Long despuesDe, int limite) {
+        int desde = 0;
+        if (despuesDe != null) {
+            int posicion = Collections.binarySearch(idsOrdenados, despuesDe);
+            desde = posicion >= 0 ? posicion + 1 : -posicion - 1;
+        }
+        return idsOrdenados.subList(desde, Math.min(idsOrdenados.size(), desde + limite));
+    }
+    
+    /**
+     * Arma la página a partir de hasta tamano + 1 filas: la fila extra solo indica que hay más
+     */
+    private static Pagina<LibroResumen> crearPagina(List<LibroResumen> filas, int tamano) {
+        if (filas.size() <= tamano) {
+            return new Pagina<>(filas, null);
+        }
+        
+        List<LibroResumen> contenido = filas.subList(0, tamano);
+        return new Pagina<>(contenido, contenido.get(tamano - 1).id());
+    }
+    
+    private static int limitarTamano(int tamano) {
+        return Math.max(1, Math.min(tamano, TAMANO_PAGINA_MAXIMO));
     }
     
     /**
@@ -109,7 +541,29 @@ public class BibliotecaService implements LibroSubject {
      */
     @Transactional(readOnly = true)
     public List<Libro> listarTodosLosLibros() {
-        return libroRepository.findAll();
+        return shards.findAll();
+    }
+    
+    /**
+     * Lista una página de libros del sistema (paginación por keyset)
+     * @param despuesDe cursor: último ID de la página anterior (null para la primera)
+     * @param tamano tamaño de la página
+     * @return página de resúmenes de libros con el cursor de la siguiente
+     */
+    @Transactional(readOnly = true)
+    public Pagina<LibroResumen> listarTodosLosLibros(Long despuesDe, int tamano) {
+        int limite = limitarTamano(tamano);
+        return crearPagina(shards.buscarPaginaResumen(null, despuesDe, limite + 1), limite);
+    }
+    
+    /**
+     * Recorre todo el catálogo entregando el resumen de cada libro al consumidor, en orden de ID
+     * @param consumidor receptor del resumen de cada libro
+     * @return número de libros entregados
+     */
+    @Transactional(readOnly = true)
+    public long recorrerLibros(Consumer<LibroResumen> consumidor) {
+        return recorrer(null, consumidor);
     }
     
     /**
@@ -118,7 +572,7 @@ public class BibliotecaService implements LibroSubject {
      */
     @Transactional(readOnly = true)
     public List<Libro> listarLibrosDisponibles() {
-        return libroRepository.findByEstado(EstadoLibro.DISPONIBLE);
+        return filtrarLibros(null, null, Set.of(EstadoLibro.DISPONIBLE));
     }
     
     /**
@@ -127,7 +581,103 @@ public class BibliotecaService implements LibroSubject {
      */
     @Transactional(readOnly = true)
     public List<Libro> listarLibrosPrestados() {
-        return libroRepository.findByEstado(EstadoLibro.PRESTADO);
+        return filtrarLibros(null, null, Set.of(EstadoLibro.PRESTADO));
+    }
+    
+    /**
+     * Lista una página de libros disponibles (paginación por keyset)
+     * @param despuesDe cursor: último ID de la página anterior (null para la primera)
+     * @param tamano tamaño de la página
+     * @return página de resúmenes de libros disponibles con el cursor de la siguiente
+     */
+    @Transactional(readOnly = true)
+    public Pagina<LibroResumen> listarLibrosDisponibles(Long despuesDe, int tamano) {
+        return filtrarLibros(null, null, Set.of(EstadoLibro.DISPONIBLE), despuesDe, tamano);
+    }
+    
+    /**
+     * Lista una página de libros prestados (paginación por keyset)
+     * @param despuesDe cursor: último ID de la página anterior (null para la primera)
+     * @param tamano tamaño de la página
+     * @return página de resúmenes de libros prestados con el cursor de la siguiente
+     */
+    @Transactional(readOnly = true)
+    public Pagina<LibroResumen> listarLibrosPrestados(Long despuesDe, int tamano) {
+        return filtrarLibros(null, null, Set.of(EstadoLibro.PRESTADO), despuesDe, tamano);
+    }
+    
+    /**
+     * Filtra libros por tipo, formato y estado usando el índice bitmap
+     * Dentro de cada campo los valores se combinan con OR y entre campos con AND;
+     * un campo null o vacío no filtra
+     * @param tipos tipos aceptados
+     * @param formatos formatos aceptados
+     * @param estados estados aceptados
+     * @return lista de libros que cumplen el filtro
+     */
+    @Transactional(readOnly = true)
+    public List<Libro> filtrarLibros(Collection<TipoLibro> tipos,
+                                     Collection<FormatoLibro> formatos,
+                                     Collection<EstadoLibro> estados) {
+        return cargarPorIds(indiceEnumerados.filtrar(tipos, formatos, estados));
+    }
+    
+    /**
+     * Filtra una página de libros por tipo, formato y estado (paginación por keyset)
+     * El cursor se resuelve directamente sobre el bitmap, sin recorrer las páginas anteriores
+     * @param tipos tipos aceptados
+     * @param formatos formatos aceptados
+     * @param estados estados aceptados
+     * @param despuesDe cursor: último ID de la página anterior (null para la primera)
+     * @param tamano tamaño de la página
+     * @return página de resúmenes de libros que cumplen el filtro con el cursor de la siguiente
+     */
+    @Transactional(readOnly = true)
+    public Pagina<LibroResumen> filtrarLibros(Collection<TipoLibro> tipos,
+                                              Collection<FormatoLibro> formatos,
+                                              Collection<EstadoLibro> estados,
+                                              Long despuesDe,
+                                              int tamano) {
+        int limite = limitarTamano(tamano);
+        List<Long> ids = indiceEnumerados.filtrarPagina(tipos, formatos, estados, despuesDe, limite + 1);
+        return crearPagina(shards.buscarResumenesPorIds(ids), limite);
+    }
+    
+    /**
+     * Recorre los libros que cumplen el filtro por tipo, formato y estado, entregando su resumen uno a uno
+     * @param tipos tipos aceptados
+     * @param formatos formatos aceptados
+     * @param estados estados aceptados
+     * @param consumidor receptor del resumen de cada libro
+     * @return número de libros entregados
+     */
+    @Transactional(readOnly = true)
+    public long recorrerFiltro(Collection<TipoLibro> tipos,
+                               Collection<FormatoLibro> formatos,
+                               Collection<EstadoLibro> estados,
+                               Consumer<LibroResumen> consumidor) {
+        return recorrerIds(indiceEnumerados.filtrar(tipos, formatos, estados), consumidor);
+    }
+    
+    private long recorrer(Specification<Libro> especificacion, Consumer<LibroResumen> consumidor) {
+        return shards.recorrerResumenes(especificacion, TAMANO_LOTE_STREAMING, lote -> {
+            lote.forEach(consumidor);
+            return lote.size();
+        });
+    }
+    
+    private long recorrerIds(List<Long> ids, Consumer<LibroResumen> consumidor) {
+        long entregados = 0;
+        for (int desde = 0; desde < ids.size(); desde += TAMANO_LOTE_STREAMING) {
+            List<Long> lote = ids.subList(desde, Math.min(ids.size(), desde + TAMANO_LOTE_STREAMING));
+            entregados += entregarLote(shards.buscarResumenesPorIds(lote), consumidor);
+        }
+        return entregados;
+    }
+    
+    private long entregarLote(List<LibroResumen> lote, Consumer<LibroResumen> consumidor) {
+        lote.forEach(consumidor);
+        return lote.size();
     }
     
     /**
@@ -138,66 +688,126 @@ public class BibliotecaService implements LibroSubject {
      */
     @Transactional(readOnly = true)
     public Libro buscarPorId(Long id) {
-        return libroRepository.findById(id)
+        return shards.findById(id)
                 .orElseThrow(() -> new LibroNoEncontradoException(id));
     }
     
     /**
-     * Presta un libro cambiando su estado
+     * Realiza el préstamo de un libro con un UPDATE condicional (solo si está disponible)
      * @param id el ID del libro a prestar
      * @return el libro prestado
      * @throws LibroNoEncontradoException si no se encuentra el libro
-     * @throws OperacionInvalidaException si el libro ya está prestado
+     * @throws ConflictoEstadoException si el libro no está disponible
      */
     public Libro prestarLibro(Long id) {
-        Libro libro = buscarPorId(id);
-        
-        if (!libro.estaDisponible()) {
-            throw new OperacionInvalidaException(
-                "El libro '" + libro.getTitulo() + "' no está disponible para préstamo"
-            );
-        }
-        
-        EstadoLibro estadoAnterior = libro.getEstado();
-        libro.setEstado(EstadoLibro.PRESTADO);
-        
-        Libro libroActualizado = libroRepository.save(libro);
-        
-        // Notificar cambio de estado
-        notificarCambioEstado(libroActualizado, 
-                            estadoAnterior.name(), 
-                            EstadoLibro.PRESTADO.name());
-        
-        return libroActualizado;
+        return cambiarEstado(id, EstadoLibro.DISPONIBLE, EstadoLibro.PRESTADO, "no está disponible para préstamo");
     }
     
     /**
-     * Devuelve un libro cambiando su estado a disponible
+     * Devuelve un libro con un UPDATE condicional (solo si está prestado)
      * @param id el ID del libro a devolver
      * @return el libro devuelto
      * @throws LibroNoEncontradoException si no se encuentra el libro
-     * @throws OperacionInvalidaException si el libro no está prestado
+     * @throws ConflictoEstadoException si el libro no está prestado
      */
     public Libro devolverLibro(Long id) {
-        Libro libro = buscarPorId(id);
+        return cambiarEstado(id, EstadoLibro.PRESTADO, EstadoLibro.DISPONIBLE, "no está prestado");
+    }
+    
+    /**
+     * Presta varios libros, con una transacción por shard (ver aplicarTransicionLote)
+     * @param ids IDs de los libros a prestar
+     * @return un resultado por ID distinto, en el orden recibido
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<ResultadoTransicion> prestarLibros(List<Long> ids) {
+        return aplicarTransicionLote(ids, EstadoLibro.DISPONIBLE, EstadoLibro.PRESTADO);
+    }
+    
+    /**
+     * Devuelve varios libros, con una transacción por shard (ver aplicarTransicionLote)
+     * @param ids IDs de los libros a devolver
+     * @return un resultado por ID distinto, en el orden recibido
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<ResultadoTransicion> devolverLibros(List<Long> ids) {
+        return aplicarTransicionLote(ids, EstadoLibro.PRESTADO, EstadoLibro.DISPONIBLE);
+    }
+    
+    /**
+     * Aplica la transición esperado -> nuevo a muchos libros con un UPDATE condicional por tramo de IDs
+     * (WHERE id IN (...) AND estado = ?) que devuelve los IDs cambiados; de los demás solo se consulta
+     * si existen, para distinguir el conflicto del no encontrado. Los libros cambiados se releen sin la
+     * caché, se invalidan solo sus entradas de la caché de segundo nivel y los observadores los reciben
+     * en una notificación por shard.
+     * Cada shard aplica sus tramos en su propia transacción, en paralelo: el resultado es parcial por shard.
+     * Si un shard falla revierte solo sus libros, que se devuelven como ERROR, y los demás quedan confirmados
+     */
+    private List<ResultadoTransicion> aplicarTransicionLote(List<Long> ids, EstadoLibro esperado, EstadoLibro nuevo) {
+        List<Long> distintos = List.copyOf(new LinkedHashSet<>(ids));
+        Map<Long, EstadoTransicion> resultados = new HashMap<>();
         
-        if (libro.getEstado() != EstadoLibro.PRESTADO) {
-            throw new OperacionInvalidaException(
-                "El libro '" + libro.getTitulo() + "' no está prestado"
-            );
+        for (EscrituraShard<Map<Long, EstadoTransicion>> escritura : shards.escribirPorIds(distintos,
+                (repositorio, idsShard) -> aplicarTransicionShard(repositorio, idsShard, esperado, nuevo))) {
+            if (escritura.error() != null) {
+                escritura.ids().forEach(id -> resultados.put(id, EstadoTransicion.ERROR));
+            } else {
+                resultados.putAll(escritura.resultado());
+            }
         }
         
-        EstadoLibro estadoAnterior = libro.getEstado();
-        libro.setEstado(EstadoLibro.DISPONIBLE);
-        
-        Libro libroActualizado = libroRepository.save(libro);
-        
-        // Notificar cambio de estado
-        notificarCambioEstado(libroActualizado, 
-                            estadoAnterior.name(), 
-                            EstadoLibro.DISPONIBLE.name());
+        return distintos.stream().map(id -> new ResultadoTransicion(id, resultados.get(id))).toList();
+    }
+    
+    private Map<Long, EstadoTransicion> aplicarTransicionShard(LibroRepository repositorio, List<Long> ids,
+                                                               EstadoLibro esperado, EstadoLibro nuevo) {
+        Map<Long, EstadoTransicion> resultados = new HashMap<>();
+        List<Long> cambiados = new ArrayList<>();
+        for (int desde = 0; desde < ids.size(); desde += TAMANO_PAGINA_MAXIMO) {
+            List<Long> tramo = ids.subList(desde, Math.min(ids.size(), desde + TAMANO_PAGINA_MAXIMO));
+            Set<Long> cambiadosTramo = new HashSet<>(repositorio.cambiarEstadoSiEs(tramo, esperado.name(), nuevo.name()));
+            cambiados.addAll(cambiadosTramo);
+            
+            List<Long> sinCambiar = tramo.stream().filter(id -> !cambiadosTramo.contains(id)).toList();
+            Set<Long> existentes = sinCambiar.isEmpty() ? Set.of() : new HashSet<>(repositorio.findIdsExistentes(sinCambiar));
+            for (Long id : tramo) {
+                resultados.put(id, cambiadosTramo.contains(id) ? EstadoTransicion.CAMBIADO
+                        : existentes.contains(id) ? EstadoTransicion.CONFLICTO : EstadoTransicion.NO_ENCONTRADO);
+            }
+        }
         
-        return libroActualizado;
+        // Una notificación por shard, ligada a la transacción que escribió sus filas
+        if (!cambiados.isEmpty()) {
+            shards.invalidarCache(cambiados);
+            List<Libro> libros = new ArrayList<>();
+            for (int desde = 0; desde < cambiados.size(); desde += TAMANO_PAGINA_MAXIMO) {
+                libros.addAll(repositorio.findAllByIdSinCache(
+                        cambiados.subList(desde, Math.min(cambiados.size(), desde + TAMANO_PAGINA_MAXIMO))));
+            }
+            notificarCambioEstadoLote(libros, esperado.name(), nuevo.name());
+        }
+        return resultados;
+    }
+    
+    /**
+     * Aplica la transición esperado -> nuevo con un único UPDATE condicional
+     * (WHERE id = ? AND estado = ?) y decide con el número de filas: 1 es éxito, 0 es conflicto si el
+     * libro existe (409) o no encontrado si no (404). De dos peticiones concurrentes solo una cambia la fila.
+     * Solo se invalida la entrada del libro en la caché de segundo nivel; los observadores solo se
+     * notifican si la fila cambió, con el libro leído después de escribir
+     */
+    private Libro cambiarEstado(Long id, EstadoLibro esperado, EstadoLibro nuevo, String motivoConflicto) {
+        return shards.enShard(id, repositorio -> {
+            if (repositorio.cambiarEstadoSiEs(id, esperado.name(), nuevo.name()) == 0) {
+                String titulo = repositorio.findTituloById(id).orElseThrow(() -> new LibroNoEncontradoException(id));
+                throw new ConflictoEstadoException("El libro '" + titulo + "' " + motivoConflicto);
+            }
+            shards.invalidarCache(List.of(id));
+            
+            Libro libro = repositorio.findByIdSinCache(id).orElseThrow(() -> new LibroNoEncontradoException(id));
+            notificarCambioEstado(libro, esperado.name(), nuevo.name());
+            return libro;
+        });
     }
     
     /**
@@ -215,23 +825,35 @@ public class BibliotecaService implements LibroSubject {
             );
         }
         
-        libroRepository.delete(libro);
+        // Notificar a observadores, en la transacción del shard que borra la fila
+        shards.delete(libro, this::notificarLibroEliminado);
     }
     
     /**
-     * Obtiene estadísticas básicas de la biblioteca
+     * Obtiene estadísticas de la biblioteca, con el desglose por estado, tipo y formato
+     * Con biblioteca.estadisticas.contadores se leen de los contadores en memoria; si no,
+     * de una única consulta agrupada
      * @return objeto con estadísticas
      */
     @Transactional(readOnly = true)
     public EstadisticasBiblioteca obtenerEstadisticas() {
-        long totalLibros = libroRepository.count();
-        long librosDisponibles = libroRepository.countByEstado(EstadoLibro.DISPONIBLE);
-        long librosPrestados = libroRepository.countByEstado(EstadoLibro.PRESTADO);
-        
-        return new EstadisticasBiblioteca(totalLibros, librosDisponibles, librosPrestados);
+        List<ConteoLibros> conteos = contadoresLibros.isActivo()
+                ? contadoresLibros.obtenerConteos()
+                : shards.contarPorEstadoTipoYFormato();
+        return EstadisticasBiblioteca.desdeConteos(conteos);
+    }
+    
+    /**
+     * Obtiene el estado de las colas de los observadores asíncronos
+     * @return profundidad, retraso y contadores de cada cola
+     */
+    public DespachadorObservadores.EstadisticasDespachador obtenerEstadisticasObservadores() {
+        return despachador.obtenerEstadisticas();
     }
     
     // Implementación del patrón Observer
+    // Las notificaciones pasan por el despachador: en modo asíncrono los observadores que lo
+    // admiten las reciben tras el commit desde su propia cola, fuera de la transacción
     @Override
     public void agregarObservador(LibroObserver observer) {
         observadores.add(observer);
@@ -240,17 +862,34 @@ public class BibliotecaService implements LibroSubject {
     @Override
     public void eliminarObservador(LibroObserver observer) {
         observadores.remove(observer);
+        despachador.retirar(observer);
     }
     
     @Override
     public void notificarCambioEstado(Libro libro, String estadoAnterior, String estadoNuevo) {
-        observadores.forEach(observer -> 
-            observer.onLibroEstadoCambiado(libro, estadoAnterior, estadoNuevo));
+        despachador.notificar(observadores, DespachadorObservadores.Evento.estadoCambiado(libro, estadoAnterior, estadoNuevo));
+    }
+    
+    @Override
+    public void notificarCambioEstadoLote(List<Libro> libros, String estadoAnterior, String estadoNuevo) {
+        despachador.notificar(observadores, DespachadorObservadores.Evento.estadosCambiados(libros, estadoAnterior, estadoNuevo));
     }
     
     @Override
     public void notificarLibroAgregado(Libro libro) {
-        observadores.forEach(observer -> observer.onLibroAgregado(libro));
+        despachador.notificar(observadores, DespachadorObservadores.Evento.agregado(libro));
+    }
+    
+    @Override
+    public void notificarLibrosAgregados(List<Libro> libros) {
+        if (!libros.isEmpty()) {
+            despachador.notificar(observadores, DespachadorObservadores.Evento.agregados(libros));
+        }
+    }
+    
+    @Override
+    public void notificarLibroEliminado(Libro libro) {
+        despachador.notificar(observadores, DespachadorObservadores.Evento.eliminado(libro));
     }
     
     @Override
@@ -258,6 +897,72 @@ public class BibliotecaService implements LibroSubject {
         return new ArrayList<>(observadores);
     }
     
+    /**
+     * Libro encontrado en una búsqueda por relevancia junto con su puntuación
+     * @param libro el libro encontrado
+     * @param puntuacion puntuación BM25
+     */
+    public record ResultadoRelevancia(Libro libro, double puntuacion) {}
+    
+    /**
+     * Página de resultados con paginación por keyset
+     * @param contenido elementos de la página
+     * @param siguiente cursor para pedir la siguiente página (despuesDe), o null si es la última
+     */
+    public record Pagina<T>(List<T> contenido, Long siguiente) {
+        /**
+         * Transforma el contenido conservando el cursor
+         * @param transformacion función aplicada a cada elemento
+         * @return página con el contenido transformado
+         */
+        public <R> Pagina<R> map(Function<T, R> transformacion) {
+            return new Pagina<>(contenido.stream().map(transformacion).toList(), siguiente);
+        }
+    }
+    
+    /**
+     * Resultado de un préstamo o devolución dentro de una operación masiva
+     * @param id ID del libro
+     * @param resultado CAMBIADO, NO_ENCONTRADO, CONFLICTO (no estaba en el estado requerido) o ERROR
+     *                  (falló la transacción de su shard y no se cambió)
+     */
+    public record ResultadoTransicion(Long id, EstadoTransicion resultado) {}
+    
+    /**
+     * Resultado de un libro dentro de un préstamo o devolución masiva
+     */
+    public enum EstadoTransicion { CAMBIADO, NO_ENCONTRADO, CONFLICTO, ERROR }
+    
+    /**
+     * Estado final de un libro dentro de un alta masiva
+     */
+    public enum EstadoLote { CREADO, INVALIDO, DUPLICADO, ERROR }
+    
+    /**
+     * Resultado de un libro dentro de un alta masiva
+     * @param indice posición del libro en la solicitud
+     * @param estado resultado del libro
+     * @param id ID asignado si se creó, null en otro caso
+     * @param errores motivos del rechazo
+     */
+    public record ResultadoLote(int indice, EstadoLote estado, Long id, List<String> errores) {
+        private static ResultadoLote rechazado(int indice, EstadoLote estado, List<String> errores) {
+            return new ResultadoLote(indice, estado, null, errores);
+        }
+    }
+    
+    /**
+     * Estadísticas de una región de la caché de segundo nivel
+     * @param region nombre de la región
+     * @param aciertos lecturas servidas desde la caché
+     * @param fallos lecturas que tuvieron que ir a la base de datos
+     * @param escrituras entradas guardadas en la región
+     * @param elementos entradas actuales en memoria (aproximado), o -1 si el proveedor no lo informa
+     * @param tasaAciertos aciertos / (aciertos + fallos)
+     */
+    public record EstadisticaRegionCache(String region, long aciertos, long fallos, long escrituras,
+                                         long elementos, double tasaAciertos) {}
+    
     /**
      * Clase interna para encapsular estadísticas de la biblioteca
      */
@@ -265,16 +970,49 @@ public class BibliotecaService implements LibroSubject {
         private final long totalLibros;
         private final long librosDisponibles;
         private final long librosPrestados;
+        private final Map<TipoLibro, Long> librosPorTipo;
+        private final Map<FormatoLibro, Long> librosPorFormato;
         
-        public EstadisticasBiblioteca(long totalLibros, long librosDisponibles, long librosPrestados) {
+        public EstadisticasBiblioteca(long totalLibros, long librosDisponibles, long librosPrestados,
+                                      Map<TipoLibro, Long> librosPorTipo, Map<FormatoLibro, Long> librosPorFormato) {
             this.totalLibros = totalLibros;
             this.librosDisponibles = librosDisponibles;
             this.librosPrestados = librosPrestados;
+            this.librosPorTipo = librosPorTipo;
+            this.librosPorFormato = librosPorFormato;
+        }
+        
+        /**
+         * Suma el desglose por estado, tipo y formato en los totales
+         * @param conteos filas del desglose
+         * @return estadísticas con todos los tipos y formatos, también los que no tienen libros
+         */
+        public static EstadisticasBiblioteca desdeConteos(List<ConteoLibros> conteos) {
+            Map<EstadoLibro, Long> porEstado = new EnumMap<>(EstadoLibro.class);
+            Map<TipoLibro, Long> porTipo = new EnumMap<>(TipoLibro.class);
+            Map<FormatoLibro, Long> porFormato = new EnumMap<>(FormatoLibro.class);
+            Arrays.stream(TipoLibro.values()).forEach(tipo -> porTipo.put(tipo, 0L));
+            Arrays.stream(FormatoLibro.values()).forEach(formato -> porFormato.put(formato, 0L));
+            
+            long total = 0;
+            for (ConteoLibros conteo : conteos) {
+                total += conteo.libros();
+                porEstado.merge(conteo.estado(), conteo.libros(), Long::sum);
+                porTipo.merge(conteo.tipo(), conteo.libros(), Long::sum);
+                porFormato.merge(conteo.formato(), conteo.libros(), Long::sum);
+            }
+            
+            return new EstadisticasBiblioteca(total,
+                    porEstado.getOrDefault(EstadoLibro.DISPONIBLE, 0L),
+                    porEstado.getOrDefault(EstadoLibro.PRESTADO, 0L),
+                    porTipo, porFormato);
         }
         
         public long getTotalLibros() { return totalLibros; }
         public long getLibrosDisponibles() { return librosDisponibles; }
         public long getLibrosPrestados() { return librosPrestados; }
+        public Map<TipoLibro, Long> getLibrosPorTipo() { return librosPorTipo; }
+        public Map<FormatoLibro, Long> getLibrosPorFormato() { return librosPorFormato; }
         
         @Override
         public String toString() {
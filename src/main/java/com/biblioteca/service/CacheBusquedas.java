@@ -0,0 +1,251 @@
+package com.biblioteca.service;
+
+import com.biblioteca.model.entities.Libro;
+import com.biblioteca.patterns.observer.LibroObserver;
+import com.biblioteca.patterns.strategy.SearchStrategy;
+import com.biblioteca.util.Transacciones;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Caché acotada de resultados de búsqueda (IDs coincidentes por estrategia y criterio normalizado)
+ * Caffeine desaloja con W-TinyLFU, que retiene las consultas populares aunque lleguen ráfagas
+ * de consultas únicas. Como observador de libros no recorre la caché en cada escritura: anota el
+ * cambio (una vez por transacción y lote) en un registro versionado, y cada entrada se revalida al
+ * leerla contra los cambios posteriores a su cálculo. Solo se invalidan las entradas afectadas:
+ * las que ahora incluyen un libro agregado, las que contenían uno eliminado y aquellas en las que
+ * un cambio de estado hace entrar o salir a un libro
+ */
+@Component
+public class CacheBusquedas implements LibroObserver {
+    
+    /** Libros retenidos en el registro de cambios; una entrada anterior al cambio más antiguo se descarta */
+    private static final int LIBROS_RETENIDOS = 10_000;
+    
+    private final Cache<Clave, Entrada> cache;
+    private final ConcurrentSkipListMap<Long, Cambio> cambios = new ConcurrentSkipListMap<>();
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    private final LongAdder invalidaciones = new LongAdder();
+    private volatile long version;
+    private volatile long versionDescartada;
+    private long librosRetenidos;
+    
+    public CacheBusquedas(@Value("${biblioteca.cache.busquedas.tamano:10000}") long tamanoMaximo) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(tamanoMaximo)
+                .recordStats()
+                .build();
+    }
+    
+    /**
+     * Obtiene los IDs coincidentes de la caché o los calcula y los guarda
+     * La entrada lleva la versión del registro de cambios anterior al cálculo: un cambio que llegue
+     * mientras se calcula se comprobará en la siguiente lectura
+     * @param estrategia estrategia de búsqueda
+     * @param criterio criterio de búsqueda
+     * @param calcular cálculo de los IDs coincidentes en orden ascendente
+     * @return IDs coincidentes en orden ascendente
+     */
+    public List<Long> obtener(SearchStrategy estrategia, String criterio, Supplier<List<Long>> calcular) {
+        return obtenerSi(estrategia, criterio, () -> Optional.of(calcular.get())).orElseThrow();
+    }
+    
+    /**
+     * Como obtener, pero el cálculo puede no tener un resultado cacheable (por ejemplo, cuando la
+     * búsqueda se resolverá página a página en la base de datos): entonces no se guarda nada
+     * @param estrategia estrategia de búsqueda
+     * @param criterio criterio de búsqueda
+     * @param calcular cálculo de los IDs coincidentes en orden ascendente, o vacío
+     * @return IDs coincidentes en orden ascendente, o vacío si no estaban en caché ni se calcularon
+     */
+    public Optional<List<Long>> obtenerSi(SearchStrategy estrategia, String criterio,
+                                          Supplier<Optional<List<Long>>> calcular) {
+        Clave clave = new Clave(estrategia.getNombreEstrategia(), normalizar(criterio));
+        Entrada entrada = cache.asMap().get(clave);
+        if (entrada != null && (entrada = revalidar(clave, entrada)) != null) {
+            aciertos.increment();
+            return Optional.of(entrada.ids);
+        }
+        
+        fallos.increment();
+        long versionInicial = version;
+        Optional<List<Long>> ids = calcular.get().map(List::copyOf);
+        ids.ifPresent(lista -> cache.put(clave,
+                new Entrada(estrategia.predicadoComprobacion(criterio), lista, versionInicial)));
+        return ids;
+    }
+    
+    /**
+     * Obtiene los contadores de la caché
+     * @return aciertos, fallos, desalojos por tamaño e invalidaciones
+     */
+    public EstadisticasCache obtenerEstadisticas() {
+        long hits = aciertos.sum();
+        long misses = fallos.sum();
+        return new EstadisticasCache(hits, misses, hits + misses == 0 ? 0.0 : (double) hits / (hits + misses),
+                cache.stats().evictionCount(), invalidaciones.sum(), cache.estimatedSize());
+    }
+    
+    @Override
+    public void onLibroAgregado(Libro libro) {
+        anotar(TipoCambio.AGREGADO, List.of(libro));
+    }
+    
+    @Override
+    public void onLibrosAgregados(List<Libro> libros) {
+        anotar(TipoCambio.AGREGADO, libros);
+    }
+    
+    @Override
+    public void onLibroEliminado(Libro libro) {
+        anotar(TipoCambio.ELIMINADO, List.of(libro));
+    }
+    
+    @Override
+    public void onLibroEstadoCambiado(Libro libro, String estadoAnterior, String estadoNuevo) {
+        anotar(TipoCambio.ESTADO, List.of(libro));
+    }
+    
+    @Override
+    public void onLibrosEstadoCambiado(List<Libro> libros, String estadoAnterior, String estadoNuevo) {
+        anotar(TipoCambio.ESTADO, libros);
+    }
+    
+    /**
+     * Se notifica en el acto, después de los índices, para anotar el cambio en cuanto se confirma:
+     * un cálculo posterior a la anotación ya ve los índices actualizados
+     */
+    @Override
+    public boolean admiteNotificacionAsincrona() {
+        return false;
+    }
+    
+    @Override
+    public String getNombreObservador() {
+        return "Caché de Búsquedas";
+    }
+    
+    /**
+     * Anota el cambio tras el commit (si se revierte no afecta a nada), o ahora si no hay transacción
+     * Los índices se notifican antes en la misma transacción y sus acciones tras el commit se ejecutan
+     * antes, así que se anota cuando el índice ya refleja el cambio, nunca antes. El orden entre
+     * transacciones no importa: una entrada se revalida contra todos los cambios anotados después de
+     * su cálculo. Si no se sabe si el commit se aplicó, se anota igualmente: invalidar de más es seguro
+     */
+    private void anotar(TipoCambio tipo, List<Libro> libros) {
+        Cambio cambio = new Cambio(tipo, List.copyOf(libros));
+        Transacciones.alConfirmar(() -> registrar(cambio), () -> registrar(cambio));
+    }
+    
+    /**
+     * Añade el cambio con la siguiente versión y descarta los más antiguos por encima de LIBROS_RETENIDOS
+     * La versión descartada se publica antes de quitar el cambio, así que un lector que no lo encuentre la ve
+     */
+    private synchronized void registrar(Cambio cambio) {
+        long siguiente = version + 1;
+        cambios.put(siguiente, cambio);
+        librosRetenidos += cambio.libros().size();
+        while (librosRetenidos > LIBROS_RETENIDOS && cambios.size() > 1) {
+            Map.Entry<Long, Cambio> antiguo = cambios.firstEntry();
+            versionDescartada = antiguo.getKey();
+            cambios.remove(antiguo.getKey());
+            librosRetenidos -= antiguo.getValue().libros().size();
+        }
+        version = siguiente;
+    }
+    
+    /**
+     * Comprueba la entrada contra los cambios anotados después de su versión
+     * @return la entrada al día (con la versión actual) o null si un cambio la afecta y se invalidó
+     */
+    private Entrada revalidar(Clave clave, Entrada entrada) {
+        long actual = version;
+        if (entrada.version == actual) {
+            return entrada;
+        }
+        
+        boolean afectada = cambios.subMap(entrada.version, false, actual, true).values().stream()
+                .anyMatch(cambio -> cambio.afecta(entrada));
+        if (afectada || entrada.version < versionDescartada) {
+            if (cache.asMap().remove(clave, entrada)) {
+                invalidaciones.increment();
+            }
+            return null;
+        }
+        
+        Entrada revalidada = new Entrada(entrada.predicado, entrada.ids, actual);
+        cache.asMap().replace(clave, entrada, revalidada);
+        return revalidada;
+    }
+    
+    /**
+     * Todas las estrategias comparan sin distinguir mayúsculas ni espacios en los extremos
+     */
+    private static String normalizar(String criterio) {
+        return criterio == null ? "" : criterio.trim().toLowerCase(Locale.ROOT);
+    }
+    
+    private record Clave(String estrategia, String criterio) {}
+    
+    /**
+     * Resultado cacheado con el predicado de la búsqueda y la versión del registro de cambios
+     * con la que está al día. Se compara por identidad: replace y remove solo actúan sobre esta instancia
+     */
+    private static final class Entrada {
+        private final Predicate<Libro> predicado;
+        private final List<Long> ids;
+        private final long version;
+        
+        private Entrada(Predicate<Libro> predicado, List<Long> ids, long version) {
+            this.predicado = predicado;
+            this.ids = ids;
+            this.version = version;
+        }
+        
+        private boolean contiene(Long id) {
+            return id != null && Collections.binarySearch(ids, id) >= 0;
+        }
+    }
+    
+    private enum TipoCambio {
+        AGREGADO, ELIMINADO, ESTADO
+    }
+    
+    /**
+     * Cambio confirmado sobre uno o varios libros
+     */
+    private record Cambio(TipoCambio tipo, List<Libro> libros) {
+        private boolean afecta(Entrada entrada) {
+            return libros.stream().anyMatch(libro -> switch (tipo) {
+                case AGREGADO -> entrada.predicado.test(libro);
+                case ELIMINADO -> entrada.contiene(libro.getId());
+                case ESTADO -> entrada.contiene(libro.getId()) != entrada.predicado.test(libro);
+            });
+        }
+    }
+    
+    /**
+     * Contadores de la caché de búsquedas
+     * @param aciertos consultas servidas desde la caché
+     * @param fallos consultas que tuvieron que calcularse
+     * @param tasaAciertos aciertos / (aciertos + fallos)
+     * @param desalojos entradas desalojadas por tamaño (W-TinyLFU)
+     * @param invalidaciones entradas invalidadas al revalidarlas contra los cambios en los libros
+     * @param entradas número aproximado de entradas actuales
+     */
+    public record EstadisticasCache(long aciertos, long fallos, double tasaAciertos,
+                                    long desalojos, long invalidaciones, long entradas) {}
+}
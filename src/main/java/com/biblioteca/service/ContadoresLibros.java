@@ -0,0 +1,156 @@
+package com.biblioteca.service;
+
+import com.biblioteca.model.dto.ConteoLibros;
+import com.biblioteca.model.entities.Libro;
+import com.biblioteca.model.enums.EstadoLibro;
+import com.biblioteca.model.enums.FormatoLibro;
+import com.biblioteca.model.enums.TipoLibro;
+import com.biblioteca.patterns.observer.LibroObserver;
+import com.biblioteca.repository.RouterShards;
+import com.biblioteca.util.Transacciones;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contadores en memoria de libros por estado, tipo y formato (modo biblioteca.estadisticas.contadores)
+ * Se cargan con la consulta agrupada al iniciar y después se mantienen como observador: cada
+ * alta, préstamo, devolución y baja ajusta su celda tras el commit, de modo que una transacción
+ * revertida no los altera y las estadísticas se leen en tiempo constante sin consultar la tabla
+ */
+@Component
+public class ContadoresLibros implements LibroObserver {
+    
+    private static final EstadoLibro[] ESTADOS = EstadoLibro.values();
+    private static final TipoLibro[] TIPOS = TipoLibro.values();
+    private static final FormatoLibro[] FORMATOS = FormatoLibro.values();
+    
+    private final RouterShards shards;
+    private final boolean activo;
+    private final LongAdder[] celdas = new LongAdder[ESTADOS.length * TIPOS.length * FORMATOS.length];
+    
+    public ContadoresLibros(RouterShards shards,
+                            @Value("${biblioteca.estadisticas.contadores:false}") boolean activo) {
+        this.shards = shards;
+        this.activo = activo;
+        for (int i = 0; i < celdas.length; i++) {
+            celdas[i] = new LongAdder();
+        }
+    }
+    
+    /**
+     * Carga los contadores con el desglose actual (solo si el modo está activo)
+     */
+    @PostConstruct
+    public void inicializar() {
+        if (activo) {
+            shards.contarPorEstadoTipoYFormato().forEach(conteo ->
+                    celdas[celda(conteo.estado(), conteo.tipo(), conteo.formato())].add(conteo.libros()));
+        }
+    }
+    
+    /**
+     * Indica si las estadísticas se sirven desde estos contadores
+     * @return true si biblioteca.estadisticas.contadores está activo
+     */
+    public boolean isActivo() {
+        return activo;
+    }
+    
+    /**
+     * Obtiene el desglose actual de los contadores
+     * @return una fila por combinación con libros
+     */
+    public List<ConteoLibros> obtenerConteos() {
+        List<ConteoLibros> conteos = new ArrayList<>();
+        for (EstadoLibro estado : ESTADOS) {
+            for (TipoLibro tipo : TIPOS) {
+                for (FormatoLibro formato : FORMATOS) {
+                    long libros = celdas[celda(estado, tipo, formato)].sum();
+                    if (libros != 0) {
+                        conteos.add(new ConteoLibros(estado, tipo, formato, libros));
+                    }
+                }
+            }
+        }
+        return conteos;
+    }
+    
+    @Override
+    public void onLibroAgregado(Libro libro) {
+        int celda = celda(libro.getEstado(), libro.getTipo(), libro.getFormato());
+        Transacciones.alConfirmar(() -> celdas[celda].increment());
+    }
+    
+    /**
+     * Todo el alta masiva se aplica con una única sincronización de la transacción
+     */
+    @Override
+    public void onLibrosAgregados(List<Libro> libros) {
+        int[] destino = libros.stream()
+                .mapToInt(libro -> celda(libro.getEstado(), libro.getTipo(), libro.getFormato()))
+                .toArray();
+        Transacciones.alConfirmar(() -> {
+            for (int celda : destino) {
+                celdas[celda].increment();
+            }
+        });
+    }
+    
+    @Override
+    public void onLibroEliminado(Libro libro) {
+        int celda = celda(libro.getEstado(), libro.getTipo(), libro.getFormato());
+        Transacciones.alConfirmar(() -> celdas[celda].decrement());
+    }
+    
+    @Override
+    public void onLibroEstadoCambiado(Libro libro, String estadoAnterior, String estadoNuevo) {
+        onLibrosEstadoCambiado(List.of(libro), estadoAnterior, estadoNuevo);
+    }
+    
+    /**
+     * Todo el lote se aplica con una única sincronización de la transacción
+     */
+    @Override
+    public void onLibrosEstadoCambiado(List<Libro> libros, String estadoAnterior, String estadoNuevo) {
+        EstadoLibro anterior = EstadoLibro.valueOf(estadoAnterior);
+        EstadoLibro nuevo = EstadoLibro.valueOf(estadoNuevo);
+        int[] origen = new int[libros.size()];
+        int[] destino = new int[libros.size()];
+        for (int i = 0; i < libros.size(); i++) {
+            Libro libro = libros.get(i);
+            origen[i] = celda(anterior, libro.getTipo(), libro.getFormato());
+            destino[i] = celda(nuevo, libro.getTipo(), libro.getFormato());
+        }
+        
+        Transacciones.alConfirmar(() -> {
+            for (int i = 0; i < origen.length; i++) {
+                celdas[origen[i]].decrement();
+                celdas[destino[i]].increment();
+            }
+        });
+    }
+    
+    /**
+     * Cada evento es un delta sobre los contadores: no puede perderse ni aplicarse tarde, así que se
+     * notifica en el acto (los cambios ya esperan al commit) y nunca pasa por una cola que pueda
+     * descartar eventos (DESCARTAR_ANTIGUO)
+     */
+    @Override
+    public boolean admiteNotificacionAsincrona() {
+        return false;
+    }
+    
+    @Override
+    public String getNombreObservador() {
+        return "Contadores de Estadísticas";
+    }
+    
+    private static int celda(EstadoLibro estado, TipoLibro tipo, FormatoLibro formato) {
+        return (estado.ordinal() * TIPOS.length + tipo.ordinal()) * FORMATOS.length + formato.ordinal();
+    }
+}
@@ -0,0 +1,504 @@
+package com.biblioteca.service;
+
+import com.biblioteca.model.entities.Libro;
+import com.biblioteca.model.enums.EstadoLibro;
+import com.biblioteca.model.enums.FormatoLibro;
+import com.biblioteca.model.enums.TipoLibro;
+import com.biblioteca.patterns.observer.LibroObserver;
+import com.biblioteca.util.OrdenCambios;
+import com.biblioteca.util.Transacciones;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reparte las notificaciones del servicio entre los observadores (modo biblioteca.observadores.asincrono)
+ * Sin el modo, o para los observadores que no lo admiten, se llama al observador en el acto, dentro
+ * de la transacción, como siempre. Con el modo, cada observador tiene una cola acotada que vacía un
+ * hilo virtual propio: la notificación se encola tras el commit, así que un observador lento no alarga
+ * la transacción ni la latencia del préstamo. Cuando la cola se llena se aplica la política de desbordamiento.
+ * Dos transacciones sobre el mismo libro pueden encolar tras sus commits en orden distinto al de estos;
+ * cada evento lleva la versión de cada libro (@Version) y la cola descarta los que llegan por detrás
+ * de uno ya entregado, así que cada observador ve los cambios de un libro en el orden confirmado
+ */
+@Component
+public class DespachadorObservadores {
+
+    /**
+     * Qué hacer al publicar en una cola llena
+     */
+    public enum PoliticaDesbordamiento {
+        /**
+         * Esperar a que haya hueco como mucho biblioteca.observadores.espera-maxima-ms y, si no llega,
+         * descartar el evento: el hilo que publica (el de la petición, tras su commit) nunca se queda parado
+         */
+        BLOQUEAR,
+        /** Descartar el evento más antiguo de la cola para hacer sitio al nuevo */
+        DESCARTAR_ANTIGUO,
+        /** Escribir el evento en un fichero de derrame, que se vacía en orden cuando la cola queda libre */
+        DERRAMAR
+    }
+
+    private static final long ESPERA_DERRAME_MS = 100;
+    /** Libros cuyo último cambio entregado recuerda cada cola (ver OrdenCambios) */
+    private static final int LIBROS_RETENIDOS = 10_000;
+
+    private final boolean asincrono;
+    private final int capacidad;
+    private final PoliticaDesbordamiento politica;
+    private final long esperaMaximaMs;
+    private final Path directorioDerrame;
+    private final ExecutorService ejecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<LibroObserver, ColaObservador> colas = new ConcurrentHashMap<>();
+    private final AtomicInteger secuenciaColas = new AtomicInteger();
+
+    public DespachadorObservadores(@Value("${biblioteca.observadores.asincrono:false}") boolean asincrono,
+                                   @Value("${biblioteca.observadores.capacidad-cola:1024}") int capacidad,
+                                   @Value("${biblioteca.observadores.desbordamiento:DERRAMAR}") PoliticaDesbordamiento politica,
+                                   @Value("${biblioteca.observadores.espera-maxima-ms:50}") long esperaMaximaMs,
+                                   @Value("${biblioteca.observadores.directorio-derrame:${java.io.tmpdir}/biblioteca-observadores}") Path directorioDerrame) {
+        this.asincrono = asincrono;
+        this.capacidad = capacidad;
+        this.politica = politica;
+        this.esperaMaximaMs = esperaMaximaMs;
+        this.directorioDerrame = directorioDerrame;
+    }
+
+    /**
+     * Entrega un evento a todos los observadores
+     * Los síncronos lo reciben ahora; los asíncronos, en su cola cuando la transacción se confirme
+     * (si se revierte no lo reciben) o ahora si no hay transacción
+     * @param observadores observadores registrados, en orden de registro
+     * @param evento el evento a entregar
+     */
+    public void notificar(List<LibroObserver> observadores, Evento evento) {
+        List<ColaObservador> diferidas = new ArrayList<>();
+        for (LibroObserver observer : observadores) {
+            if (asincrono && observer.admiteNotificacionAsincrona()) {
+                diferidas.add(colas.computeIfAbsent(observer, ColaObservador::new));
+            } else {
+                evento.aplicar(observer);
+            }
+        }
+
+        if (!diferidas.isEmpty()) {
+            Transacciones.alConfirmar(() -> diferidas.forEach(cola -> cola.publicar(evento)));
+        }
+    }
+
+    /**
+     * Detiene la cola de un observador que deja de estar registrado; sus eventos pendientes se pierden
+     * @param observer el observador eliminado
+     */
+    public void retirar(LibroObserver observer) {
+        ColaObservador cola = colas.remove(observer);
+        if (cola != null) {
+            cola.detener();
+        }
+    }
+
+    /**
+     * Obtiene el estado de las colas de los observadores asíncronos
+     * @return modo, política y profundidad, retraso y contadores de cada cola
+     */
+    public EstadisticasDespachador obtenerEstadisticas() {
+        return new EstadisticasDespachador(asincrono, politica, capacidad,
+                colas.values().stream().map(ColaObservador::estadisticas).toList());
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        colas.values().forEach(ColaObservador::detener);
+        colas.clear();
+        ejecutor.shutdownNow();
+    }
+
+    /**
+     * Notificación del servicio: qué pasó y a qué libros
+     * @param tipo tipo de evento
+     * @param libros libros afectados (uno salvo en las altas y los cambios de estado por lotes)
+     * @param estadoAnterior estado anterior (solo en cambios de estado)
+     * @param estadoNuevo estado nuevo (solo en cambios de estado)
+     */
+    public record Evento(TipoEvento tipo, List<Libro> libros, List<Long> versiones,
+                         String estadoAnterior, String estadoNuevo) {
+
+        public static Evento agregado(Libro libro) {
+            return crear(TipoEvento.AGREGADO, List.of(libro), null, null);
+        }
+
+        public static Evento agregados(List<Libro> libros) {
+            return crear(TipoEvento.AGREGADOS, List.copyOf(libros), null, null);
+        }
+
+        public static Evento eliminado(Libro libro) {
+            return crear(TipoEvento.ELIMINADO, List.of(libro), null, null);
+        }
+
+        public static Evento estadoCambiado(Libro libro, String estadoAnterior, String estadoNuevo) {
+            return crear(TipoEvento.ESTADO_CAMBIADO, List.of(libro), estadoAnterior, estadoNuevo);
+        }
+
+        public static Evento estadosCambiados(List<Libro> libros, String estadoAnterior, String estadoNuevo) {
+            return crear(TipoEvento.ESTADOS_CAMBIADOS, List.copyOf(libros), estadoAnterior, estadoNuevo);
+        }
+
+        /**
+         * Fija la versión de cada libro al crear el evento: la entidad puede cambiar antes de la entrega
+         */
+        private static Evento crear(TipoEvento tipo, List<Libro> libros, String estadoAnterior, String estadoNuevo) {
+            List<Long> versiones = libros.stream()
+                    .map(libro -> libro.getVersion() != null ? libro.getVersion() : 0L)
+                    .toList();
+            return new Evento(tipo, libros, versiones, estadoAnterior, estadoNuevo);
+        }
+
+        /**
+         * Posición del cambio de un libro en su historia confirmada (ver OrdenCambios.orden)
+         */
+        long orden(int posicion) {
+            return OrdenCambios.orden(versiones.get(posicion), tipo == TipoEvento.ELIMINADO);
+        }
+
+        /**
+         * Mismo evento con solo los libros de las posiciones indicadas
+         */
+        Evento con(List<Integer> posiciones) {
+            return new Evento(tipo,
+                    posiciones.stream().map(libros::get).toList(),
+                    posiciones.stream().map(versiones::get).toList(),
+                    estadoAnterior, estadoNuevo);
+        }
+
+        void aplicar(LibroObserver observer) {
+            switch (tipo) {
+                case AGREGADO -> observer.onLibroAgregado(libros.get(0));
+                case ELIMINADO -> observer.onLibroEliminado(libros.get(0));
+                case ESTADO_CAMBIADO -> observer.onLibroEstadoCambiado(libros.get(0), estadoAnterior, estadoNuevo);
+                case ESTADOS_CAMBIADOS -> observer.onLibrosEstadoCambiado(libros, estadoAnterior, estadoNuevo);
+                case AGREGADOS -> observer.onLibrosAgregados(libros);
+            }
+        }
+    }
+
+    public enum TipoEvento {
+        AGREGADO, ELIMINADO, ESTADO_CAMBIADO, ESTADOS_CAMBIADOS, AGREGADOS
+    }
+
+    /**
+     * Estado del despachador
+     * @param asincrono si el modo asíncrono está activo
+     * @param politica política de desbordamiento de las colas
+     * @param capacidad eventos que caben en cada cola
+     * @param colas una entrada por observador asíncrono
+     */
+    public record EstadisticasDespachador(boolean asincrono, PoliticaDesbordamiento politica, int capacidad,
+                                          List<EstadisticasCola> colas) {}
+
+    /**
+     * Estado de la cola de un observador
+     * @param observador nombre del observador
+     * @param enCola eventos en la cola
+     * @param enDerrame eventos en el fichero de derrame pendientes de entregar
+     * @param publicados eventos publicados
+     * @param procesados eventos entregados al observador
+     * @param descartados eventos perdidos (DESCARTAR_ANTIGUO, BLOQUEAR sin hueco a tiempo, o errores al publicar)
+     * @param obsoletos eventos no entregados porque el observador ya había recibido un cambio posterior del libro
+     * @param derramados eventos escritos en el fichero de derrame
+     * @param errores entregas en las que el observador lanzó una excepción
+     * @param retrasoUltimoMs tiempo en cola del último evento entregado
+     * @param retrasoMaximoMs tiempo en cola máximo de un evento entregado
+     * @param antiguedadPendienteMs tiempo que lleva esperando el evento más antiguo de la cola
+     */
+    public record EstadisticasCola(String observador, int enCola, long enDerrame, long publicados, long procesados,
+                                   long descartados, long obsoletos, long derramados, long errores, double retrasoUltimoMs,
+                                   double retrasoMaximoMs, double antiguedadPendienteMs) {}
+
+    /**
+     * Evento en cola con el instante en que se publicó, para medir el retraso
+     */
+    private record Pendiente(Evento evento, long publicadoNanos) {}
+
+    /**
+     * Cola acotada de un observador con su hilo virtual consumidor
+     * Con DERRAMAR, en cuanto hay eventos en el fichero los nuevos también van al fichero, y el
+     * consumidor solo lee del fichero cuando la cola está vacía: así se conserva el orden de publicación.
+     * El orden por libro lo garantiza la versión: ordenPorLibro guarda el último cambio entregado de los
+     * LIBROS_RETENIDOS libros cambiados más recientemente (también de los eliminados, cuyos IDs no se
+     * reutilizan), y solo lo usa el hilo consumidor. Un evento atrasado se publica poco después del que
+     * lo adelantó, así que lo encuentra en el registro aunque este no crezca con el catálogo
+     */
+    private final class ColaObservador {
+
+        private final LibroObserver observer;
+        private final BlockingQueue<Pendiente> cola = new ArrayBlockingQueue<>(capacidad);
+        private final ArchivoDerrame derrame;
+        private final Future<?> consumidor;
+        private final LongAdder publicados = new LongAdder();
+        private final LongAdder procesados = new LongAdder();
+        private final LongAdder descartados = new LongAdder();
+        private final LongAdder obsoletos = new LongAdder();
+        private final OrdenCambios ordenPorLibro = new OrdenCambios(LIBROS_RETENIDOS);
+        private final LongAdder derramados = new LongAdder();
+        private final LongAdder errores = new LongAdder();
+        private final AtomicLong retrasoUltimoNanos = new AtomicLong();
+        private final AtomicLong retrasoMaximoNanos = new AtomicLong();
+
+        ColaObservador(LibroObserver observer) {
+            this.observer = observer;
+            this.derrame = politica == PoliticaDesbordamiento.DERRAMAR
+                    ? new ArchivoDerrame(directorioDerrame.resolve("cola-" + secuenciaColas.incrementAndGet() + ".derrame"))
+                    : null;
+            this.consumidor = ejecutor.submit(this::consumir);
+        }
+
+        void publicar(Evento evento) {
+            Pendiente pendiente = new Pendiente(evento, System.nanoTime());
+            publicados.increment();
+            try {
+                switch (politica) {
+                    case BLOQUEAR -> {
+                        if (!cola.offer(pendiente, esperaMaximaMs, TimeUnit.MILLISECONDS)) {
+                            descartados.increment();
+                        }
+                    }
+                    case DESCARTAR_ANTIGUO -> {
+                        while (!cola.offer(pendiente)) {
+                            if (cola.poll() != null) {
+                                descartados.increment();
+                            }
+                        }
+                    }
+                    case DERRAMAR -> publicarConDerrame(pendiente);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                descartados.increment();
+            } catch (IOException e) {
+                descartados.increment();
+                System.err.println("No se pudo derramar un evento de '" + observer.getNombreObservador() + "': " + e.getMessage());
+            }
+        }
+
+        private synchronized void publicarConDerrame(Pendiente pendiente) throws IOException {
+            if (derrame.pendientes() > 0 || !cola.offer(pendiente)) {
+                derrame.escribir(pendiente);
+                derramados.increment();
+            }
+        }
+
+        private synchronized Pendiente leerDerrame() throws IOException {
+            return cola.isEmpty() && derrame.pendientes() > 0 ? derrame.leer() : null;
+        }
+
+        private synchronized long pendientesDerrame() {
+            return derrame != null ? derrame.pendientes() : 0;
+        }
+
+        private void consumir() {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    Pendiente pendiente;
+                    if (derrame == null) {
+                        pendiente = cola.take();
+                    } else {
+                        pendiente = cola.poll();
+                        if (pendiente == null) {
+                            pendiente = leerDerrame();
+                        }
+                        if (pendiente == null) {
+                            pendiente = cola.poll(ESPERA_DERRAME_MS, TimeUnit.MILLISECONDS);
+                        }
+                    }
+                    if (pendiente != null) {
+                        entregar(pendiente);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                System.err.println("Cola de '" + observer.getNombreObservador() + "' detenida: no se pudo leer el derrame: "
+                        + e.getMessage());
+            }
+        }
+
+        private void entregar(Pendiente pendiente) {
+            Evento evento = vigente(pendiente.evento());
+            if (evento == null) {
+                obsoletos.increment();
+                return;
+            }
+            try {
+                evento.aplicar(observer);
+            } catch (RuntimeException e) {
+                errores.increment();
+                System.err.println("Error en el observador '" + observer.getNombreObservador() + "': " + e.getMessage());
+            }
+            procesados.increment();
+            long retraso = System.nanoTime() - pendiente.publicadoNanos();
+            retrasoUltimoNanos.set(retraso);
+            retrasoMaximoNanos.accumulateAndGet(retraso, Math::max);
+        }
+
+        /**
+         * Quita del evento los libros de los que ya se entregó un cambio igual o posterior
+         * @return el evento con los libros vigentes, o null si no queda ninguno
+         */
+        private Evento vigente(Evento evento) {
+            List<Integer> vigentes = new ArrayList<>(evento.libros().size());
+            for (int i = 0; i < evento.libros().size(); i++) {
+                if (ordenPorLibro.avanzar(evento.libros().get(i).getId(), evento.orden(i))) {
+                    vigentes.add(i);
+                }
+            }
+            if (vigentes.isEmpty()) {
+                return null;
+            }
+            return vigentes.size() == evento.libros().size() ? evento : evento.con(vigentes);
+        }
+
+        synchronized void detener() {
+            consumidor.cancel(true);
+            if (derrame != null) {
+                derrame.cerrar();
+            }
+        }
+
+        EstadisticasCola estadisticas() {
+            Pendiente primero = cola.peek();
+            return new EstadisticasCola(observer.getNombreObservador(), cola.size(), pendientesDerrame(),
+                    publicados.sum(), procesados.sum(), descartados.sum(), obsoletos.sum(), derramados.sum(), errores.sum(),
+                    retrasoUltimoNanos.get() / 1_000_000.0, retrasoMaximoNanos.get() / 1_000_000.0,
+                    primero == null ? 0.0 : (System.nanoTime() - primero.publicadoNanos()) / 1_000_000.0);
+        }
+    }
+
+    /**
+     * Fichero de derrame de una cola: los eventos se escriben al final y se leen en el mismo orden
+     * Guarda una instantánea de los libros (ID, versión, título, autor, tipo, formato y estado), que al leerse
+     * se entrega como un Libro nuevo sin asociar a ninguna sesión. Cuando se han leído todos,
+     * el fichero se borra. Lo usan los hilos de una sola cola bajo su lock
+     */
+    private static final class ArchivoDerrame {
+
+        private final Path fichero;
+        private DataOutputStream escritura;
+        private DataInputStream lectura;
+        private long escritos;
+        private long leidos;
+
+        ArchivoDerrame(Path fichero) {
+            this.fichero = fichero;
+        }
+
+        long pendientes() {
+            return escritos - leidos;
+        }
+
+        void escribir(Pendiente pendiente) throws IOException {
+            if (escritura == null) {
+                Files.createDirectories(fichero.getParent());
+                escritura = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(fichero)));
+            }
+            Evento evento = pendiente.evento();
+            escritura.writeLong(pendiente.publicadoNanos());
+            escritura.writeByte(evento.tipo().ordinal());
+            escribirOpcional(evento.estadoAnterior());
+            escribirOpcional(evento.estadoNuevo());
+            escritura.writeInt(evento.libros().size());
+            for (int i = 0; i < evento.libros().size(); i++) {
+                Libro libro = evento.libros().get(i);
+                escritura.writeLong(libro.getId());
+                escritura.writeLong(evento.versiones().get(i));
+                escritura.writeUTF(libro.getTitulo());
+                escritura.writeUTF(libro.getAutor());
+                escritura.writeUTF(libro.getTipo().name());
+                escritura.writeUTF(libro.getFormato().name());
+                escritura.writeUTF(libro.getEstado().name());
+            }
+            // Solo se cuenta cuando está en el fichero: el lector nunca lee más allá de lo escrito
+            escritura.flush();
+            escritos++;
+        }
+
+        Pendiente leer() throws IOException {
+            if (lectura == null) {
+                lectura = new DataInputStream(new BufferedInputStream(Files.newInputStream(fichero)));
+            }
+            long publicadoNanos = lectura.readLong();
+            TipoEvento tipo = TipoEvento.values()[lectura.readByte()];
+            String estadoAnterior = leerOpcional();
+            String estadoNuevo = leerOpcional();
+            int numeroLibros = lectura.readInt();
+            List<Libro> libros = new ArrayList<>(numeroLibros);
+            List<Long> versiones = new ArrayList<>(numeroLibros);
+            for (int i = 0; i < numeroLibros; i++) {
+                long id = lectura.readLong();
+                versiones.add(lectura.readLong());
+                Libro libro = new Libro(lectura.readUTF(), lectura.readUTF(),
+                        TipoLibro.valueOf(lectura.readUTF()), FormatoLibro.valueOf(lectura.readUTF()));
+                libro.setId(id);
+                libro.setEstado(EstadoLibro.valueOf(lectura.readUTF()));
+                libros.add(libro);
+            }
+
+            if (++leidos == escritos) {
+                cerrar();
+            }
+            return new Pendiente(new Evento(tipo, libros, versiones, estadoAnterior, estadoNuevo), publicadoNanos);
+        }
+
+        /**
+         * Cierra y borra el fichero; los eventos que no se hubieran leído se pierden
+         */
+        void cerrar() {
+            try {
+                if (escritura != null) {
+                    escritura.close();
+                }
+                if (lectura != null) {
+                    lectura.close();
+                }
+                Files.deleteIfExists(fichero);
+            } catch (IOException e) {
+                System.err.println("No se pudo borrar el derrame " + fichero + ": " + e.getMessage());
+            }
+            escritura = null;
+            lectura = null;
+            escritos = 0;
+            leidos = 0;
+        }
+
+        private void escribirOpcional(String valor) throws IOException {
+            escritura.writeBoolean(valor != null);
+            if (valor != null) {
+                escritura.writeUTF(valor);
+            }
+        }
+
+        private String leerOpcional() throws IOException {
+            return lectura.readBoolean() ? lectura.readUTF() : null;
+        }
+    }
+}
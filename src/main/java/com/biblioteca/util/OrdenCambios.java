@@ -0,0 +1,75 @@
+package com.biblioteca.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Último cambio aplicado de cada libro, para descartar los que llegan por detrás de uno posterior
+ * Dos transacciones sobre el mismo libro pueden ejecutar sus acciones tras el commit en orden distinto
+ * al de sus commits; la posición de cada cambio en la historia del libro (ver orden) dice cuál es el
+ * vigente. Solo se retienen los libros cambiados más recientemente: un cambio atrasado llega en el
+ * intervalo entre un commit y sus acciones, mucho antes de que su libro salga del registro.
+ * No es seguro para varios hilos: lo protege quien lo usa
+ */
+public final class OrdenCambios {
+
+    private final Map<Long, Long> ordenPorLibro;
+
+    /**
+     * @param librosRetenidos libros recordados como máximo; se olvidan primero los cambiados hace más tiempo
+     */
+    public OrdenCambios(int librosRetenidos) {
+        this.ordenPorLibro = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Long> masAntiguo) {
+                return size() > librosRetenidos;
+            }
+        };
+    }
+
+    /**
+     * Posición de un cambio en la historia confirmada de su libro: cada alta o cambio de estado
+     * confirma una versión nueva (@Version), y la baja borra la versión vigente sin incrementarla,
+     * así que va justo después de ella
+     * @param version versión del libro tras el cambio (null se trata como 0, la del alta)
+     * @param eliminado si el cambio es la baja del libro
+     * @return posición del cambio
+     */
+    public static long orden(Long version, boolean eliminado) {
+        return (version != null ? version : 0L) * 2 + (eliminado ? 1 : 0);
+    }
+
+    /**
+     * Registra el cambio si es posterior al último registrado del libro
+     * @param id ID del libro
+     * @param orden posición del cambio
+     * @return true si el cambio es vigente y debe aplicarse; false si ya se aplicó uno igual o posterior
+     */
+    public boolean avanzar(Long id, long orden) {
+        Long anterior = ordenPorLibro.get(id);
+        if (anterior != null && anterior >= orden) {
+            return false;
+        }
+        ordenPorLibro.put(id, orden);
+        return true;
+    }
+
+    /**
+     * Comprueba, sin registrarlo, si un estado leído de la base de datos no es anterior al último cambio
+     * aplicado del libro; a diferencia de avanzar admite el mismo orden, ya que releer un estado aplicado no cambia nada
+     * @param id ID del libro
+     * @param orden posición del estado leído
+     * @return true si el estado leído está al día
+     */
+    public boolean vigente(Long id, long orden) {
+        Long anterior = ordenPorLibro.get(id);
+        return anterior == null || anterior <= orden;
+    }
+
+    /**
+     * @return libros recordados
+     */
+    public int size() {
+        return ordenPorLibro.size();
+    }
+}
@@ -0,0 +1,35 @@
+package com.biblioteca.util;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Utilidad para normalizar textos de búsqueda
+ * Elimina acentos, pasa a minúsculas y colapsa espacios para comparar títulos y autores
+ */
+public final class TextoNormalizador {
+    
+    private static final Pattern MARCAS_DIACRITICAS = Pattern.compile("\\p{M}+");
+    private static final Pattern ESPACIOS = Pattern.compile("\\s+");
+    
+    /**
+     * Constructor privado: clase de utilidad sin instancias
+     */
+    private TextoNormalizador() {}
+    
+    /**
+     * Normaliza un texto: sin acentos, en minúsculas y con espacios simples
+     * Ejemplo: "  Gabriel  García Márquez " -> "gabriel garcia marquez"
+     * @param texto texto a normalizar (puede ser null)
+     * @return texto normalizado, o cadena vacía si es null
+     */
+    public static String normalizar(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        
+        String sinAcentos = MARCAS_DIACRITICAS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("");
+        return ESPACIOS.matcher(sinAcentos.trim()).replaceAll(" ").toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,90 @@
+package com.biblioteca.util;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Utilidad para aplazar acciones en memoria hasta que la transacción en curso se confirme
+ * La usan los observadores que no deben reflejar cambios de una transacción que se revierta
+ */
+public final class Transacciones {
+    
+    /**
+     * Constructor privado: clase de utilidad sin instancias
+     */
+    private Transacciones() {}
+    
+    /**
+     * Ejecuta la acción tras el commit si hay una transacción real en curso, o de inmediato si no la hay.
+     * Si la transacción se revierte la acción no se ejecuta. Las acciones de una misma transacción se
+     * ejecutan en el orden en que se registraron.
+     * Un ámbito sin transacción (NOT_SUPPORTED, como el alta masiva entre lote y lote) también tiene la
+     * sincronización activa, pero no hay nada que confirmar: esperar a su fin retrasaría la acción hasta
+     * que terminara todo el método, así que se ejecuta en el acto
+     * @param accion acción a ejecutar
+     */
+    public static void alConfirmar(Runnable accion) {
+        if (!hayTransaccion()) {
+            accion.run();
+            return;
+        }
+        
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                accion.run();
+            }
+        });
+    }
+    
+    /**
+     * Ejecuta la acción al terminar la transacción en curso, tanto si se confirma como si se revierte,
+     * o de inmediato si no hay transacción real
+     * @param accion acción a ejecutar
+     */
+    public static void alTerminar(Runnable accion) {
+        if (!hayTransaccion()) {
+            accion.run();
+            return;
+        }
+        
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int estado) {
+                accion.run();
+            }
+        });
+    }
+    
+    /**
+     * Como alConfirmar, pero distingue el resultado incierto: si el gestor de transacciones no sabe si
+     * el commit llegó a aplicarse (STATUS_UNKNOWN, por ejemplo porque se perdió la conexión durante el
+     * commit) se ejecuta siIncierto, que debe comprobar en la base de datos lo que quedó.
+     * Como con alConfirmar, las acciones de una transacción se ejecutan en el orden en que se registraron,
+     * pero nada ordena las de transacciones distintas entre sí
+     * @param accion acción a ejecutar si la transacción se confirma
+     * @param siIncierto acción a ejecutar si no se sabe si se confirmó
+     */
+    public static void alConfirmar(Runnable accion, Runnable siIncierto) {
+        if (!hayTransaccion()) {
+            accion.run();
+            return;
+        }
+        
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int estado) {
+                if (estado == STATUS_COMMITTED) {
+                    accion.run();
+                } else if (estado == STATUS_UNKNOWN) {
+                    siIncierto.run();
+                }
+            }
+        });
+    }
+    
+    private static boolean hayTransaccion() {
+        return TransactionSynchronizationManager.isSynchronizationActive()
+                && TransactionSynchronizationManager.isActualTransactionActive();
+    }
+}
@@ -0,0 +1,24 @@
+-- Esquema inicial del catálogo, equivalente al que generaba Hibernate con ddl-auto
+
+-- Secuencia con incremento 50: debe coincidir con el allocationSize de Libro (pooled optimizer)
+CREATE SEQUENCE libros_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE libros (
+    id                  BIGINT       NOT NULL,
+    titulo              VARCHAR(200) NOT NULL,
+    autor               VARCHAR(100) NOT NULL,
+    titulo_norm         VARCHAR(200) NOT NULL,
+    autor_norm          VARCHAR(100) NOT NULL,
+    tipo                VARCHAR(255) NOT NULL CHECK (tipo IN ('FICCION', 'NO_FICCION')),
+    formato             VARCHAR(255) NOT NULL CHECK (formato IN ('FISICO', 'DIGITAL')),
+    estado              VARCHAR(255) NOT NULL CHECK (estado IN ('DISPONIBLE', 'PRESTADO')),
+    fecha_creacion      TIMESTAMP(6) NOT NULL,
+    fecha_actualizacion TIMESTAMP(6),
+    CONSTRAINT pk_libros PRIMARY KEY (id),
+    -- El índice único de (titulo, autor) resuelve existsByTituloAndAutor y findTituloYAutorByTituloIn
+    CONSTRAINT uk_libros_titulo_autor UNIQUE (titulo, autor)
+);
+
+-- Búsquedas por prefijo sobre las columnas normalizadas
+CREATE INDEX idx_libros_titulo_norm ON libros (titulo_norm);
+CREATE INDEX idx_libros_autor_norm ON libros (autor_norm);
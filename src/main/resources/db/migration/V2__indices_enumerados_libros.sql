@@ -0,0 +1,7 @@
+-- Índices secundarios para las consultas por enumerado
+-- (findByEstado, countByEstado, findLibrosDisponibles, findLibrosPrestados, findByTipo, findByFormato)
+-- Se añade el id a cada índice para que los recorridos ordenados por id y la paginación
+-- por keyset (id > :cursor) se resuelvan dentro del propio índice
+CREATE INDEX idx_libros_estado ON libros (estado, id);
+CREATE INDEX idx_libros_tipo ON libros (tipo, id);
+CREATE INDEX idx_libros_formato ON libros (formato, id);
@@ -0,0 +1,4 @@
+-- Versión para el bloqueo optimista de Libro (@Version)
+-- Los cambios de estado se hacen sobre la entidad con UPDATE ... WHERE id = ? AND version = ?,
+-- así Hibernate actualiza solo esa entrada de la caché de segundo nivel en lugar de vaciar la región
+ALTER TABLE libros ADD COLUMN version BIGINT DEFAULT 0 NOT NULL;
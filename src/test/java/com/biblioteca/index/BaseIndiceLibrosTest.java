@@ -0,0 +1,104 @@
+package com.biblioteca.index;
+
+import com.biblioteca.model.entities.Libro;
+import com.biblioteca.model.enums.EstadoLibro;
+import com.biblioteca.model.enums.FormatoLibro;
+import com.biblioteca.model.enums.TipoLibro;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Pruebas del orden con que BaseIndiceLibros aplica los cambios confirmados, sobre el índice bitmap
+ * Cada "transacción" registra sus acciones y se completa a mano, en el orden que haría falta
+ */
+class BaseIndiceLibrosTest {
+    
+    private final IndiceBitmapEnumerados indice = new IndiceBitmapEnumerados();
+    
+    @AfterEach
+    void limpiar() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+    }
+    
+    @Test
+    void descartaElCambioQueLlegaDetrasDeUnoPosterior() {
+        indice.cargarLote(List.of(libro(1, 0, EstadoLibro.DISPONIBLE)));
+        
+        List<TransactionSynchronization> prestamo = enTransaccion(i -> i.onLibroEstadoCambiado(
+                libro(1, 1, EstadoLibro.PRESTADO), "DISPONIBLE", "PRESTADO"));
+        List<TransactionSynchronization> devolucion = enTransaccion(i -> i.onLibroEstadoCambiado(
+                libro(1, 2, EstadoLibro.DISPONIBLE), "PRESTADO", "DISPONIBLE"));
+        completar(devolucion, TransactionSynchronization.STATUS_COMMITTED);
+        completar(prestamo, TransactionSynchronization.STATUS_COMMITTED);
+        
+        assertEquals(List.of(), prestados());
+        assertEquals(List.of(1L), disponibles());
+    }
+    
+    @Test
+    void unaTransaccionRevertidaNoDejaRastro() {
+        indice.cargarLote(List.of(libro(1, 0, EstadoLibro.DISPONIBLE)));
+        
+        completar(enTransaccion(i -> i.onLibroEstadoCambiado(libro(1, 1, EstadoLibro.PRESTADO), "DISPONIBLE", "PRESTADO")),
+                TransactionSynchronization.STATUS_ROLLED_BACK);
+        
+        assertEquals(List.of(), prestados());
+    }
+    
+    @Test
+    void unAltaQueLlegaDespuesDeSuBajaNoSeIndexa() {
+        List<TransactionSynchronization> alta = enTransaccion(i -> i.onLibroAgregado(libro(7, 0, EstadoLibro.DISPONIBLE)));
+        List<TransactionSynchronization> baja = enTransaccion(i -> i.onLibroEliminado(libro(7, 0, EstadoLibro.DISPONIBLE)));
+        completar(baja, TransactionSynchronization.STATUS_COMMITTED);
+        completar(alta, TransactionSynchronization.STATUS_COMMITTED);
+        
+        assertEquals(List.of(), disponibles());
+    }
+    
+    private List<TransactionSynchronization> enTransaccion(Consumer<BaseIndiceLibros> notificacion) {
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            notificacion.accept(indice);
+            return new ArrayList<>(TransactionSynchronizationManager.getSynchronizations());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+    }
+    
+    private static void completar(List<TransactionSynchronization> sincronizaciones, int estado) {
+        if (estado == TransactionSynchronization.STATUS_COMMITTED) {
+            sincronizaciones.forEach(TransactionSynchronization::afterCommit);
+        }
+        sincronizaciones.forEach(sincronizacion -> sincronizacion.afterCompletion(estado));
+    }
+    
+    private List<Long> prestados() {
+        return indice.filtrar(List.of(), List.of(), List.of(EstadoLibro.PRESTADO));
+    }
+    
+    private List<Long> disponibles() {
+        return indice.filtrar(List.of(), List.of(), List.of(EstadoLibro.DISPONIBLE));
+    }
+    
+    private static Libro libro(long id, long version, EstadoLibro estado) {
+        Libro libro = new Libro("Título " + id, "Autor", TipoLibro.FICCION, FormatoLibro.FISICO);
+        libro.setId(id);
+        libro.setEstado(estado);
+        ReflectionTestUtils.setField(libro, "version", version);
+        return libro;
+    }
+}
@@ -0,0 +1,51 @@
+package com.biblioteca.index;
+
+import com.biblioteca.model.entities.Libro;
+import com.biblioteca.model.enums.FormatoLibro;
+import com.biblioteca.model.enums.TipoLibro;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pruebas de los contadores de FiltroBloomDuplicados al quitar y volver a poner libros
+ * No se llega a redimensionar, así que el filtro no necesita acceso a los shards
+ */
+class FiltroBloomDuplicadosTest {
+
+    private final FiltroBloomDuplicados filtro = new FiltroBloomDuplicados(null, 1024);
+
+    @Test
+    void quitarUnLibroNoContadoNoBorraLaClaveDeOtro() {
+        filtro.cargarLote(List.of(libro(1, "Rayuela", "Cortázar")));
+        filtro.cargaCompletada(1);
+
+        // Misma clave, otro ID: el filtro no sumó este libro, así que no puede restarlo
+        filtro.desindexar(libro(99, "Rayuela", "Cortázar"));
+
+        assertTrue(filtro.podriaContener("Rayuela", "Cortázar"));
+        assertEquals(1, filtro.obtenerEstadisticas().elementos());
+    }
+
+    @Test
+    void volverAIndexarUnLibroNoLoCuentaDosVeces() {
+        filtro.cargarLote(List.of(libro(1, "Rayuela", "Cortázar")));
+        filtro.cargaCompletada(1);
+
+        filtro.indexar(libro(1, "Rayuela", "Cortázar"));
+        filtro.desindexar(libro(1, "Rayuela", "Cortázar"));
+
+        assertFalse(filtro.podriaContener("Rayuela", "Cortázar"));
+        assertEquals(0, filtro.obtenerEstadisticas().elementos());
+    }
+
+    private static Libro libro(long id, String titulo, String autor) {
+        Libro libro = new Libro(titulo, autor, TipoLibro.FICCION, FormatoLibro.FISICO);
+        libro.setId(id);
+        return libro;
+    }
+}
@@ -0,0 +1,48 @@
+package com.biblioteca.index;
+
+import com.biblioteca.model.entities.Libro;
+import com.biblioteca.model.enums.FormatoLibro;
+import com.biblioteca.model.enums.TipoLibro;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Pruebas de la poda de candidatos de IndiceBM25: con un término frecuente en la consulta, los k
+ * mejores deben ser los mismos que sin podar, es decir, el principio de una búsqueda con k mayor
+ */
+class IndiceBM25Test {
+
+    @Test
+    void losMejoresNoDependenDeLaPoda() {
+        IndiceBM25 indice = new IndiceBM25();
+        for (long id = 1; id <= 500; id++) {
+            String titulo = "El libro " + (id % 7 == 0 ? "de la noche" : "del mar") + (id % 50 == 0 ? " rayuela" : "");
+            indice.indexar(libro(id, titulo, id % 3 == 0 ? "Cortázar" : "Borges"));
+        }
+
+        List<IndiceBM25.Resultado> todos = indice.buscar("rayuela noche libro cortazar", IndiceBM25.LIMITE_MAXIMO);
+        for (int k : new int[]{1, 3, 10, 40}) {
+            assertEquals(todos.subList(0, k), indice.buscar("rayuela noche libro cortazar", k));
+        }
+    }
+
+    @Test
+    void unTerminoRaroSeImponeAUnoFrecuente() {
+        IndiceBM25 indice = new IndiceBM25();
+        for (long id = 1; id <= 200; id++) {
+            indice.indexar(libro(id, "Libro " + id, "Autor"));
+        }
+        indice.indexar(libro(201L, "Rayuela", "Cortázar"));
+
+        assertEquals(List.of(201L), indice.buscar("libro rayuela", 1).stream().map(IndiceBM25.Resultado::id).toList());
+    }
+
+    private static Libro libro(long id, String titulo, String autor) {
+        Libro libro = new Libro(titulo, autor, TipoLibro.FICCION, FormatoLibro.FISICO);
+        libro.setId(id);
+        return libro;
+    }
+}
@@ -0,0 +1,54 @@
+package com.biblioteca.index;
+
+import com.biblioteca.model.entities.Libro;
+import com.biblioteca.model.enums.EstadoLibro;
+import com.biblioteca.model.enums.FormatoLibro;
+import com.biblioteca.model.enums.TipoLibro;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Pruebas de IndiceBitmapEnumerados con IDs dispersos y mayores que Integer.MAX_VALUE
+ */
+class IndiceBitmapEnumeradosTest {
+    
+    private static final long GRANDE = Integer.MAX_VALUE + 10L;
+    
+    @Test
+    void admiteIdsMayoresQueUnInt() {
+        IndiceBitmapEnumerados indice = new IndiceBitmapEnumerados();
+        indice.cargarLote(List.of(
+                libro(3, TipoLibro.FICCION, FormatoLibro.FISICO),
+                libro(70_000, TipoLibro.FICCION, FormatoLibro.DIGITAL),
+                libro(GRANDE, TipoLibro.FICCION, FormatoLibro.DIGITAL),
+                libro(GRANDE + 1, TipoLibro.NO_FICCION, FormatoLibro.DIGITAL)));
+        
+        assertEquals(List.of(3L, 70_000L, GRANDE, GRANDE + 1), indice.filtrar(null, null, null));
+        assertEquals(List.of(70_000L, GRANDE),
+                indice.filtrar(List.of(TipoLibro.FICCION), List.of(FormatoLibro.DIGITAL), List.of(EstadoLibro.DISPONIBLE)));
+        assertEquals(List.of(GRANDE, GRANDE + 1),
+                indice.filtrarPagina(null, List.of(FormatoLibro.DIGITAL), null, 70_000L, 10));
+        assertEquals(List.of(GRANDE + 1), indice.filtrarPagina(null, null, null, GRANDE, 10));
+    }
+    
+    @Test
+    void laInterseccionNoModificaLosBitmapsDelIndice() {
+        IndiceBitmapEnumerados indice = new IndiceBitmapEnumerados();
+        indice.cargarLote(List.of(
+                libro(1, TipoLibro.FICCION, FormatoLibro.FISICO),
+                libro(2, TipoLibro.FICCION, FormatoLibro.DIGITAL)));
+        
+        assertEquals(List.of(2L), indice.filtrar(List.of(TipoLibro.FICCION), List.of(FormatoLibro.DIGITAL), null));
+        assertEquals(List.of(1L, 2L), indice.filtrar(List.of(TipoLibro.FICCION), null, null));
+        assertEquals(List.of(1L, 2L), indice.filtrar(null, null, null));
+    }
+    
+    private static Libro libro(long id, TipoLibro tipo, FormatoLibro formato) {
+        Libro libro = new Libro("Título " + id, "Autor", tipo, formato);
+        libro.setId(id);
+        return libro;
+    }
+}
@@ -0,0 +1,94 @@
+package com.biblioteca.patterns.strategy;
+
+import com.biblioteca.index.IndiceTrigramasTitulo;
+import com.biblioteca.model.entities.Libro;
+import com.biblioteca.model.enums.FormatoLibro;
+import com.biblioteca.model.enums.TipoLibro;
+import com.biblioteca.patterns.strategy.impl.SearchByAuthorStrategy;
+import com.biblioteca.patterns.strategy.impl.SearchByTitleStrategy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Pruebas de EjecutorBusquedaParalela: mismo resultado y orden que la búsqueda secuencial
+ * y, con -Dbenchmark=true, el tamaño de lista a partir del cual compensa filtrar en paralelo
+ */
+class EjecutorBusquedaParalelaTest {
+    
+    // Acumula los resultados medidos para que el JIT no descarte el recorrido
+    private static long sumidero;
+    
+    private final SearchStrategy titulo = new SearchByTitleStrategy(new IndiceTrigramasTitulo());
+    private final SearchStrategy autor = new SearchByAuthorStrategy();
+    
+    @Test
+    void conservaElOrdenDeLaBusquedaSecuencial() {
+        List<Libro> libros = catalogo(50_000);
+        EjecutorBusquedaParalela ejecutor = new EjecutorBusquedaParalela(0, 4);
+        try {
+            assertEquals(titulo.buscar(libros, "historia"), ejecutor.buscar(titulo, libros, "historia"));
+            assertEquals(autor.buscar(libros, "autor 7"), ejecutor.buscar(autor, libros, "autor 7"));
+            assertEquals(List.of(), ejecutor.buscar(titulo, libros, "no existe"));
+        } finally {
+            ejecutor.cerrar();
+        }
+    }
+    
+    /**
+     * Filtro por título en secuencia frente al pool dedicado con todos los núcleos, por tamaño de lista
+     * El cruce es el primer tamaño en que el paralelo gana; es el valor para biblioteca.busqueda.paralela.umbral
+     * mvn test -Dtest=EjecutorBusquedaParalelaTest -Dbenchmark=true
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void medirPuntoDeCruce() {
+        EjecutorBusquedaParalela ejecutor = new EjecutorBusquedaParalela(0, 0);
+        try {
+            System.out.printf("Núcleos: %d%n", Runtime.getRuntime().availableProcessors());
+            for (int tamano : new int[]{1_000, 5_000, 10_000, 20_000, 50_000, 100_000, 500_000, 1_000_000}) {
+                List<Libro> libros = catalogo(tamano);
+                double secuencial = medianaMs(() -> titulo.buscar(libros, "historia").size());
+                double paralelo = medianaMs(() -> ejecutor.buscar(titulo, libros, "historia").size());
+                System.out.printf("%,10d libros: secuencial %8.3f ms | paralelo %8.3f ms | x%.2f%n",
+                        tamano, secuencial, paralelo, secuencial / paralelo);
+            }
+        } finally {
+            ejecutor.cerrar();
+        }
+    }
+    
+    private static double medianaMs(IntSupplier busqueda) {
+        for (int calentamiento = 0; calentamiento < 10; calentamiento++) {
+            sumidero += busqueda.getAsInt();
+        }
+        double[] tiempos = new double[21];
+        for (int ronda = 0; ronda < tiempos.length; ronda++) {
+            long inicio = System.nanoTime();
+            sumidero += busqueda.getAsInt();
+            tiempos[ronda] = (System.nanoTime() - inicio) / 1_000_000.0;
+        }
+        Arrays.sort(tiempos);
+        return tiempos[tiempos.length / 2];
+    }
+    
+    /**
+     * Catálogo sintético: 1 de cada 3 títulos contiene "historia" y hay 100 autores distintos
+     */
+    private static List<Libro> catalogo(int tamano) {
+        List<Libro> libros = new ArrayList<>(tamano);
+        for (int i = 0; i < tamano; i++) {
+            String titulo = (i % 3 == 0 ? "Historia de " : "Libro de ") + "la colección " + i;
+            Libro libro = new Libro(titulo, "Autor " + (i % 100), TipoLibro.FICCION, FormatoLibro.FISICO);
+            libro.setId((long) i + 1);
+            libros.add(libro);
+        }
+        return libros;
+    }
+}
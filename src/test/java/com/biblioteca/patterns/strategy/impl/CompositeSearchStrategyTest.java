@@ -0,0 +1,161 @@
+package com.biblioteca.patterns.strategy.impl;
+
+import com.biblioteca.index.IndiceBitmapEnumerados;
+import com.biblioteca.index.IndiceDifuso;
+import com.biblioteca.index.IndiceTrigramasTitulo;
+import com.biblioteca.model.entities.Libro;
+import com.biblioteca.model.enums.EstadoLibro;
+import com.biblioteca.model.enums.FormatoLibro;
+import com.biblioteca.model.enums.TipoLibro;
+import com.biblioteca.patterns.strategy.SearchStrategy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pruebas de CompositeSearchStrategy: intersección de IDs, orden por selectividad
+ * y, con -Dbenchmark=true, la medición del orden por rango frente al orden del criterio
+ */
+class CompositeSearchStrategyTest {
+    
+    // Acumula los resultados medidos para que el JIT no descarte el recorrido
+    private static long sumidero;
+    
+    private final SearchByTitleStrategy titulo = new SearchByTitleStrategy(new IndiceTrigramasTitulo());
+    private final SearchByAuthorStrategy autor = new SearchByAuthorStrategy();
+    private final SearchByTypeStrategy tipo = new SearchByTypeStrategy(new IndiceBitmapEnumerados());
+    private final SearchByStateStrategy estado = new SearchByStateStrategy(new IndiceBitmapEnumerados());
+    private final Map<String, SearchStrategy> porClave = Map.of(
+            CompositeSearchStrategy.TITULO, titulo,
+            CompositeSearchStrategy.AUTOR, autor,
+            CompositeSearchStrategy.TIPO, tipo,
+            CompositeSearchStrategy.ESTADO, estado);
+    private final CompositeSearchStrategy compuesta = new CompositeSearchStrategy(titulo, autor, tipo, estado,
+            new SearchFuzzyStrategy(new IndiceDifuso()));
+    
+    @Test
+    void interseccionCoincideConLaDeConjuntos() {
+        Random aleatorio = new Random(42);
+        int[][] tamanos = {{0, 10}, {1, 1}, {5, 100_000}, {1_000, 1_000}, {30_000, 70_000}, {3, 3_000_000}};
+        for (int[] tamano : tamanos) {
+            List<Long> una = idsAleatorios(aleatorio, tamano[0], 200_000);
+            List<Long> otra = idsAleatorios(aleatorio, tamano[1], 4_000_000);
+            
+            TreeSet<Long> esperada = new TreeSet<>(una);
+            esperada.retainAll(new TreeSet<>(otra));
+            
+            assertEquals(List.copyOf(esperada), CompositeSearchStrategy.interseccion(una, otra));
+            assertEquals(List.copyOf(esperada), CompositeSearchStrategy.interseccion(otra, una));
+        }
+    }
+    
+    @Test
+    void evaluaPrimeroElPredicadoMasSelectivo() {
+        // Mismo coste (8): el título coincide con todos los libros y el autor con el 11 % (7, 70-79)
+        List<Libro> libros = catalogo(10_000);
+        String criterio = "titulo=de&autor=autor 7";
+        
+        int esperados = compuesta.buscar(libros, criterio).size();
+        long tituloAntes = evaluados(CompositeSearchStrategy.TITULO);
+        assertEquals(esperados, compuesta.buscar(libros, criterio).size());
+        
+        // Aprendida la selectividad, el título solo se evalúa sobre los libros que acepta el autor
+        long tituloDespues = evaluados(CompositeSearchStrategy.TITULO) - tituloAntes;
+        assertTrue(tituloDespues <= esperados * 2L,
+                "El título se evaluó " + tituloDespues + " veces para " + esperados + " resultados");
+    }
+    
+    /**
+     * Consultas mixtas sobre 500.000 libros en memoria: AND en el orden del criterio
+     * frente a la estrategia compuesta ya entrenada. Imprime la mediana de 15 rondas
+     * mvn test -Dtest=CompositeSearchStrategyTest -Dbenchmark=true
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void medirConsultasMixtas() {
+        List<Libro> libros = catalogo(500_000);
+        List<String> criterios = List.of(
+                "titulo=historia&estado=PRESTADO",
+                "titulo=de&autor=autor 17&tipo=NO_FICCION",
+                "autor=autor&titulo=historia&estado=PRESTADO&tipo=FICCION");
+        
+        for (String criterio : criterios) {
+            Predicate<Libro> enOrden = enOrdenDelCriterio(criterio);
+            Predicate<Libro> porRango = compuesta.predicado(criterio);
+            sumidero += libros.stream().filter(porRango).count(); // entrena la selectividad
+            porRango = compuesta.predicado(criterio);
+            
+            double msEnOrden = medianaMs(libros, enOrden);
+            double msPorRango = medianaMs(libros, porRango);
+            System.out.printf("%-60s en orden %8.2f ms | por rango %8.2f ms | x%.1f%n",
+                    criterio, msEnOrden, msPorRango, msEnOrden / msPorRango);
+        }
+    }
+    
+    /**
+     * AND con cortocircuito en el orden en que aparecen las claves, sin estadísticas
+     */
+    private Predicate<Libro> enOrdenDelCriterio(String criterio) {
+        Predicate<Libro> conjuncion = libro -> true;
+        for (String par : criterio.split("&")) {
+            String[] claveValor = par.split("=", 2);
+            conjuncion = conjuncion.and(porClave.get(claveValor[0])
+                    .predicado(URLDecoder.decode(claveValor[1], StandardCharsets.UTF_8)));
+        }
+        return conjuncion;
+    }
+    
+    private static double medianaMs(List<Libro> libros, Predicate<Libro> predicado) {
+        double[] tiempos = new double[15];
+        for (int ronda = 0; ronda < tiempos.length; ronda++) {
+            long inicio = System.nanoTime();
+            sumidero += libros.stream().filter(predicado).count();
+            tiempos[ronda] = (System.nanoTime() - inicio) / 1_000_000.0;
+        }
+        Arrays.sort(tiempos);
+        return tiempos[tiempos.length / 2];
+    }
+    
+    private long evaluados(String clave) {
+        return compuesta.obtenerEstadisticas().stream()
+                .filter(estadistica -> estadistica.clave().equals(clave))
+                .mapToLong(CompositeSearchStrategy.EstadisticaPredicado::evaluados)
+                .sum();
+    }
+    
+    /**
+     * Catálogo sintético: 1 de cada 3 títulos contiene "historia", 100 autores distintos,
+     * la mitad de ficción y 1 de cada 20 libros prestado
+     */
+    private static List<Libro> catalogo(int tamano) {
+        List<Libro> libros = new ArrayList<>(tamano);
+        for (int i = 0; i < tamano; i++) {
+            String titulo = (i % 3 == 0 ? "Historia de " : "Libro de ") + "la colección " + i;
+            Libro libro = new Libro(titulo, "Autor " + (i % 100),
+                    i % 2 == 0 ? TipoLibro.FICCION : TipoLibro.NO_FICCION,
+                    i % 5 == 0 ? FormatoLibro.DIGITAL : FormatoLibro.FISICO);
+            libro.setId((long) i + 1);
+            if (i % 20 == 0) {
+                libro.setEstado(EstadoLibro.PRESTADO);
+            }
+            libros.add(libro);
+        }
+        return libros;
+    }
+    
+    private static List<Long> idsAleatorios(Random aleatorio, int cantidad, int maximo) {
+        return aleatorio.longs(cantidad, 0, maximo).sorted().distinct().boxed().toList();
+    }
+}
@@ -0,0 +1,42 @@
+package com.biblioteca.patterns.strategy.impl;
+
+import com.biblioteca.index.IndiceTrigramasTitulo;
+import com.biblioteca.model.entities.Libro;
+import com.biblioteca.model.enums.FormatoLibro;
+import com.biblioteca.model.enums.TipoLibro;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Pruebas de SearchByTitleStrategy: el filtro sobre listas y el índice de trigramas devuelven
+ * los mismos libros aunque el idioma de la JVM cambie las minúsculas
+ */
+class SearchByTitleStrategyTest {
+
+    @Test
+    void elPredicadoCoincideConElIndiceConIdiomaTurco() {
+        Locale anterior = Locale.getDefault();
+        Locale.setDefault(Locale.forLanguageTag("tr"));
+        try {
+            IndiceTrigramasTitulo indice = new IndiceTrigramasTitulo();
+            List<Libro> libros = List.of(libro(1, "INFIERNO"), libro(2, "El Ingenioso Hidalgo"), libro(3, "Rayuela"));
+            indice.onLibrosAgregados(libros);
+            SearchByTitleStrategy titulo = new SearchByTitleStrategy(indice);
+
+            assertEquals(List.of(1L, 2L), indice.buscar("in"));
+            assertEquals(List.of(1L, 2L), titulo.buscar(libros, "in").stream().map(Libro::getId).toList());
+        } finally {
+            Locale.setDefault(anterior);
+        }
+    }
+
+    private static Libro libro(long id, String titulo) {
+        Libro libro = new Libro(titulo, "Autor", TipoLibro.FICCION, FormatoLibro.FISICO);
+        libro.setId(id);
+        return libro;
+    }
+}
@@ -0,0 +1,185 @@
+package com.biblioteca.repository;
+
+import com.biblioteca.model.dto.LibroResumen;
+import com.biblioteca.model.entities.Libro;
+import com.biblioteca.model.enums.EstadoLibro;
+import com.biblioteca.model.enums.FormatoLibro;
+import com.biblioteca.model.enums.TipoLibro;
+import org.hibernate.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Comprueba con EXPLAIN de H2 que las consultas de LibroRepository usan el índice previsto
+ * El esquema es el de las migraciones de Flyway; las cachés de Hibernate se desactivan para que
+ * cada llamada llegue a la base de datos
+ * Queda fuera contarPorEstadoTipoYFormato, que no filtra: lee la tabla entera en un solo
+ * recorrido por diseño
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false"
+})
+@Import(RegistroSentencias.class)
+class LibroRepositoryPlanesTest {
+    
+    // Suficientes filas para que el optimizador prefiera el índice a recorrer la tabla
+    private static final int LIBROS = 500;
+    
+    @Autowired
+    private LibroRepository repositorio;
+    
+    @Autowired
+    private RegistroSentencias registro;
+    
+    @Autowired
+    private TestEntityManager entityManager;
+    
+    @BeforeEach
+    void cargarCatalogo() {
+        List<Libro> libros = new ArrayList<>();
+        for (int i = 0; i < LIBROS; i++) {
+            libros.add(new Libro("Título " + i, "Autor " + (i % 50),
+                    i % 2 == 0 ? TipoLibro.FICCION : TipoLibro.NO_FICCION,
+                    i % 3 == 0 ? FormatoLibro.DIGITAL : FormatoLibro.FISICO));
+        }
+        libros.add(new Libro("Cien años de soledad", "Gabriel García Márquez",
+                TipoLibro.FICCION, FormatoLibro.FISICO));
+        repositorio.saveAllAndFlush(libros);
+        // Sin entidades en el contexto de persistencia, findById también llega a la base de datos
+        entityManager.clear();
+    }
+    
+    @Test
+    void tituloYAutorPorTituloUsaElIndiceDelTituloNormalizado() {
+        assertUsaIndice(() -> repositorio.findByTituloAndAutor("Cien", null), "idx_libros_titulo_norm");
+    }
+    
+    @Test
+    void tituloYAutorPorAutorUsaElIndiceDelAutorNormalizado() {
+        assertUsaIndice(() -> repositorio.findByTituloAndAutor(null, "Gabriel García Márquez"),
+                "idx_libros_autor_norm");
+    }
+    
+    @Test
+    void criteriosMultiplesPorTituloUsaElIndiceDelTituloNormalizado() {
+        assertUsaIndice(() -> repositorio.findByMultipleCriteria("cien", null, TipoLibro.FICCION, null, null),
+                "idx_libros_titulo_norm");
+    }
+    
+    @Test
+    void criteriosMultiplesPorAutorUsaElIndiceDelAutorNormalizado() {
+        assertUsaIndice(() -> repositorio.findByMultipleCriteria(null, "gabriel", null, FormatoLibro.FISICO, null),
+                "idx_libros_autor_norm");
+    }
+    
+    @Test
+    void porEstadoUsaElIndiceDelEstado() {
+        assertUsaIndice(() -> repositorio.findByEstado(EstadoLibro.PRESTADO), "idx_libros_estado");
+        assertUsaIndice(() -> repositorio.countByEstado(EstadoLibro.DISPONIBLE), "idx_libros_estado");
+        assertUsaIndice(() -> repositorio.findLibrosDisponibles(), "idx_libros_estado");
+        assertUsaIndice(() -> repositorio.findLibrosPrestados(), "idx_libros_estado");
+    }
+    
+    @Test
+    void porTipoUsaElIndiceDelTipo() {
+        assertUsaIndice(() -> repositorio.findByTipo(TipoLibro.NO_FICCION), "idx_libros_tipo");
+    }
+    
+    @Test
+    void porFormatoUsaElIndiceDelFormato() {
+        assertUsaIndice(() -> repositorio.findByFormato(FormatoLibro.DIGITAL), "idx_libros_formato");
+    }
+    
+    @Test
+    void duplicadosUsanElIndiceUnicoDeTituloYAutor() {
+        assertUsaIndice(() -> repositorio.existsByTituloAndAutor("Título 7", "Autor 7"), "uk_libros_titulo_autor");
+        assertUsaIndice(() -> repositorio.findTituloYAutorByTituloIn(Set.of("Título 7", "Título 8")),
+                "uk_libros_titulo_autor");
+    }
+    
+    @Test
+    void porIdUsaLaClavePrimaria() {
+        List<Long> ids = repositorio.findByTituloAndAutor("titulo 1", null).stream()
+                .map(Libro::getId)
+                .limit(3)
+                .toList();
+        assertUsaIndice(() -> repositorio.findAllByIdSinCache(ids), "primary_key");
+        assertUsaIndice(() -> repositorio.findIdsExistentes(ids), "primary_key");
+        assertUsaIndice(() -> repositorio.findById(ids.get(0)), "primary_key");
+        assertUsaIndice(() -> repositorio.findByIdSinCache(ids.get(0)), "primary_key");
+        assertUsaIndice(() -> repositorio.findTituloById(ids.get(0)), "primary_key");
+    }
+    
+    @Test
+    void elCambioDeEstadoCondicionalUsaLaClavePrimariaYSoloSeAplicaUnaVez() {
+        Long id = repositorio.findByTituloAndAutor("Cien", null).get(0).getId();
+        assertUsaIndice(() -> assertThat(repositorio.cambiarEstadoSiEs(id, "DISPONIBLE", "PRESTADO")).isEqualTo(1),
+                "primary_key");
+        assertThat(repositorio.cambiarEstadoSiEs(id, "DISPONIBLE", "PRESTADO")).isZero();
+        assertThat(repositorio.cambiarEstadoSiEs(-1L, "DISPONIBLE", "PRESTADO")).isZero();
+        
+        // La entidad leída antes del UPDATE sigue en el contexto de persistencia con el estado anterior
+        entityManager.clear();
+        Libro prestado = repositorio.findByIdSinCache(id).orElseThrow();
+        assertThat(prestado.getEstado()).isEqualTo(EstadoLibro.PRESTADO);
+        assertThat(prestado.getVersion()).isEqualTo(1L);
+    }
+    
+    @Test
+    void elCambioDeEstadoPorLotesDevuelveSoloLosIdsCambiados() {
+        List<Long> ids = repositorio.findByTituloAndAutor("titulo 1", null).stream()
+                .map(Libro::getId)
+                .limit(3)
+                .toList();
+        assertThat(repositorio.cambiarEstadoSiEs(List.of(ids.get(0)), "DISPONIBLE", "PRESTADO"))
+                .containsExactly(ids.get(0));
+        
+        List<Long> conInexistente = new ArrayList<>(ids);
+        conInexistente.add(-1L);
+        assertThat(repositorio.cambiarEstadoSiEs(conInexistente, "DISPONIBLE", "PRESTADO"))
+                .containsExactlyInAnyOrder(ids.get(1), ids.get(2));
+        assertThat(repositorio.findIdsExistentes(conInexistente)).containsExactlyInAnyOrderElementsOf(ids);
+        
+        entityManager.clear();
+        assertThat(repositorio.findAllByIdSinCache(ids))
+                .allSatisfy(libro -> assertThat(libro.getEstado()).isEqualTo(EstadoLibro.PRESTADO));
+    }
+    
+    @Test
+    void elRecorridoDeResumenesNoCargaEntidades() {
+        try (Stream<LibroResumen> filas = repositorio.recorrerResumenes(LibroSpecifications.tituloContiene("Cien"), 100)) {
+            assertThat(filas.map(LibroResumen::titulo).toList()).containsExactly("Cien años de soledad");
+        }
+        try (Stream<LibroResumen> filas = repositorio.recorrerResumenes(null, 100)) {
+            assertThat(filas.map(LibroResumen::id).toList()).hasSize(LIBROS + 1).isSorted();
+        }
+        assertThat(entityManager.getEntityManager().unwrap(Session.class).getStatistics().getEntityCount()).isZero();
+    }
+    
+    @Test
+    void lasBusquedasNormalizanAcentosYMayusculas() {
+        assertThat(repositorio.findByTituloAndAutor("CIEN AÑOS", "gabriel garcia marquez"))
+                .extracting(Libro::getTitulo)
+                .containsExactly("Cien años de soledad");
+        assertThat(repositorio.findByMultipleCriteria("cien", "GABRIEL", TipoLibro.FICCION, null, null))
+                .hasSize(1);
+    }
+    
+    private void assertUsaIndice(Runnable consulta, String indice) {
+        String plan = registro.planDe(consulta).toLowerCase(Locale.ROOT);
+        assertThat(plan).contains(indice).doesNotContain("tablescan");
+    }
+}
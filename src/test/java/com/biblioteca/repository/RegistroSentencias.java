@@ -0,0 +1,117 @@
+package com.biblioteca.repository;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Registra las sentencias preparadas que Hibernate envía a la base de datos, con sus parámetros,
+ * para obtener después su plan con EXPLAIN tal como se ejecutaron
+ * Envuelve el DataSource del contexto de prueba con proxies de Connection y PreparedStatement;
+ * el EXPLAIN se lanza por la misma conexión para ver los datos de la transacción de la prueba
+ */
+class RegistroSentencias implements BeanPostProcessor {
+    
+    private final List<Sentencia> sentencias = new CopyOnWriteArrayList<>();
+    
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String nombre) {
+        if (bean instanceof DataSource dataSource) {
+            return proxy(DataSource.class, dataSource, (metodo, args, resultado) ->
+                    resultado instanceof Connection conexion ? envolver(conexion) : resultado);
+        }
+        return bean;
+    }
+    
+    /**
+     * Ejecuta la consulta y devuelve el plan de la última SELECT o UPDATE que envió a la base de datos
+     * @param consulta llamada al repositorio
+     * @return salida de EXPLAIN
+     */
+    String planDe(Runnable consulta) {
+        sentencias.clear();
+        consulta.run();
+        Sentencia ultima = sentencias.stream()
+                .filter(sentencia -> {
+                    String sql = sentencia.sql().strip().toLowerCase(Locale.ROOT);
+                    return sql.startsWith("select") || sql.startsWith("update");
+                })
+                .reduce((primera, segunda) -> segunda)
+                .orElseThrow(() -> new AssertionError("La consulta no ejecutó ninguna SELECT ni UPDATE"));
+        return explicar(ultima);
+    }
+    
+    private String explicar(Sentencia sentencia) {
+        try (PreparedStatement explain = sentencia.conexion().prepareStatement("EXPLAIN " + sentencia.sql())) {
+            for (Parametro parametro : sentencia.parametros()) {
+                parametro.metodo().invoke(explain, parametro.args());
+            }
+            try (ResultSet plan = explain.executeQuery()) {
+                plan.next();
+                return plan.getString(1);
+            }
+        } catch (SQLException | ReflectiveOperationException e) {
+            throw new IllegalStateException("No se pudo obtener el plan de: " + sentencia.sql(), e);
+        }
+    }
+    
+    private Connection envolver(Connection conexion) {
+        return proxy(Connection.class, conexion, (metodo, args, resultado) ->
+                metodo.getName().equals("prepareStatement") && resultado instanceof PreparedStatement sentencia
+                        ? envolver(sentencia, (String) args[0], conexion)
+                        : resultado);
+    }
+    
+    /**
+     * Anota los set* de parámetros y registra la sentencia al ejecutarla
+     */
+    private PreparedStatement envolver(PreparedStatement sentencia, String sql, Connection conexion) {
+        List<Parametro> parametros = new ArrayList<>();
+        return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, (proxy, metodo, args) -> {
+                    String nombre = metodo.getName();
+                    if (nombre.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                        parametros.add(new Parametro(metodo, args));
+                    } else if (nombre.equals("clearParameters")) {
+                        parametros.clear();
+                    } else if (nombre.startsWith("execute")) {
+                        sentencias.add(new Sentencia(sql, List.copyOf(parametros), conexion));
+                    }
+                    return invocar(metodo, sentencia, args);
+                });
+    }
+    
+    @SuppressWarnings("unchecked")
+    private <T> T proxy(Class<T> tipo, T objetivo, Resultado resultado) {
+        return (T) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{tipo},
+                (proxy, metodo, args) -> resultado.transformar(metodo, args, invocar(metodo, objetivo, args)));
+    }
+    
+    private static Object invocar(Method metodo, Object objetivo, Object[] args) throws Throwable {
+        try {
+            return metodo.invoke(objetivo, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+    
+    @FunctionalInterface
+    private interface Resultado {
+        Object transformar(Method metodo, Object[] args, Object resultado);
+    }
+    
+    private record Parametro(Method metodo, Object[] args) {}
+    
+    private record Sentencia(String sql, List<Parametro> parametros, Connection conexion) {}
+}
@@ -0,0 +1,32 @@
+package com.biblioteca.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Pruebas de TextoNormalizador, que rellena las columnas titulo_norm y autor_norm y normaliza los
+ * criterios que se comparan con ellas: ambos lados deben dar el mismo texto
+ */
+class TextoNormalizadorTest {
+
+    @Test
+    void quitaAcentosPasaAMinusculasYColapsaEspacios() {
+        assertEquals("gabriel garcia marquez", TextoNormalizador.normalizar("  Gabriel  García\tMárquez "));
+        assertEquals("cien anos de soledad", TextoNormalizador.normalizar("CIEN AÑOS DE SOLEDAD"));
+        assertEquals("", TextoNormalizador.normalizar(null));
+    }
+
+    @Test
+    void noDependeDelIdiomaDeLaJvm() {
+        Locale anterior = Locale.getDefault();
+        Locale.setDefault(Locale.forLanguageTag("tr"));
+        try {
+            assertEquals("infierno", TextoNormalizador.normalizar("INFIERNO"));
+        } finally {
+            Locale.setDefault(anterior);
+        }
+    }
+}